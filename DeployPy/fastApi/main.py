@@ -1,11 +1,11 @@
 from fastapi import FastAPI, Query
-from fastapi.responses import StreamingResponse
+from fastapi.responses import Response, StreamingResponse
 import io
 from PIL import Image
 import torch
 import torch.nn as nn
 from torchvision import models
-from pyFunctions import predict_from_coords  # sua função
+from pyFunctions import encode_mask_payload, predict_from_coords, predict_mask_from_coords  # sua função
 import os
 
 app = FastAPI()
@@ -153,6 +153,14 @@ except Exception as e:
     print("⚙️ Modelo dummy carregado!")
 
 
+# ---------------------------------------------------------
+# 🔹 Health check (usado pelo balanceamento do backend Java)
+# ---------------------------------------------------------
+@app.get("/health")
+def health():
+    return {"status": "ok"}
+
+
 # ---------------------------------------------------------
 # 🔹 Endpoint principal
 # ---------------------------------------------------------
@@ -166,3 +174,16 @@ def predict(lat: float = Query(...), lon: float = Query(...)):
         return StreamingResponse(img_bytes, media_type="image/png")
     except Exception as e:
         return {"error": f"Erro na predição: {str(e)}"}
+
+
+# ---------------------------------------------------------
+# 🔹 Só a máscara binária + tile original; o backend Java faz o overlay
+# ---------------------------------------------------------
+@app.get("/predict/mask")
+def predict_mask(lat: float = Query(...), lon: float = Query(...), tile_format: str = Query("jpeg")):
+    try:
+        original, mask = predict_mask_from_coords(lat, lon, model)
+        payload = encode_mask_payload(original, mask, tile_format)
+        return Response(content=payload, media_type="application/octet-stream")
+    except Exception as e:
+        return Response(content=f"Erro na predição: {str(e)}", status_code=500, media_type="text/plain")
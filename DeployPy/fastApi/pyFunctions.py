@@ -3,6 +3,7 @@ import cv2
 import math
 import numpy as np
 import requests
+import struct
 import tempfile
 import torch
 import torch.nn.functional as F
@@ -66,7 +67,7 @@ def overlay_mask(image, mask, color=(255, 0, 255), alpha=0.5):
 # Predição via MLflow
 # =====================
 
-def predict_from_coords(lat, lon, model, device='cpu'):
+def predict_mask_from_coords(lat, lon, model, device='cpu'):
     img = download_centered_tile(lat, lon)
     original = np.array(img)
     h, w, _ = original.shape
@@ -85,5 +86,33 @@ def predict_from_coords(lat, lon, model, device='cpu'):
         pred = F.interpolate(pred, size=(h, w), mode='bilinear', align_corners=False)
         mask = (pred.squeeze().cpu().numpy() > 0.5).astype(np.uint8)
 
+    return original, mask
+
+def predict_from_coords(lat, lon, model, device='cpu'):
+    original, mask = predict_mask_from_coords(lat, lon, model, device)
     overlay = overlay_mask(original, mask)
     return overlay, mask
+
+# =====================
+# Protocolo compacto (máscara + tile)
+# =====================
+
+MASK_MAGIC = b"SDM1"
+TILE_RAW_RGB = 0
+TILE_JPEG = 1
+
+def encode_mask_payload(original, mask, tile_format="jpeg"):
+    # magic(4) | width(2) | height(2) | tile_encoding(1) | reservado(3) | mask_len(4) | mask
+    # | tile_len(4) | tile -- inteiros big-endian, máscara com 1 bit por pixel (MSB primeiro)
+    h, w = mask.shape
+    packed = np.packbits(mask.astype(bool), axis=None).tobytes()
+    if tile_format == "raw":
+        tile = np.ascontiguousarray(original, dtype=np.uint8).tobytes()
+        encoding = TILE_RAW_RGB
+    else:
+        buffer = io.BytesIO()
+        Image.fromarray(original).save(buffer, format="JPEG", quality=90)
+        tile = buffer.getvalue()
+        encoding = TILE_JPEG
+    header = struct.pack(">4sHHB3xI", MASK_MAGIC, w, h, encoding, len(packed))
+    return header + packed + struct.pack(">I", len(tile)) + tile
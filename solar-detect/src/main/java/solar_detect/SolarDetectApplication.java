@@ -2,8 +2,10 @@ package solar_detect;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class SolarDetectApplication {
 
 	public static void main(String[] args) {
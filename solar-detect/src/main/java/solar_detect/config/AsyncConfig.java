@@ -0,0 +1,17 @@
+package solar_detect.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class AsyncConfig {
+
+    // Chamadas ao backend passam a maior parte do tempo bloqueadas em I/O; virtual threads evitam um pool fixo
+    @Bean(destroyMethod = "close")
+    public ExecutorService predictionExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
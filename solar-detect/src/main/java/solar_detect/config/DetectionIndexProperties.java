@@ -0,0 +1,19 @@
+package solar_detect.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+@Configuration
+@ConfigurationProperties(prefix = "detection-index")
+@Data
+public class DetectionIndexProperties {
+
+    private boolean enabled = true;
+    private int cellPixels = 1024; // lado da célula do grid no zoom 19 (~300 m no equador)
+    private double maxRadiusMeters = 5000;
+    private int maxResults = 100;
+    private int maxScanCells = 65_536; // células lidas por consulta; perto dos polos o raio cobre muitas mais
+    private int loadFetchSize = 10_000; // linhas de request_logs por ida ao banco na carga inicial
+}
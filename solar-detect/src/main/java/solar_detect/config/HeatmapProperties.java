@@ -0,0 +1,22 @@
+package solar_detect.config;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+@Configuration
+@ConfigurationProperties(prefix = "heatmap")
+@Data
+public class HeatmapProperties {
+
+    private boolean enabled = true;
+    private List<Integer> precisions = List.of(2, 3, 4, 5, 6, 7); // níveis mantidos em memória; no máximo 7
+    private int maxCells = 4096; // células do viewport que uma consulta pode percorrer
+    private Duration flushInterval = Duration.ofSeconds(30);
+    private Duration refreshInterval = Duration.ofMinutes(10); // releitura de heatmap_cells (contagens de outras réplicas)
+    private int loadFetchSize = 10_000;
+}
@@ -0,0 +1,59 @@
+package solar_detect.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+@Configuration
+@ConfigurationProperties(prefix = "inference")
+@Data
+public class InferenceProperties {
+
+    private String baseUrl = "http://fastapi:8000"; // usado quando endpoints está vazio
+    private List<String> endpoints = new ArrayList<>();
+    private Protocol protocol = Protocol.OVERLAY;
+    // Tile original no payload de máscara. raw (RGB, 192 KB num tile de 256 px) dá o mesmo overlay do Python;
+    // jpeg ocupa ~10x menos no cache e no store, mas o overlay sai sobre um tile já com perdas
+    private String maskTileFormat = "raw";
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    private Duration readTimeout = Duration.ofSeconds(60);
+    private Duration connectionRequestTimeout = Duration.ofSeconds(5); // espera por uma conexão livre no pool
+    private int maxConnections = 50;
+    private Duration keepAlive = Duration.ofSeconds(30);
+    private Duration idleEviction = Duration.ofSeconds(60);
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private HealthCheck healthCheck = new HealthCheck();
+
+    public enum Protocol {
+        OVERLAY, // FastAPI devolve o PNG com o overlay pronto (/predict)
+        MASK // FastAPI devolve máscara + tile (/predict/mask) e o overlay é montado aqui
+    }
+
+    @Data
+    public static class CircuitBreaker {
+        private boolean enabled = true;
+        private int windowSize = 20; // últimas N chamadas consideradas no cálculo das taxas
+        private int minimumCalls = 10;
+        private double failureRateThreshold = 0.5;
+        private double slowCallRateThreshold = 0.8;
+        private Duration slowCallDuration = Duration.ofSeconds(20);
+        private Duration openDuration = Duration.ofSeconds(30);
+        private int halfOpenCalls = 3; // chamadas de teste permitidas antes de decidir se fecha
+    }
+
+    @Data
+    public static class HealthCheck {
+        private boolean enabled = true;
+        private String path = "/health";
+        private Duration interval = Duration.ofSeconds(5);
+        private Duration timeout = Duration.ofSeconds(2);
+        private int unhealthyThreshold = 2; // falhas consecutivas para ejetar a réplica
+        private int healthyThreshold = 2; // sucessos consecutivos (health check ou chamadas de teste) para reintegrá-la
+        private Duration ejectionCooldown = Duration.ofSeconds(30); // ejetada, recebe uma chamada de teste depois disso
+    }
+}
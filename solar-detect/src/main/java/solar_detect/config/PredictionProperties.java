@@ -0,0 +1,79 @@
+package solar_detect.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Data;
+
+@Configuration
+@ConfigurationProperties(prefix = "prediction")
+@Data
+public class PredictionProperties {
+
+    private Cache cache = new Cache();
+    private Store store = new Store();
+    private Batch batch = new Batch();
+    private Bulkhead bulkhead = new Bulkhead();
+    private Streaming streaming = new Streaming();
+    private Render render = new Render();
+    private Vector vector = new Vector();
+    private HttpCache httpCache = new HttpCache();
+
+    @Data
+    public static class Cache {
+        private boolean enabled = true;
+        private int gridPixels = 16; // ~5 m no zoom 19 próximo ao equador; dividindo 128, alinha com os tiles da varredura
+        private DataSize maxSize = DataSize.ofMegabytes(256);
+        private Duration maxAge; // depois disso a entrada só é usada como fallback; null = nunca expira
+        private DataSize derivedMaxSize = DataSize.ofMegabytes(32); // GeoJSON e outros resultados derivados da máscara
+    }
+
+    @Data
+    public static class Store {
+        private boolean enabled = true;
+        private String directory = "./data/prediction-store";
+        private DataSize maxSize = DataSize.ofGigabytes(2);
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        private double compactionThreshold = 0.5; // fração mínima de bytes vivos antes de compactar
+        private DataSize sendfileMinSize = DataSize.ofKilobytes(48); // hits menores saem pelo buffer mapeado; 0 desliga o sendfile
+    }
+
+    @Data
+    public static class Batch {
+        private int parallelism = 8; // chamadas simultâneas ao backend por lote
+    }
+
+    @Data
+    public static class Bulkhead {
+        private int maxConcurrent = 32; // chamadas simultâneas ao FastAPI, somando todas as requisições
+        private Duration maxWait = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Streaming {
+        private boolean enabled = false;
+        private DataSize stagingBufferSize = DataSize.ofMegabytes(1); // imagens maiores não são gravadas no store
+        private int maxStagingBuffers = 32;
+    }
+
+    @Data
+    public static class Render {
+        private float jpegQuality = 0.9f;
+        private int pngCompressionLevel = 1; // overlays são gerados a cada requisição; compressão rápida
+        private int maxScratchBuffers = 16; // conjuntos de buffers de renderização mantidos para reuso
+    }
+
+    @Data
+    public static class Vector {
+        private double simplifyTolerance = 0.75; // Douglas-Peucker, em pixels do zoom 19
+    }
+
+    @Data
+    public static class HttpCache {
+        private Duration maxAge = Duration.ofHours(1); // Cache-Control das respostas de GET /api/predict
+        private boolean shared = false; // true = public, para CDN e proxies guardarem a resposta
+    }
+}
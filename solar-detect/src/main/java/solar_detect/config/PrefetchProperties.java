@@ -0,0 +1,22 @@
+package solar_detect.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+@Configuration
+@ConfigurationProperties(prefix = "prefetch")
+@Data
+public class PrefetchProperties {
+
+    private boolean enabled = true;
+    private Duration lookback = Duration.ofHours(24); // janela de request_logs usada para achar os hotspots
+    private int hotspots = 100;
+    private int neighbourRings = 1; // anéis de células vizinhas em volta de cada hotspot
+    private int neighbourStepCells = 1; // distância entre vizinhos, em células de prediction.cache.grid-pixels
+    private int maxTilesPerRun = 200;
+    private double idleUtilization = 0.25; // só busca enquanto o bulkhead estiver abaixo desta fração
+}
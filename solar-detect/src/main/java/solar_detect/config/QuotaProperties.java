@@ -0,0 +1,32 @@
+package solar_detect.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+@Configuration
+@ConfigurationProperties(prefix = "quota")
+@Data
+public class QuotaProperties {
+
+    public enum Mode {
+        DATABASE, // lê e grava request_quotas em toda requisição
+        MEMORY, // buckets em memória com write-behind; uma instância só
+        LEASE // cada instância aluga blocos de request_quotas e gasta localmente
+    }
+
+    private Mode mode = Mode.MEMORY;
+    private Duration flushInterval = Duration.ofSeconds(5); // atraso máximo entre um consumo e request_quotas
+    private Lease lease = new Lease();
+
+    @Data
+    public static class Lease {
+        private Duration duration = Duration.ofSeconds(5); // sobras voltam ao banco depois disso
+        private int minSize = 1;
+        private int maxSize = 10; // limitado também pela capacidade do papel
+        private Duration sweepInterval = Duration.ofSeconds(1); // frequência com que aluguéis vencidos são devolvidos
+    }
+}
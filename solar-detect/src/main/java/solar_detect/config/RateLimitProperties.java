@@ -0,0 +1,22 @@
+package solar_detect.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+@Configuration
+@ConfigurationProperties(prefix = "rate-limit")
+@Data
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+    private Duration window = Duration.ofMinutes(1);
+    private int perIp = 300; // todas as rotas /api, por IP
+    private int perIpAuth = 20; // /api/auth/**: barra força bruta antes do BCrypt
+    private int perToken = 120; // por Bearer token, antes de validar e carregar o usuário
+    private int maxEntries = 100_000; // por escopo; os mais antigos saem primeiro
+    private int stripes = 64;
+}
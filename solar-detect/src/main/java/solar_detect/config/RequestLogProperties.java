@@ -0,0 +1,40 @@
+package solar_detect.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+@Configuration
+@ConfigurationProperties(prefix = "request-log")
+@Data
+public class RequestLogProperties {
+
+    public enum Overflow {
+        CALLER_RUNS, // fila cheia: a própria requisição grava, nada se perde
+        DROP // fila cheia: o registro é descartado e contado
+    }
+
+    private int queueCapacity = 10_000;
+    private int batchSize = 500;
+    private Duration pollInterval = Duration.ofMillis(200);
+    private Overflow overflow = Overflow.CALLER_RUNS;
+    private int maxAttempts = 3;
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+    private Partitions partitions = new Partitions();
+
+    public enum Retention {
+        DROP, // a partição vencida é apagada
+        DETACH // sai de request_logs mas fica como tabela avulsa, para arquivar ou exportar
+    }
+
+    @Data
+    public static class Partitions {
+        private boolean enabled = true;
+        private int monthsAhead = 2; // partições mensais criadas além da atual
+        private int retentionMonths = 12; // meses completos mantidos além do atual; 0 = para sempre
+        private Retention retention = Retention.DROP;
+    }
+}
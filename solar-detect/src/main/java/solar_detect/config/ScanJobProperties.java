@@ -0,0 +1,17 @@
+package solar_detect.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+@Configuration
+@ConfigurationProperties(prefix = "scan-jobs")
+@Data
+public class ScanJobProperties {
+
+    private boolean enabled = true;
+    private int concurrency = 8; // tiles processados ao mesmo tempo, somando todos os jobs
+    private int maxTilesPerJob = 20_000;
+    private int maxActiveJobsPerUser = 3;
+}
@@ -0,0 +1,17 @@
+package solar_detect.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+@Configuration
+@ConfigurationProperties(prefix = "usage")
+@Data
+public class UsageProperties {
+
+    private Duration flushInterval = Duration.ofSeconds(30); // atraso máximo dos relatórios em relação ao log
+    private Duration maxRange = Duration.ofDays(31); // limita as horas devolvidas por consulta
+}
@@ -0,0 +1,23 @@
+package solar_detect.config;
+
+import java.util.concurrent.ExecutorService;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import lombok.RequiredArgsConstructor;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final ExecutorService predictionExecutor;
+
+    // StreamingResponseBody (imagens e lote NDJSON) também roda em virtual threads
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(predictionExecutor));
+    }
+}
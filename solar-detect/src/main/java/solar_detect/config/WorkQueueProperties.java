@@ -0,0 +1,22 @@
+package solar_detect.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+@Configuration
+@ConfigurationProperties(prefix = "work-queue")
+@Data
+public class WorkQueueProperties {
+
+    private boolean enabled = true;
+    private String nodeId; // identifica a instância em locked_by; vazio = gerado na partida
+    private Duration pollInterval = Duration.ofSeconds(1); // espera quando a fila está vazia
+    private Duration visibilityTimeout = Duration.ofMinutes(2); // depois disso outro nó pode reprocessar o item
+    private int maxAttempts = 5;
+    private Duration backoffInitial = Duration.ofSeconds(5);
+    private Duration backoffMax = Duration.ofMinutes(10);
+}
@@ -0,0 +1,127 @@
+package solar_detect.controller.solar_detect_controller;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import solar_detect.config.DetectionIndexProperties;
+import solar_detect.config.HeatmapProperties;
+import solar_detect.dto.HeatmapResponse;
+import solar_detect.dto.NearbyDetection;
+import solar_detect.exceptions.BusinessException;
+import solar_detect.services.PredictionService;
+import solar_detect.services.spatial.DetectionIndex;
+import solar_detect.services.spatial.HeatmapGrid;
+import solar_detect.util.Geohash;
+import solar_detect.util.WebMercator;
+import solar_detect.util.WebMercator.LatLon;
+
+@RestController
+@RequestMapping("/api/detections")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+@Tag(name = "Detections", description = "Queries over previously predicted locations")
+public class DetectionController {
+
+    private final DetectionIndex detectionIndex;
+    private final PredictionService predictionService;
+    private final DetectionIndexProperties properties;
+    private final HeatmapGrid heatmapGrid;
+    private final HeatmapProperties heatmapProperties;
+
+    @GetMapping("/nearby")
+    @Operation(summary = "Nearby detections", description = "Previously predicted tiles within the radius, closest first. Does not consume quota")
+    public ResponseEntity<List<NearbyDetection>> nearby(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(defaultValue = "500") double radius,
+            @RequestParam(defaultValue = "20") int limit) {
+        if (!detectionIndex.isEnabled()) {
+            throw new BusinessException("Índice de detecções desabilitado");
+        }
+        if (lat < -WebMercator.MAX_LATITUDE || lat > WebMercator.MAX_LATITUDE || lon < -180 || lon > 180) {
+            throw new BusinessException("Coordenadas inválidas (latitude entre -85.05 e 85.05)");
+        }
+        if (!(radius > 0 && radius <= properties.getMaxRadiusMeters())) {
+            throw new BusinessException("radius deve estar entre 0 e " + properties.getMaxRadiusMeters() + " metros");
+        }
+        if (limit < 1 || limit > properties.getMaxResults()) {
+            throw new BusinessException("limit deve estar entre 1 e " + properties.getMaxResults());
+        }
+
+        List<NearbyDetection> results = detectionIndex.nearby(lat, lon, radius, limit).stream()
+                .map(this::toResponse)
+                .toList();
+        return ResponseEntity.ok(results);
+    }
+
+    @GetMapping("/heatmap")
+    @Operation(summary = "Request heatmap", description = "Request counts per geohash cell inside the viewport. Without precision, the finest level that fits heatmap.max-cells is used. Does not consume quota")
+    public ResponseEntity<HeatmapResponse> heatmap(
+            @RequestParam double minLat,
+            @RequestParam double minLon,
+            @RequestParam double maxLat,
+            @RequestParam double maxLon,
+            @RequestParam(required = false) Integer precision) {
+        if (!heatmapGrid.isEnabled()) {
+            throw new BusinessException("Mapa de calor desabilitado");
+        }
+        if (minLat < -90 || maxLat > 90 || minLon < -180 || maxLon > 180 || minLat > maxLat || minLon > maxLon) {
+            throw new BusinessException("Viewport inválido (viewports que cruzam o antimeridiano devem ser divididos)");
+        }
+        int level;
+        if (precision == null) {
+            level = heatmapGrid.precisionFor(minLat, minLon, maxLat, maxLon);
+        } else {
+            level = precision;
+            if (Arrays.binarySearch(heatmapGrid.precisions(), level) < 0) {
+                throw new BusinessException("precision deve ser uma de " + Arrays.toString(heatmapGrid.precisions()));
+            }
+            if (HeatmapGrid.viewportCells(minLat, minLon, maxLat, maxLon, level) > heatmapProperties.getMaxCells()) {
+                throw new BusinessException("Viewport grande demais para a precisão " + level);
+            }
+        }
+
+        List<HeatmapResponse.HeatmapCell> cells = heatmapGrid.cells(minLat, minLon, maxLat, maxLon, level).stream()
+                .map(cell -> toResponse(cell, level))
+                .toList();
+        long total = 0;
+        for (HeatmapResponse.HeatmapCell cell : cells) {
+            total += cell.getRequests();
+        }
+        return ResponseEntity.ok(HeatmapResponse.builder()
+                .precision(level)
+                .totalRequests(total)
+                .cells(cells)
+                .build());
+    }
+
+    private NearbyDetection toResponse(DetectionIndex.Nearby nearby) {
+        LatLon centre = nearby.key().centre();
+        return NearbyDetection.builder()
+                .latitude(centre.lat())
+                .longitude(centre.lon())
+                .distanceMeters(nearby.distanceMeters())
+                .cached(predictionService.isCached(nearby.key()))
+                .build();
+    }
+
+    private HeatmapResponse.HeatmapCell toResponse(HeatmapGrid.Cell cell, int precision) {
+        Geohash.Bounds bounds = Geohash.bounds(cell.cell(), precision);
+        return HeatmapResponse.HeatmapCell.builder()
+                .geohash(Geohash.toString(cell.cell(), precision))
+                .latitude(bounds.centreLat())
+                .longitude(bounds.centreLon())
+                .requests(cell.requests())
+                .build();
+    }
+}
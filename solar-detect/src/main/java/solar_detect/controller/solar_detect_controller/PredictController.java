@@ -1,7 +1,9 @@
 package solar_detect.controller.solar_detect_controller;
 
-import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -10,10 +12,13 @@ import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import io.jsonwebtoken.io.IOException;
 import io.swagger.v3.oas.annotations.Operation;
@@ -21,9 +26,15 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import solar_detect.config.PredictionProperties;
+import solar_detect.dto.BatchDetectRequest;
 import solar_detect.dto.DetectRequest;
-import solar_detect.services.QuotaService;
+import solar_detect.services.BatchPredictionService;
+import solar_detect.services.PredictionImage;
+import solar_detect.services.PredictionService;
 import solar_detect.services.UserServices;
+import solar_detect.services.cache.FileRegion;
+import solar_detect.services.render.RenderOptions;
 import org.springframework.security.core.context.SecurityContextHolder;
 import solar_detect.models.User;
 
@@ -32,53 +43,160 @@ import solar_detect.models.User;
 @CrossOrigin(origins = "*")
 @Tag(name = "Prediction", description = "Solar detection prediction endpoints")
 public class PredictController {
-    private final QuotaService quotaService;
+    // Request attributes read by Tomcat's connector once a synchronous request ends
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final PredictionService predictionService;
+    private final BatchPredictionService batchPredictionService;
     private final UserServices userService;
+    private final CacheControl cacheControl;
+    private final long sendfileMinBytes;
 
-    public PredictController(QuotaService quotaService, UserServices userService) {
-        this.quotaService = quotaService;
+    public PredictController(PredictionService predictionService, BatchPredictionService batchPredictionService,
+            UserServices userService, PredictionProperties properties) {
+        this.predictionService = predictionService;
+        this.batchPredictionService = batchPredictionService;
         this.userService = userService;
+        this.cacheControl = cacheControl(properties.getHttpCache());
+        this.sendfileMinBytes = properties.getStore().getSendfileMinSize().toBytes();
     }
 
     @GetMapping("/predict")
-    @Operation(summary = "Get solar prediction", description = "Get solar panel detection prediction for given coordinates")
+    @Operation(summary = "Get solar prediction", description = "Get solar panel detection prediction for given coordinates. format (png, jpeg, mask, geojson, stats), color (RRGGBB) and alpha require the mask inference protocol")
     @ApiResponse(responseCode = "200", description = "Successfully retrieved prediction image", content = @Content(mediaType = "image/png"))
-    public ResponseEntity<byte[]> predictGet(
+    @ApiResponse(responseCode = "304", description = "If-None-Match matches the cached prediction; no quota is consumed")
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> predictGet(
             @RequestParam Float lat,
-            @RequestParam Float lon) throws IOException {
-        // Get current user and check quota
-        User currentUser = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        quotaService.checkAndUpdateQuota(currentUser, lat, lon);
-
-        String url = String.format(Locale.US,
-                "http://fastapi:8000/predict?lat=%.6f&lon=%.6f", lat, lon);
-
-        RestTemplate restTemplate = new RestTemplate();
-        byte[] imageBytes = restTemplate.getForObject(url, byte[].class);
+            @RequestParam Float lon,
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) String color,
+            @RequestParam(required = false) Double alpha,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        RenderOptions options = RenderOptions.of(format, color, alpha);
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.IMAGE_PNG);
+        // Revalidation is answered from the cache alone: no quota write and no backend call
+        if (ifNoneMatch != null) {
+            String etag = predictionService.cachedETag(lat, lon, options);
+            if (etag != null && etagMatches(ifNoneMatch, etag)) {
+                ResponseEntity<StreamingResponseBody> notModified = ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .cacheControl(cacheControl)
+                        .build();
+                return CompletableFuture.completedFuture(notModified);
+            }
+        }
 
-        return new ResponseEntity<>(imageBytes, headers, HttpStatus.OK);
+        // Quota is checked on the request thread; only the backend call runs asynchronously
+        User currentUser = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        CompletableFuture<PredictionImage> image = predictionService.predictAsync(currentUser, lat, lon, options);
+        if (sendfile(image, options, cacheControl, request, response)) {
+            return null;
+        }
+        return image.thenApply(resolved -> imageResponse(resolved, options, cacheControl, response));
     }
 
     @PostMapping("/predict/detect")
     @Operation(summary = "Post solar prediction", description = "Get solar panel detection prediction via POST request")
     @ApiResponse(responseCode = "200", description = "Successfully retrieved prediction image", content = @Content(mediaType = "image/png"))
-    public ResponseEntity<byte[]> predictPost(@Valid @RequestBody DetectRequest request) {
-        // Get current user and check quota
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> predictPost(
+            @Valid @RequestBody DetectRequest request,
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) String color,
+            @RequestParam(required = false) Double alpha,
+            HttpServletRequest servletRequest,
+            HttpServletResponse response) {
         User currentUser = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        quotaService.checkAndUpdateQuota(currentUser, request.getLat(), request.getLon());
+        RenderOptions options = RenderOptions.of(format, color, alpha);
+        CompletableFuture<PredictionImage> image = predictionService.predictAsync(currentUser, request.getLat(),
+                request.getLon(), options);
+        if (sendfile(image, options, null, servletRequest, response)) {
+            return null;
+        }
+        return image.thenApply(resolved -> imageResponse(resolved, options, null, response));
+    }
 
-        // Call Python FastAPI backend via POST with JSON body
-        String pythonUrl = "http://fastapi:8000/predict";
+    @PostMapping(value = "/predict/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Batch solar prediction", description = "Reserve quota for all points at once and stream one NDJSON line per point as it completes")
+    @ApiResponse(responseCode = "200", description = "One JSON object per line with the base64 PNG or the error for each point", content = @Content(mediaType = "application/x-ndjson"))
+    public ResponseEntity<StreamingResponseBody> predictBatch(@Valid @RequestBody BatchDetectRequest request) {
+        User currentUser = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        StreamingResponseBody body = batchPredictionService.predictBatch(currentUser, request.getPoints());
 
-        RestTemplate restTemplate = new RestTemplate();
-        byte[] response = restTemplate.postForObject(pythonUrl, request, byte[].class);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
 
+    // Content-Length is only known once the image (or the upstream response) is resolved,
+    // so it is set on the servlet response right before the first byte is written
+    private static ResponseEntity<StreamingResponseBody> imageResponse(PredictionImage image, RenderOptions options,
+            CacheControl cacheControl, HttpServletResponse response) {
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.IMAGE_PNG);
+        headers.setContentType(options.format().mediaType());
+        // Streamed responses have no ETag (the content is unknown when headers go out) and are not cached
+        if (cacheControl != null && image.etag() != null) {
+            headers.setETag(image.etag());
+            headers.setCacheControl(cacheControl);
+        }
+
+        StreamingResponseBody body = out -> image.writeTo(out, response::setContentLengthLong);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    /*
+     * Disk store hits that are already resolved are handed to Tomcat's sendfile: the connector copies the
+     * segment region from the page cache to the socket, with no JVM buffer in between. Tomcat only honours
+     * it for synchronous requests, so the handler returns null (the response is complete) instead of a
+     * future. Anything else, including HTTPS connectors and small images, is streamed from the mapped buffer.
+     */
+    private boolean sendfile(CompletableFuture<PredictionImage> future, RenderOptions options,
+            CacheControl cacheControl, HttpServletRequest request, HttpServletResponse response) {
+        if (sendfileMinBytes <= 0 || future.state() != Future.State.SUCCESS
+                || !Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            return false;
+        }
+        PredictionImage image = future.resultNow();
+        FileRegion region = image.fileRegion();
+        if (region == null || region.length() < sendfileMinBytes) {
+            return false;
+        }
+
+        response.setContentType(options.format().mediaType().toString());
+        response.setContentLengthLong(region.length());
+        if (cacheControl != null && image.etag() != null) {
+            response.setHeader(HttpHeaders.ETAG, image.etag());
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        }
+        request.setAttribute(SENDFILE_FILENAME, region.path().toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START, region.offset());
+        request.setAttribute(SENDFILE_END, region.end());
+        return true;
+    }
+
+    // Any entry of a comma-separated If-None-Match list, weak or strong, or "*"
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        return new ResponseEntity<>(response, headers, HttpStatus.OK);
+    private static CacheControl cacheControl(PredictionProperties.HttpCache config) {
+        if (config.getMaxAge().isZero()) {
+            return CacheControl.noCache();
+        }
+        CacheControl cacheControl = CacheControl.maxAge(config.getMaxAge());
+        return config.isShared() ? cacheControl.cachePublic() : cacheControl.cachePrivate();
     }
 }
@@ -0,0 +1,110 @@
+package solar_detect.controller.solar_detect_controller;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import solar_detect.dto.ScanJobRequest;
+import solar_detect.dto.ScanJobResponse;
+import solar_detect.dto.ScanResultsPage;
+import solar_detect.exceptions.ResourceGoneException;
+import solar_detect.models.ScanTile;
+import solar_detect.models.User;
+import solar_detect.services.PredictionImage;
+import solar_detect.services.PredictionService;
+import solar_detect.services.render.RenderOptions;
+import solar_detect.services.scan.ScanJobService;
+
+@RestController
+@RequestMapping("/api/scan-jobs")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+@Tag(name = "Area scan", description = "Asynchronous solar detection over a bounding box or GeoJSON polygon")
+public class ScanJobController {
+
+    private final ScanJobService scanJobService;
+    private final PredictionService predictionService;
+
+    @PostMapping
+    @Operation(summary = "Create scan job", description = "Split the area into zoom-19 tiles and process them in the background")
+    @ApiResponse(responseCode = "202", description = "Job accepted; poll its progress at the Location header")
+    public ResponseEntity<ScanJobResponse> createJob(@Valid @RequestBody ScanJobRequest request) {
+        User currentUser = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        ScanJobResponse job = scanJobService.createJob(currentUser, request);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/scan-jobs/" + job.getId()))
+                .body(job);
+    }
+
+    @GetMapping
+    @Operation(summary = "List scan jobs", description = "List the current user's scan jobs, newest first")
+    public ResponseEntity<List<ScanJobResponse>> listJobs() {
+        User currentUser = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return ResponseEntity.ok(scanJobService.listJobs(currentUser));
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get scan job", description = "Get the status and progress of a scan job")
+    public ResponseEntity<ScanJobResponse> getJob(@PathVariable Long id) {
+        User currentUser = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return ResponseEntity.ok(scanJobService.getJob(currentUser, id));
+    }
+
+    @GetMapping("/{id}/results")
+    @Operation(summary = "Get scan results", description = "Paginated per-tile results, optionally filtered by status")
+    public ResponseEntity<ScanResultsPage> getResults(
+            @PathVariable Long id,
+            @RequestParam(required = false) ScanTile.Status status,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size) {
+        User currentUser = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return ResponseEntity.ok(scanJobService.getResults(currentUser, id, status, page, size));
+    }
+
+    @GetMapping("/{id}/tiles/{index}/image")
+    @Operation(summary = "Get tile image", description = "Prediction image of a processed tile")
+    @ApiResponse(responseCode = "200", description = "Prediction image", content = @Content(mediaType = "image/png"))
+    @ApiResponse(responseCode = "410", description = "The tile finished without a stored result")
+    public ResponseEntity<StreamingResponseBody> getTileImage(@PathVariable Long id, @PathVariable int index) {
+        User currentUser = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        ScanTile tile = scanJobService.getFinishedTile(currentUser, id, index);
+        // Servida do resultado guardado com o job; nunca volta ao backend
+        ByteBuffer image = scanJobService.findResult(tile)
+                .map(stored -> predictionService.renderStored(stored, tile.getLatitude(), tile.getLongitude(),
+                        RenderOptions.DEFAULT))
+                .orElseThrow(() -> new ResourceGoneException("Resultado do tile não está mais disponível"));
+
+        PredictionImage prediction = PredictionImage.of(image);
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .contentLength(image.remaining())
+                .body(out -> prediction.writeTo(out, length -> { }));
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Cancel scan job", description = "Stop processing the remaining tiles of a scan job")
+    public ResponseEntity<ScanJobResponse> cancelJob(@PathVariable Long id) {
+        User currentUser = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return ResponseEntity.ok(scanJobService.cancelJob(currentUser, id));
+    }
+}
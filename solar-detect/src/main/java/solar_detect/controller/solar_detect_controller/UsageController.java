@@ -0,0 +1,51 @@
+package solar_detect.controller.solar_detect_controller;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import solar_detect.config.UsageProperties;
+import solar_detect.dto.UsageReport;
+import solar_detect.exceptions.BusinessException;
+import solar_detect.models.User;
+import solar_detect.services.usage.UsageRollupService;
+
+@RestController
+@RequestMapping("/api/usage")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+@Tag(name = "Usage", description = "Hourly usage reports read from pre-aggregated rollups")
+public class UsageController {
+
+    private final UsageRollupService usageRollupService;
+    private final UsageProperties properties;
+
+    @GetMapping("/me")
+    @Operation(summary = "My hourly usage", description = "Predictions per hour for the current user (default: last 24 hours). Recent traffic appears after usage.flush-interval")
+    public ResponseEntity<UsageReport> myUsage(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        User currentUser = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusHours(24);
+        if (!start.isBefore(end)) {
+            throw new BusinessException("from deve ser anterior a to");
+        }
+        if (Duration.between(start, end).compareTo(properties.getMaxRange()) > 0) {
+            throw new BusinessException("Intervalo máximo de " + properties.getMaxRange().toDays() + " dias");
+        }
+
+        return ResponseEntity.ok(usageRollupService.report(currentUser.getId(), start, end));
+    }
+}
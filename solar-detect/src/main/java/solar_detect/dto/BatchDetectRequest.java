@@ -0,0 +1,15 @@
+package solar_detect.dto;
+
+import java.util.List;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+@Data
+public class BatchDetectRequest {
+    @NotEmpty(message = "points é obrigatório")
+    @Size(max = 500, message = "no máximo 500 pontos por lote")
+    private List<@Valid DetectRequest> points;
+}
@@ -0,0 +1,22 @@
+package solar_detect.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchPredictionResult {
+    private int index;
+    private Float lat;
+    private Float lon;
+    private String status; // "ok" ou "error"
+    private String image; // PNG em base64
+    private String error;
+}
@@ -0,0 +1,29 @@
+package solar_detect.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HeatmapResponse {
+    private int precision; // caracteres do geohash das células
+    private long totalRequests;
+    private List<HeatmapCell> cells; // só células com requisições
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class HeatmapCell {
+        private String geohash;
+        private double latitude; // centro da célula
+        private double longitude;
+        private long requests;
+    }
+}
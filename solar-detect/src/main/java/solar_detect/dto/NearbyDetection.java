@@ -0,0 +1,17 @@
+package solar_detect.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyDetection {
+    private double latitude; // centro do tile da predição
+    private double longitude;
+    private double distanceMeters;
+    private boolean cached; // resultado ainda disponível no cache/store, sem nova inferência
+}
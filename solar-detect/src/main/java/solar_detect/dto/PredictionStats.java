@@ -0,0 +1,20 @@
+package solar_detect.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PredictionStats {
+    private double latitude; // centro do tile analisado
+    private double longitude;
+    private int panelCount; // regiões conectadas na máscara (vizinhança 4)
+    private long panelPixels;
+    private double panelAreaM2;
+    private double coverage; // fração do tile coberta por painéis
+    private double metersPerPixel;
+}
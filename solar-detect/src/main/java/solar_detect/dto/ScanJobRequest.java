@@ -0,0 +1,43 @@
+package solar_detect.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class ScanJobRequest {
+    @Valid
+    private BoundingBox bbox;
+
+    // Geometria GeoJSON (Polygon, MultiPolygon ou Feature com uma delas)
+    private JsonNode geometry;
+
+    @AssertTrue(message = "Informe exatamente um entre bbox e geometry")
+    public boolean isSingleArea() {
+        return (bbox == null) != (geometry == null || geometry.isNull());
+    }
+
+    @Data
+    public static class BoundingBox {
+        @NotNull(message = "minLat é obrigatória")
+        @DecimalMin("-85.0") @DecimalMax("85.0")
+        private Double minLat;
+
+        @NotNull(message = "minLon é obrigatória")
+        @DecimalMin("-180.0") @DecimalMax("180.0")
+        private Double minLon;
+
+        @NotNull(message = "maxLat é obrigatória")
+        @DecimalMin("-85.0") @DecimalMax("85.0")
+        private Double maxLat;
+
+        @NotNull(message = "maxLon é obrigatória")
+        @DecimalMin("-180.0") @DecimalMax("180.0")
+        private Double maxLon;
+    }
+}
@@ -0,0 +1,23 @@
+package solar_detect.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanJobResponse {
+    private Long id;
+    private String status;
+    private int totalTiles;
+    private int completedTiles;
+    private int failedTiles;
+    private double progress; // 0.0 a 1.0
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,20 @@
+package solar_detect.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanResultsPage {
+    private List<ScanTileResult> content;
+    private int page;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+}
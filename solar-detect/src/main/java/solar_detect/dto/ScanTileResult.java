@@ -0,0 +1,22 @@
+package solar_detect.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScanTileResult {
+    private int index;
+    private double lat;
+    private double lon;
+    private String status;
+    private String error;
+    private String imageUrl;
+}
@@ -0,0 +1,30 @@
+package solar_detect.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UsageReport {
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private long totalRequests;
+    private List<HourlyUsage> hours; // só horas com uso, em ordem
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class HourlyUsage {
+        private LocalDateTime hour; // início da hora
+        private String role;
+        private long requests;
+    }
+}
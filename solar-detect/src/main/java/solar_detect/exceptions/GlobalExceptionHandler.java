@@ -4,6 +4,7 @@ import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -97,6 +98,19 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
     }
 
+    @ExceptionHandler(ResourceGoneException.class)
+    public ResponseEntity<ErrorResponse> handleResourceGoneException(ResourceGoneException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+            "Recurso indisponível",
+            ex.getMessage(),
+            HttpStatus.GONE.value(),
+            LocalDateTime.now(),
+            null
+        );
+
+        return ResponseEntity.status(HttpStatus.GONE).body(errorResponse);
+    }
+
     @ExceptionHandler(BusinessException.class)
     public ResponseEntity<ErrorResponse> handleBusinessException(BusinessException ex) {
         ErrorResponse errorResponse = new ErrorResponse(
@@ -123,6 +137,21 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(errorResponse);
     }
 
+    @ExceptionHandler(InferenceUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleInferenceUnavailableException(InferenceUnavailableException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+            "Serviço de inferência indisponível",
+            ex.getMessage(),
+            HttpStatus.SERVICE_UNAVAILABLE.value(),
+            LocalDateTime.now(),
+            null
+        );
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<?> handleRuntimeException(RuntimeException ex) {
         Map<String, String> error = new HashMap<>();
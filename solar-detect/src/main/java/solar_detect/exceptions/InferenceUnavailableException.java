@@ -0,0 +1,20 @@
+package solar_detect.exceptions;
+
+public class InferenceUnavailableException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public InferenceUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public InferenceUnavailableException(String message, long retryAfterSeconds, Throwable cause) {
+        super(message, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,12 @@
+package solar_detect.exceptions;
+
+public class ResourceGoneException extends RuntimeException {
+    
+    public ResourceGoneException(String message) {
+        super(message);
+    }
+    
+    public ResourceGoneException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
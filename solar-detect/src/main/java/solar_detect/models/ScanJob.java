@@ -0,0 +1,52 @@
+package solar_detect.models;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "scan_jobs")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String area;
+
+    private int totalTiles;
+    private int completedTiles;
+    private int failedTiles;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+
+    public enum Status {
+        RUNNING, COMPLETED, CANCELLED
+    }
+}
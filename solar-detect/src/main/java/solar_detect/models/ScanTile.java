@@ -0,0 +1,51 @@
+package solar_detect.models;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "scan_tiles")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanTile {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Só o id: o worker processa milhares de tiles sem precisar carregar o job
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+
+    private int tileIndex;
+    private long tileX;
+    private long tileY;
+    private double latitude;
+    private double longitude;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    private LocalDateTime completedAt;
+
+    public enum Status {
+        PENDING, DONE, FAILED
+    }
+}
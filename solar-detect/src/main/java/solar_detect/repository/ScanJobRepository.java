@@ -0,0 +1,33 @@
+package solar_detect.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import solar_detect.models.ScanJob;
+import solar_detect.models.User;
+
+public interface ScanJobRepository extends JpaRepository<ScanJob, Long> {
+    Optional<ScanJob> findByIdAndUser(Long id, User user);
+
+    List<ScanJob> findByUserOrderByCreatedAtDesc(User user);
+
+    long countByUserAndStatus(User user, ScanJob.Status status);
+
+    // Contadores atualizados no banco para não perder incrementos de workers concorrentes
+    @Modifying
+    @Query("UPDATE ScanJob j SET j.completedTiles = j.completedTiles + :completed, "
+            + "j.failedTiles = j.failedTiles + :failed WHERE j.id = :id")
+    int incrementProgress(@Param("id") Long id, @Param("completed") int completed, @Param("failed") int failed);
+
+    @Modifying
+    @Query("UPDATE ScanJob j SET j.status = solar_detect.models.ScanJob.Status.COMPLETED, j.finishedAt = :now "
+            + "WHERE j.id = :id AND j.status = solar_detect.models.ScanJob.Status.RUNNING "
+            + "AND j.completedTiles + j.failedTiles >= j.totalTiles")
+    int completeIfFinished(@Param("id") Long id, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,17 @@
+package solar_detect.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import solar_detect.models.ScanTile;
+
+public interface ScanTileRepository extends JpaRepository<ScanTile, Long> {
+    Page<ScanTile> findByJobIdOrderByTileIndex(Long jobId, Pageable pageable);
+
+    Page<ScanTile> findByJobIdAndStatusOrderByTileIndex(Long jobId, ScanTile.Status status, Pageable pageable);
+
+    Optional<ScanTile> findByJobIdAndTileIndex(Long jobId, int tileIndex);
+}
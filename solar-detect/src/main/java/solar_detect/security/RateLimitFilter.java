@@ -0,0 +1,111 @@
+package solar_detect.security;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import solar_detect.config.RateLimitProperties;
+import solar_detect.exceptions.ErrorResponse;
+
+/**
+ * Limite de taxa antes da autenticação: roda antes do JwtAuthenticationFilter,
+ * então uma requisição recusada não chega a carregar o usuário do banco nem a
+ * passar pelo BCrypt do login. Conta por IP (com limite menor em /api/auth)
+ * e, quando há Bearer token, também por token. O IP é o getRemoteAddr; atrás
+ * de proxy, server.forward-headers-strategy faz dele o IP do cliente.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String AUTH_PATH = "/api/auth/";
+    private static final String BEARER = "Bearer ";
+    private static final int TOKEN_KEY_CHARS = 43; // a assinatura HS256 em base64url já identifica o token
+
+    private final RateLimitProperties properties;
+    private final ObjectMapper objectMapper;
+    private final SlidingWindowRateLimiter perIp;
+    private final SlidingWindowRateLimiter perIpAuth;
+    private final SlidingWindowRateLimiter perToken;
+    private final Counter rejectedByIp;
+    private final Counter rejectedByToken;
+
+    public RateLimitFilter(RateLimitProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        long window = properties.getWindow().toMillis();
+        this.perIp = new SlidingWindowRateLimiter(window, properties.getPerIp(), properties.getMaxEntries(),
+                properties.getStripes());
+        this.perIpAuth = new SlidingWindowRateLimiter(window, properties.getPerIpAuth(), properties.getMaxEntries(),
+                properties.getStripes());
+        this.perToken = new SlidingWindowRateLimiter(window, properties.getPerToken(), properties.getMaxEntries(),
+                properties.getStripes());
+
+        this.rejectedByIp = Counter.builder("rate-limit.rejected").tag("scope", "ip").register(meterRegistry);
+        this.rejectedByToken = Counter.builder("rate-limit.rejected").tag("scope", "token").register(meterRegistry);
+        Gauge.builder("rate-limit.keys", this, filter -> filter.perIp.size() + filter.perIpAuth.size()
+                + filter.perToken.size()).register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !properties.isEnabled()
+                || HttpMethod.OPTIONS.matches(request.getMethod())
+                || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain) throws ServletException, IOException {
+
+        long now = System.currentTimeMillis();
+        String ip = request.getRemoteAddr();
+        SlidingWindowRateLimiter ipLimiter = request.getRequestURI().startsWith(AUTH_PATH) ? perIpAuth : perIp;
+        long wait = ipLimiter.tryAcquire(ip, now);
+        if (wait > 0) {
+            rejectedByIp.increment();
+            reject(response, wait);
+            return;
+        }
+
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER) && header.length() > BEARER.length()) {
+            String key = header.substring(Math.max(BEARER.length(), header.length() - TOKEN_KEY_CHARS));
+            wait = perToken.tryAcquire(key, now);
+            if (wait > 0) {
+                rejectedByToken.increment();
+                reject(response, wait);
+                return;
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private void reject(HttpServletResponse response, long waitMillis) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (waitMillis + 999) / 1000)));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorResponse(
+                "Muitas requisições",
+                "Limite de requisições excedido. Tente novamente em instantes.",
+                HttpStatus.TOO_MANY_REQUESTS.value(),
+                LocalDateTime.now()));
+    }
+}
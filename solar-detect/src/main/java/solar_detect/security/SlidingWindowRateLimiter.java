@@ -0,0 +1,109 @@
+package solar_detect.security;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Contador de janela deslizante aproximada: guarda só as contagens da janela
+ * fixa atual e da anterior, e estima a deslizante pesando a anterior pela
+ * fração que ainda cai dentro dela. As chaves ficam em faixas independentes,
+ * cada uma um LinkedHashMap em ordem de acesso com lock próprio e tamanho
+ * máximo; chaves paradas há mais de uma janela são removidas aos poucos, a
+ * cada acesso, e o excesso sai pela mais antiga.
+ */
+final class SlidingWindowRateLimiter {
+
+    private static final class Counter {
+        private long window;
+        private int current;
+        private int previous;
+    }
+
+    private static final class Stripe extends LinkedHashMap<String, Counter> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final int maxEntries;
+
+        private Stripe(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Counter> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    private final long windowMillis;
+    private final int limit;
+    private final Stripe[] stripes;
+
+    SlidingWindowRateLimiter(long windowMillis, int limit, int maxEntries, int stripeCount) {
+        this.windowMillis = windowMillis;
+        this.limit = limit;
+        int count = Integer.highestOneBit(Math.max(1, stripeCount));
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(Math.max(1, maxEntries / count));
+        }
+    }
+
+    // 0 se a requisição cabe (e foi contada); senão, milissegundos até a janela atual acabar
+    long tryAcquire(String key, long now) {
+        long window = now / windowMillis;
+        long elapsed = now - window * windowMillis;
+        Stripe stripe = stripes[spread(key.hashCode()) & (stripes.length - 1)];
+        stripe.lock.lock();
+        try {
+            evictIdle(stripe, window);
+            Counter counter = stripe.get(key);
+            if (counter == null) {
+                counter = new Counter();
+                counter.window = window;
+                stripe.put(key, counter);
+            } else if (counter.window != window) {
+                counter.previous = counter.window == window - 1 ? counter.current : 0;
+                counter.current = 0;
+                counter.window = window;
+            }
+            double estimate = counter.previous * (double) (windowMillis - elapsed) / windowMillis + counter.current;
+            if (estimate + 1 > limit) {
+                return windowMillis - elapsed;
+            }
+            counter.current++;
+            return 0;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    // A mais antiga em ordem de acesso é a candidata; duas por chamada bastam para a limpeza acompanhar
+    private static void evictIdle(Stripe stripe, long window) {
+        Iterator<Counter> eldest = stripe.values().iterator();
+        for (int i = 0; i < 2 && eldest.hasNext(); i++) {
+            if (eldest.next().window >= window - 1) {
+                return;
+            }
+            eldest.remove();
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,114 @@
+package solar_detect.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.config.PredictionProperties;
+import solar_detect.dto.BatchPredictionResult;
+import solar_detect.dto.DetectRequest;
+import solar_detect.models.User;
+import solar_detect.services.render.RenderOptions;
+import solar_detect.services.requestlog.RequestLogEntry;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchPredictionService {
+
+    private static final byte NEWLINE = '\n';
+
+    private final QuotaService quotaService;
+    private final PredictionService predictionService;
+    private final PredictionProperties properties;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService predictionExecutor;
+
+    // A quota é reservada antes de abrir a resposta, para que um 429 ainda possa ser devolvido
+    public StreamingResponseBody predictBatch(User user, List<DetectRequest> points) {
+        List<RequestLogEntry> charges = quotaService.checkAndUpdateQuota(user, points);
+        return out -> stream(user, points, charges, out);
+    }
+
+    private void stream(User user, List<DetectRequest> points, List<RequestLogEntry> charges, OutputStream out)
+            throws IOException {
+        Semaphore permits = new Semaphore(properties.getBatch().getParallelism());
+        CompletionService<BatchPredictionResult> completion = new ExecutorCompletionService<>(predictionExecutor);
+        List<Future<BatchPredictionResult>> futures = new ArrayList<>(points.size());
+
+        for (int i = 0; i < points.size(); i++) {
+            int index = i;
+            DetectRequest point = points.get(i);
+            futures.add(completion.submit(() -> {
+                permits.acquire();
+                try {
+                    return predictOne(index, point);
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+
+        BitSet delivered = new BitSet(points.size());
+        try {
+            for (int done = 0; done < points.size(); done++) {
+                BatchPredictionResult result = completion.take().get();
+                out.write(objectMapper.writeValueAsBytes(result));
+                out.write(NEWLINE);
+                out.flush();
+                if (result.getError() == null) {
+                    delivered.set(result.getIndex());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Falha inesperada no lote de predições", e.getCause());
+        } finally {
+            // Cliente desconectado ou erro: não continua gastando o backend
+            futures.forEach(future -> future.cancel(true));
+            // Pontos com erro ou não entregues não consomem quota
+            List<RequestLogEntry> undelivered = new ArrayList<>(points.size() - delivered.cardinality());
+            for (int i = delivered.nextClearBit(0); i < points.size(); i = delivered.nextClearBit(i + 1)) {
+                undelivered.add(charges.get(i));
+            }
+            quotaService.refundQuota(user, undelivered);
+        }
+    }
+
+    private BatchPredictionResult predictOne(int index, DetectRequest point) {
+        BatchPredictionResult.BatchPredictionResultBuilder result = BatchPredictionResult.builder()
+                .index(index)
+                .lat(point.getLat())
+                .lon(point.getLon());
+        try {
+            ByteBuffer image = predictionService.loadRendered(point.getLat(), point.getLon(), RenderOptions.DEFAULT);
+            ByteBuffer encoded = Base64.getEncoder().encode(image.duplicate());
+            return result.status("ok")
+                    .image(StandardCharsets.US_ASCII.decode(encoded).toString())
+                    .build();
+        } catch (RuntimeException e) {
+            log.warn("Falha na predição {} do lote ({}, {}): {}", index, point.getLat(), point.getLon(),
+                    e.getMessage());
+            return result.status("error").error(e.getMessage()).build();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package solar_detect.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.LongConsumer;
+
+import solar_detect.services.cache.FileRegion;
+import solar_detect.services.cache.StoredPrediction;
+
+/**
+ * Imagem de predição pronta para ser escrita na resposta: ou um buffer já
+ * resolvido (cache, disco, backend) ou um proxy que só abre o backend ao escrever.
+ */
+@FunctionalInterface
+public interface PredictionImage {
+
+    // contentLength é chamado antes do primeiro byte, quando o tamanho é conhecido
+    void writeTo(OutputStream out, LongConsumer contentLength) throws IOException;
+
+    // Validador forte (hash do conteúdo) quando a imagem já é conhecida; null no streaming
+    default String etag() {
+        return null;
+    }
+
+    // Trecho do arquivo com exatamente estes bytes, para o servidor enviar via sendfile; null se não há
+    default FileRegion fileRegion() {
+        return null;
+    }
+
+    static PredictionImage of(ByteBuffer image, String etag) {
+        return of(image, etag, null);
+    }
+
+    // Entrada do store servida como está: além do buffer mapeado, expõe a região do segmento
+    static PredictionImage of(StoredPrediction stored, String etag) {
+        return of(stored.payload(), etag, stored.region());
+    }
+
+    private static PredictionImage of(ByteBuffer image, String etag, FileRegion region) {
+        PredictionImage content = of(image);
+        return new PredictionImage() {
+            @Override
+            public void writeTo(OutputStream out, LongConsumer contentLength) throws IOException {
+                content.writeTo(out, contentLength);
+            }
+
+            @Override
+            public String etag() {
+                return etag;
+            }
+
+            @Override
+            public FileRegion fileRegion() {
+                return region;
+            }
+        };
+    }
+
+    static PredictionImage of(ByteBuffer image) {
+        return (out, contentLength) -> {
+            contentLength.accept(image.remaining());
+            WritableByteChannel channel = Channels.newChannel(out);
+            ByteBuffer view = image.duplicate();
+            while (view.hasRemaining()) {
+                channel.write(view);
+            }
+        };
+    }
+}
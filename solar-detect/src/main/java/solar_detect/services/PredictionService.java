@@ -0,0 +1,390 @@
+package solar_detect.services;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.config.InferenceProperties;
+import solar_detect.config.PredictionProperties;
+import solar_detect.exceptions.BusinessException;
+import solar_detect.exceptions.InferenceUnavailableException;
+import solar_detect.models.User;
+import solar_detect.services.cache.DerivedResultCache;
+import solar_detect.services.cache.PredictionCache;
+import solar_detect.services.cache.PredictionCoalescer;
+import solar_detect.services.cache.PredictionStore;
+import solar_detect.services.cache.StoredPrediction;
+import solar_detect.services.cache.TileKey;
+import solar_detect.services.inference.InferenceBulkhead;
+import solar_detect.services.inference.InferenceCircuitBreaker;
+import solar_detect.services.inference.InferenceClient;
+import solar_detect.services.prefetch.PrefetchTracker;
+import solar_detect.services.render.MaskPayload;
+import solar_detect.services.render.MaskStatistics;
+import solar_detect.services.render.MaskVectorizer;
+import solar_detect.services.render.OutputFormat;
+import solar_detect.services.render.OverlayRenderer;
+import solar_detect.services.render.RenderOptions;
+import solar_detect.services.requestlog.RequestLogEntry;
+import solar_detect.services.spatial.DetectionIndex;
+import solar_detect.util.PngFormat;
+import solar_detect.util.WebMercator.LatLon;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PredictionService {
+
+    private static final int ETAG_BYTES = 16;
+
+    private final QuotaService quotaService;
+    private final InferenceClient inferenceClient;
+    private final InferenceBulkhead bulkhead;
+    private final InferenceCircuitBreaker circuitBreaker;
+    private final PredictionCache predictionCache;
+    private final PredictionStore predictionStore;
+    private final PredictionCoalescer coalescer;
+    private final StreamingPredictionProxy streamingProxy;
+    private final DerivedResultCache derivedCache;
+    private final DetectionIndex detectionIndex;
+    private final PrefetchTracker prefetchTracker;
+    private final OverlayRenderer overlayRenderer;
+    private final MaskVectorizer maskVectorizer;
+    private final MaskStatistics maskStatistics;
+    private final ObjectMapper objectMapper;
+    private final PredictionProperties properties;
+    private final InferenceProperties inferenceProperties;
+    private final ExecutorService predictionExecutor;
+
+    /*
+     * A quota (JPA) é cobrada na thread da requisição, antes de qualquer espera.
+     * Hits de cache respondem na hora; só a ida ao backend vai para uma virtual
+     * thread, liberando a thread do Tomcat para login, perfil etc. No modo
+     * streaming o backend é chamado ao escrever a resposta.
+     *
+     * Com o circuito aberto a requisição é servida do cache mesmo expirado ou
+     * recusada com 503 antes da cobrança; se a ida ao backend falhar depois da
+     * cobrança, a quota é devolvida.
+     *
+     * No protocolo de máscara o cache guarda máscara + tile e o overlay é
+     * montado por requisição (cor, alpha e formato à escolha, inclusive
+     * GeoJSON e estatísticas), numa virtual thread mesmo nos hits. Nenhum
+     * desses formatos volta ao backend se a máscara já está em cache.
+     */
+    public CompletableFuture<PredictionImage> predictAsync(User user, Float lat, Float lon, RenderOptions options) {
+        requireSupported(options);
+        if (!cachingEnabled()) {
+            if (!circuitBreaker.isCallPermitted()) {
+                throw circuitBreaker.openException();
+            }
+            RequestLogEntry charge = quotaService.checkAndUpdateQuota(user, lat, lon);
+            if (streamingEnabled()) {
+                return CompletableFuture.completedFuture(
+                        refundOnFailure(user, charge, null, streamingProxy.proxy(null, lat, lon)));
+            }
+            return refundOnFailure(user, charge, CompletableFuture.supplyAsync(() -> {
+                StoredPrediction response = StoredPrediction.of(callBackend(lat, lon));
+                return PredictionImage.of(render(response.payload(), options, TileKey.of(lat, lon, 1), false),
+                        etag(response, options));
+            }, predictionExecutor));
+        }
+
+        TileKey key = tileKey(lat, lon);
+        StoredPrediction cached = lookup(key);
+        if (cached == null && !circuitBreaker.isCallPermitted()) {
+            cached = lookupStale(key);
+            if (cached == null) {
+                throw circuitBreaker.openException();
+            }
+        }
+        RequestLogEntry charge = quotaService.checkAndUpdateQuota(user, lat, lon);
+        if (cached != null) {
+            prefetchTracker.served(key);
+            if (!maskProtocol()) {
+                return CompletableFuture.completedFuture(PredictionImage.of(cached, etag(cached, options)));
+            }
+            StoredPrediction entry = cached;
+            return refundOnFailure(user, charge, CompletableFuture.supplyAsync(
+                    () -> PredictionImage.of(render(entry.payload(), options, key, true), etag(entry, options)),
+                    predictionExecutor));
+        }
+        if (streamingEnabled()) {
+            LatLon centre = key.centre();
+            return CompletableFuture.completedFuture(
+                    refundOnFailure(user, charge, key, streamingProxy.proxy(key, centre.lat(), centre.lon())));
+        }
+        return refundOnFailure(user, charge, CompletableFuture.supplyAsync(() -> {
+            StoredPrediction stored = load(key);
+            return PredictionImage.of(render(stored.payload(), options, key, true), etag(stored, options));
+        }, predictionExecutor));
+    }
+
+    /*
+     * ETag da resposta que predictAsync daria a partir do cache, sem cobrar
+     * quota nem chamar o backend; null se o tile não tem entrada válida. Com
+     * isso um If-None-Match que bate vira 304 antes de qualquer custo. As
+     * opções são validadas antes, como em predictAsync: um formato inválido
+     * é 400 mesmo com If-None-Match.
+     */
+    public String cachedETag(double lat, double lon, RenderOptions options) {
+        requireSupported(options);
+        if (!cachingEnabled()) {
+            return null;
+        }
+        StoredPrediction cached = lookup(tileKey(lat, lon));
+        return cached == null ? null : etag(cached, options);
+    }
+
+    private void requireSupported(RenderOptions options) {
+        if (!maskProtocol() && !options.isDefault()) {
+            throw new BusinessException("Formato, cor e alpha personalizados exigem inference.protocol=mask");
+        }
+    }
+
+    /*
+     * Digest guardado com a entrada; no protocolo de máscara a resposta também
+     * depende das opções de renderização, que entram num segundo hash sobre
+     * o digest (não sobre o payload).
+     */
+    private String etag(StoredPrediction stored, RenderOptions options) {
+        byte[] digest = stored.digest();
+        if (maskProtocol()) {
+            try {
+                MessageDigest sha = MessageDigest.getInstance("SHA-256");
+                sha.update(digest);
+                sha.update(options.toString().getBytes(StandardCharsets.UTF_8));
+                digest = sha.digest();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return "\"" + HexFormat.of().formatHex(digest, 0, ETAG_BYTES) + "\"";
+    }
+
+    // Caminho sem cobrança de quota; quem chama é responsável por já ter reservado
+    public ByteBuffer loadPrediction(double lat, double lon) {
+        if (!cachingEnabled()) {
+            return ByteBuffer.wrap(callBackend(lat, lon)).asReadOnlyBuffer();
+        }
+
+        TileKey key = tileKey(lat, lon);
+        StoredPrediction cached = lookup(key);
+        if (cached == null) {
+            return load(key).payload();
+        }
+        prefetchTracker.served(key);
+        return cached.payload();
+    }
+
+    // Como loadPrediction, mas sempre devolve a imagem final, qualquer que seja o protocolo
+    public ByteBuffer loadRendered(double lat, double lon, RenderOptions options) {
+        ByteBuffer stored = loadPrediction(lat, lon);
+        return cachingEnabled()
+                ? render(stored, options, tileKey(lat, lon), true)
+                : render(stored, options, TileKey.of(lat, lon, 1), false);
+    }
+
+    /*
+     * Imagem final a partir de uma entrada guardada fora do cache (resultado
+     * de um tile de varredura), sem ir ao backend. null se a entrada é do
+     * outro protocolo.
+     */
+    public ByteBuffer renderStored(ByteBuffer stored, double lat, double lon, RenderOptions options) {
+        if (!matchesProtocol(stored)) {
+            return null;
+        }
+        return render(stored, options, cachingEnabled() ? tileKey(lat, lon) : TileKey.of(lat, lon, 1), false);
+    }
+
+    /*
+     * Busca o tile no backend e grava no cache sem cobrar quota, para o
+     * prefetch. Retorna false se já havia uma entrada válida.
+     */
+    public boolean prefetch(TileKey key) {
+        if (!cachingEnabled() || lookup(key) != null) {
+            return false;
+        }
+        coalescer.load(key, () -> fetch(key));
+        return true;
+    }
+
+    // Resultado disponível sem nova inferência (mesmo que expirado)
+    public boolean isCached(TileKey key) {
+        return predictionCache.contains(key) || predictionStore.contains(key);
+    }
+
+    public TileKey tileKey(double lat, double lon) {
+        return TileKey.of(lat, lon, properties.getCache().getGridPixels());
+    }
+
+    /*
+     * Entrada do cache/backend: no protocolo de máscara, MaskPayload; no de
+     * overlay, o PNG final. key é o pixel central usado pelo FastAPI, de onde
+     * sai a posição da máscara para o GeoJSON; só chaves da grade do cache
+     * (cacheable) guardam o resultado derivado.
+     */
+    private ByteBuffer render(ByteBuffer stored, RenderOptions options, TileKey key, boolean cacheable) {
+        if (!maskProtocol()) {
+            return stored;
+        }
+        OutputFormat format = options.format();
+        if (format != OutputFormat.GEOJSON && format != OutputFormat.STATS) {
+            return ByteBuffer.wrap(overlayRenderer.render(MaskPayload.parse(stored), options)).asReadOnlyBuffer();
+        }
+
+        boolean cached = cacheable && derivedCache.isEnabled();
+        byte[] derived = cached ? derivedCache.get(key, format) : null;
+        if (derived == null) {
+            derived = derive(MaskPayload.parse(stored), format, key);
+            if (cached) {
+                derivedCache.put(key, format, derived);
+            }
+        }
+        return ByteBuffer.wrap(derived).asReadOnlyBuffer();
+    }
+
+    private byte[] derive(MaskPayload mask, OutputFormat format, TileKey key) {
+        if (format == OutputFormat.GEOJSON) {
+            return maskVectorizer.toGeoJson(mask, key.x() - mask.width() / 2, key.y() - mask.height() / 2,
+                    key.zoom());
+        }
+        try {
+            return objectMapper.writeValueAsBytes(maskStatistics.compute(mask, key.centre(), key.zoom()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Falha ao serializar as estatísticas da predição", e);
+        }
+    }
+
+    /*
+     * Retorna a entrada como ByteBuffer somente leitura, com o digest gravado
+     * junto; hits em disco apontam para a região mapeada. Entradas gravadas
+     * no outro protocolo contam como miss e são sobrescritas na próxima ida
+     * ao backend.
+     */
+    private StoredPrediction lookup(TileKey key) {
+        StoredPrediction cached = predictionCache.get(key);
+        if (cached != null && matchesProtocol(cached.payload())) {
+            return cached;
+        }
+        StoredPrediction stored = predictionStore.get(key);
+        return stored != null && matchesProtocol(stored.payload()) ? stored : null;
+    }
+
+    private StoredPrediction lookupStale(TileKey key) {
+        StoredPrediction stale = predictionCache.getStale(key);
+        if (stale != null && matchesProtocol(stale.payload())) {
+            return stale;
+        }
+        StoredPrediction stored = predictionStore.getStale(key);
+        return stored != null && matchesProtocol(stored.payload()) ? stored : null;
+    }
+
+    private StoredPrediction load(TileKey key) {
+        // Cada chamador já foi cobrado; aqui só a ida ao backend é compartilhada
+        try {
+            return coalescer.load(key, () -> fetch(key));
+        } catch (InferenceUnavailableException e) {
+            StoredPrediction stale = lookupStale(key);
+            if (stale == null) {
+                throw e;
+            }
+            log.debug("Backend indisponível; servindo predição expirada de {}", key);
+            return stale;
+        }
+    }
+
+    // O digest do ETag é calculado aqui, uma vez, e guardado com a entrada no cache e no store
+    private StoredPrediction fetch(TileKey key) {
+        LatLon centre = key.centre();
+        byte[] image = callBackend(centre.lat(), centre.lon());
+        StoredPrediction fetched = StoredPrediction.of(image);
+        predictionCache.put(key, image, fetched.digest());
+        predictionStore.put(key, image, fetched.digest());
+        derivedCache.invalidate(key);
+        detectionIndex.add(key);
+        return fetched;
+    }
+
+    // O cliente já recusa respostas fora do formato do protocolo, como falha da réplica e do circuit breaker
+    private byte[] callBackend(double lat, double lon) {
+        return bulkhead.call(() -> circuitBreaker.execute(() -> maskProtocol()
+                ? inferenceClient.predictMask(lat, lon)
+                : inferenceClient.predict(lat, lon)));
+    }
+
+    private CompletableFuture<PredictionImage> refundOnFailure(User user, RequestLogEntry charge,
+            CompletableFuture<PredictionImage> future) {
+        return future.whenComplete((image, error) -> {
+            if (error != null) {
+                quotaService.refundQuota(user, List.of(charge));
+            }
+        });
+    }
+
+    /*
+     * No streaming a falha aparece ao escrever a resposta, inclusive no meio
+     * do corpo. Antes do primeiro byte ainda dá para cair no cache; depois
+     * dele a resposta já saiu pela metade, e só resta devolver a quota.
+     */
+    private PredictionImage refundOnFailure(User user, RequestLogEntry charge, TileKey key,
+            PredictionImage upstream) {
+        return (out, contentLength) -> {
+            boolean[] written = { false };
+            OutputStream tracked = new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    written[0] = true;
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    written[0] = true;
+                    out.write(b, off, len);
+                }
+            };
+            try {
+                upstream.writeTo(tracked, contentLength);
+            } catch (InferenceUnavailableException e) {
+                StoredPrediction stale = key == null || written[0] ? null : lookupStale(key);
+                if (stale == null) {
+                    quotaService.refundQuota(user, List.of(charge));
+                    throw e;
+                }
+                PredictionImage.of(stale.payload()).writeTo(out, contentLength);
+            }
+        };
+    }
+
+    public boolean cachingEnabled() {
+        return predictionCache.isEnabled() || predictionStore.isEnabled();
+    }
+
+    // O proxy de streaming repassa o PNG do backend; não se aplica ao protocolo de máscara
+    private boolean streamingEnabled() {
+        return properties.getStreaming().isEnabled() && !maskProtocol();
+    }
+
+    private boolean maskProtocol() {
+        return inferenceProperties.getProtocol() == InferenceProperties.Protocol.MASK;
+    }
+
+    private boolean matchesProtocol(ByteBuffer entry) {
+        return maskProtocol() ? MaskPayload.isMaskPayload(entry) : PngFormat.isPng(entry);
+    }
+}
@@ -1,93 +1,111 @@
 package solar_detect.services;
 
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.util.List;
 
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import lombok.RequiredArgsConstructor;
-import solar_detect.exceptions.QuotaExceededException;
-import solar_detect.models.RequestLog;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.config.QuotaProperties;
+import solar_detect.dto.DetectRequest;
 import solar_detect.models.RequestQuota;
 import solar_detect.models.User;
-import solar_detect.repository.RequestLogRepository;
-import solar_detect.repository.RequestQuotaRepository;
+import solar_detect.services.quota.DatabaseQuotaEngine;
+import solar_detect.services.quota.LeaseQuotaEngine;
+import solar_detect.services.quota.MemoryQuotaEngine;
+import solar_detect.services.quota.QuotaEngine;
+import solar_detect.services.quota.QuotaPolicy;
+import solar_detect.services.quota.QuotaState;
+import solar_detect.services.requestlog.RequestLogEntry;
+import solar_detect.services.requestlog.RequestLogWriter;
 
+/*
+ * Sem @Transactional: cada engine já decide numa operação atômica e o log
+ * vai para o RequestLogWriter, então não há o que agrupar numa transação
+ * (que custaria BEGIN/COMMIT a cada requisição).
+ */
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class QuotaService {
-    private static final int STUDENT_QUOTA = 3;
-    private static final int COMPANY_QUOTA = 10;
-    private static final int RESET_MINUTES = 5;
-    private static final String ROLE_STUDENT = "ROLE_STUDENT";
-    private static final String ROLE_COMPANY = "ROLE_COMPANY";
 
-    private final RequestQuotaRepository quotaRepository;
-    private final RequestLogRepository logRepository;
+    private final QuotaEngine engine;
+    private final RequestLogWriter logWriter;
 
-    @Transactional
-    public void checkAndUpdateQuota(User user, Float latitude, Float longitude) {
-        RequestQuota quota = quotaRepository.findByUser(user)
-                .orElseGet(() -> createInitialQuota(user));
-
-        LocalDateTime now = LocalDateTime.now();
-        if (ChronoUnit.MINUTES.between(quota.getLastResetTime(), now) >= RESET_MINUTES) {
-            resetQuota(quota, getUserRole(user));
-        } else if (quota.getRemainingRequests() <= 0) {
-            throw new QuotaExceededException("Request quota exceeded. Please wait until the quota resets.");
-        }
+    // quota.mode escolhe onde o saldo vive; o resto da aplicação só fala com este serviço
+    public QuotaService(QuotaProperties properties, DatabaseQuotaEngine databaseEngine,
+            MemoryQuotaEngine memoryEngine, LeaseQuotaEngine leaseEngine, RequestLogWriter logWriter) {
+        this.engine = switch (properties.getMode()) {
+            case DATABASE -> databaseEngine;
+            case MEMORY -> memoryEngine;
+            case LEASE -> leaseEngine;
+        };
+        this.logWriter = logWriter;
+    }
 
-        quota.setRemainingRequests(quota.getRemainingRequests() - 1);
-        quotaRepository.save(quota);
+    // Retorna o registro da cobrança, que identifica a requisição numa devolução
+    public RequestLogEntry checkAndUpdateQuota(User user, Float latitude, Float longitude) {
+        engine.consume(user, 1);
 
-        logRepository.save(RequestLog.builder()
-                .user(user)
-                .requestTime(now)
-                .latitude(latitude)
-                .longitude(longitude)
-                .build());
+        RequestLogEntry charge = new RequestLogEntry(user.getId(), role(user), LocalDateTime.now(), latitude,
+                longitude);
+        appendLogs(user, 1, List.of(charge));
+        return charge;
     }
 
-    private RequestQuota createInitialQuota(User user) {
-        return RequestQuota.builder()
-                .user(user)
-                .remainingRequests(getQuotaForRole(getUserRole(user)))
-                .lastResetTime(LocalDateTime.now())
-                .build();
+    // Reserva a quota de um lote inteiro de uma vez: ou todos os pontos cabem, ou nenhum é cobrado
+    public List<RequestLogEntry> checkAndUpdateQuota(User user, List<DetectRequest> points) {
+        engine.consume(user, points.size());
+        LocalDateTime now = LocalDateTime.now();
+        String role = role(user);
+
+        List<RequestLogEntry> charges = points.stream()
+                .map(point -> new RequestLogEntry(user.getId(), role, now, point.getLat(), point.getLon()))
+                .toList();
+        appendLogs(user, points.size(), charges);
+        return charges;
     }
 
-    private void resetQuota(RequestQuota quota, String role) {
-        quota.setRemainingRequests(getQuotaForRole(role));
-        quota.setLastResetTime(LocalDateTime.now());
+    /*
+     * Devolve requisições cobradas cuja predição não chegou a ser entregue
+     * (backend fora, circuito aberto) e marca os registros como REFUNDED. A
+     * quota já foi devolvida quando a marcação falha; o registro só fica OK.
+     */
+    public void refundQuota(User user, List<RequestLogEntry> charges) {
+        if (charges.isEmpty()) {
+            return;
+        }
+        engine.refund(user, charges.size());
+        try {
+            logWriter.refund(charges);
+        } catch (RuntimeException e) {
+            log.warn("Falha ao marcar {} request_logs como devolvidos: {}", charges.size(), e.getMessage());
+        }
     }
 
-    private String getUserRole(User user) {
-        return user.getAuthorities().stream()
-                .findFirst()
-                .map(GrantedAuthority::getAuthority)
-                .orElseThrow(() -> new IllegalStateException("User has no roles"));
+    // Normalmente só enfileira; se a gravação acontecer aqui (fila cheia) e falhar, a cobrança é desfeita
+    private void appendLogs(User user, int requests, List<RequestLogEntry> entries) {
+        try {
+            logWriter.append(entries);
+        } catch (RuntimeException e) {
+            engine.refund(user, requests);
+            throw e;
+        }
     }
 
-    private int getQuotaForRole(String role) {
-        return role.equals(ROLE_STUDENT) ? STUDENT_QUOTA : COMPANY_QUOTA;
+    private static String role(User user) {
+        return user.getUserType().name();
     }
-    
+
     public RequestQuota getQuota(User user) {
-        RequestQuota quota = quotaRepository.findByUser(user)
-                .orElseGet(() -> createInitialQuota(user));
-        
-        LocalDateTime now = LocalDateTime.now();
-        if (ChronoUnit.MINUTES.between(quota.getLastResetTime(), now) >= RESET_MINUTES) {
-            resetQuota(quota, getUserRole(user));
-            quotaRepository.save(quota);
-        }
-        
-        return quota;
+        QuotaState state = engine.state(user);
+        return RequestQuota.builder()
+                .user(user)
+                .remainingRequests(state.remainingRequests())
+                .lastResetTime(state.lastResetTime())
+                .build();
     }
-    
+
     public int getTotalQuotaForUser(User user) {
-        return getQuotaForRole(getUserRole(user));
+        return QuotaPolicy.capacity(user);
     }
-}
\ No newline at end of file
+}
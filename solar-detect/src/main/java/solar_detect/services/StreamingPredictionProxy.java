@@ -0,0 +1,157 @@
+package solar_detect.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.function.LongConsumer;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.config.PredictionProperties;
+import solar_detect.exceptions.InferenceUnavailableException;
+import solar_detect.services.cache.PredictionStore;
+import solar_detect.services.cache.TileKey;
+import solar_detect.services.inference.InferenceBulkhead;
+import solar_detect.services.inference.InferenceCircuitBreaker;
+import solar_detect.services.inference.InferenceClient;
+import solar_detect.services.inference.InferenceClient.UpstreamResponse;
+import solar_detect.services.spatial.DetectionIndex;
+import solar_detect.util.ByteArrayPool;
+import solar_detect.util.PngFormat;
+
+/**
+ * Modo streaming: o corpo da resposta do FastAPI é repassado para a saída do
+ * servlet conforme chega. Quando a imagem vai para o prediction store, ela é
+ * lida num array de staging do pool e escrita na saída a partir dele mesmo,
+ * então o store recebe o array ao final sem nenhuma cópia extra, e só se for
+ * um PNG completo. Falhas ao ler o backend (conexão caída, timeout no meio
+ * do corpo) viram InferenceUnavailableException e contam contra a réplica e
+ * o circuit breaker; falhas ao escrever para o cliente não.
+ */
+@Component
+@Slf4j
+public class StreamingPredictionProxy {
+
+    private static final int TRANSFER_BUFFER_SIZE = 16 * 1024;
+
+    private final InferenceClient inferenceClient;
+    private final InferenceBulkhead bulkhead;
+    private final InferenceCircuitBreaker circuitBreaker;
+    private final PredictionStore predictionStore;
+    private final DetectionIndex detectionIndex;
+    private final ByteArrayPool stagingBuffers;
+
+    public StreamingPredictionProxy(InferenceClient inferenceClient, InferenceBulkhead bulkhead,
+            InferenceCircuitBreaker circuitBreaker, PredictionStore predictionStore, DetectionIndex detectionIndex,
+            PredictionProperties properties, MeterRegistry meterRegistry) {
+        PredictionProperties.Streaming config = properties.getStreaming();
+        this.inferenceClient = inferenceClient;
+        this.bulkhead = bulkhead;
+        this.circuitBreaker = circuitBreaker;
+        this.predictionStore = predictionStore;
+        this.detectionIndex = detectionIndex;
+        // Um byte além do limite: o array cheio indica que a imagem não cabe e deixa de ser guardada
+        this.stagingBuffers = new ByteArrayPool((int) config.getStagingBufferSize().toBytes() + 1,
+                config.getMaxStagingBuffers());
+
+        Gauge.builder("prediction.streaming.staging.buffers.available", stagingBuffers,
+                ByteArrayPool::available).register(meterRegistry);
+    }
+
+    // key pode ser null quando o cache está desligado; nesse caso nada é gravado
+    public PredictionImage proxy(TileKey key, double lat, double lon) {
+        // O backend só é chamado dentro do writeTo, que sempre libera conexão e vaga do bulkhead
+        return (out, contentLength) -> {
+            try (InferenceBulkhead.Permit permit = bulkhead.acquire()) {
+                stream(key, lat, lon, out, contentLength);
+            }
+            if (key != null) {
+                detectionIndex.add(key);
+            }
+        };
+    }
+
+    // O breaker mede a chamada até o fim do corpo; só falhas do lado do backend contam como erro
+    private void stream(TileKey key, double lat, double lon, OutputStream out, LongConsumer contentLength)
+            throws IOException {
+        long started = circuitBreaker.acquirePermission();
+        boolean failed = false;
+        try (UpstreamResponse upstream = inferenceClient.open(lat, lon)) {
+            if (upstream.contentType() == null || !upstream.contentType().startsWith("image/")) {
+                upstream.markFailed();
+                throw new InferenceUnavailableException(
+                        "Backend de inferência não retornou uma imagem (" + upstream.contentType() + ")", 1);
+            }
+            if (upstream.contentLength() >= 0) {
+                contentLength.accept(upstream.contentLength());
+            }
+            pipe(key, upstream, out);
+        } catch (InferenceUnavailableException e) {
+            failed = true;
+            throw e;
+        } finally {
+            circuitBreaker.onResult(started, failed);
+        }
+    }
+
+    private void pipe(TileKey key, UpstreamResponse upstream, OutputStream out) throws IOException {
+        byte[] staging = key != null && predictionStore.isEnabled() ? stagingBuffers.acquire() : null;
+        if (staging == null) {
+            // Nada a guardar (ou pool esgotado): só repassa
+            byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+            InputStream in = body(upstream);
+            int read;
+            while ((read = read(upstream, in, buffer, 0, buffer.length)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return;
+        }
+        try {
+            InputStream in = body(upstream);
+            int filled = 0;
+            boolean staged = true;
+            int read;
+            while ((read = read(upstream, in, staging, filled, staging.length - filled)) != -1) {
+                out.write(staging, filled, read);
+                filled += read;
+                if (filled == staging.length) {
+                    // Imagem maior que o staging: o array segue só como buffer de transferência
+                    staged = false;
+                    filled = 0;
+                }
+            }
+            if (staged) {
+                if (!PngFormat.isComplete(staging, filled)) {
+                    upstream.markFailed();
+                    throw new InferenceUnavailableException("Backend de inferência retornou um PNG inválido", 1);
+                }
+                predictionStore.put(key, ByteBuffer.wrap(staging, 0, filled));
+            }
+        } finally {
+            stagingBuffers.release(staging);
+        }
+    }
+
+    private static InputStream body(UpstreamResponse upstream) {
+        try {
+            return upstream.body();
+        } catch (IOException e) {
+            upstream.markFailed();
+            throw new InferenceUnavailableException("Falha ao ler a resposta do backend de inferência", 1, e);
+        }
+    }
+
+    // Só a leitura é embrulhada: IOException na escrita é do cliente e segue como está
+    private static int read(UpstreamResponse upstream, InputStream in, byte[] buffer, int offset, int length) {
+        try {
+            return in.read(buffer, offset, length);
+        } catch (IOException e) {
+            upstream.markFailed();
+            throw new InferenceUnavailableException("Falha ao ler a resposta do backend de inferência", 1, e);
+        }
+    }
+}
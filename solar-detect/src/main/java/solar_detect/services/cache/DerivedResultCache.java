@@ -0,0 +1,102 @@
+package solar_detect.services.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import solar_detect.config.PredictionProperties;
+import solar_detect.services.render.OutputFormat;
+
+/**
+ * Resultados calculados a partir da máscara em cache (GeoJSON etc.), por tile
+ * e formato. Fica ao lado do PredictionCache com orçamento próprio de bytes;
+ * quando a máscara de um tile é buscada de novo, os derivados dela são
+ * descartados.
+ */
+@Component
+public class DerivedResultCache {
+
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private record Key(TileKey tile, OutputFormat format) {
+    }
+
+    private record Entry(byte[] value, long storedAt) {
+    }
+
+    private final long maxBytes;
+    private final long maxAgeMillis;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes;
+
+    public DerivedResultCache(PredictionProperties properties, MeterRegistry meterRegistry) {
+        this.maxBytes = properties.getCache().getDerivedMaxSize().toBytes();
+        Duration maxAge = properties.getCache().getMaxAge();
+        this.maxAgeMillis = maxAge == null ? 0 : maxAge.toMillis();
+
+        Gauge.builder("prediction.derived.cache.bytes", this, DerivedResultCache::sizeInBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    public byte[] get(TileKey tile, OutputFormat format) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(new Key(tile, format));
+        }
+        if (entry == null || maxAgeMillis > 0 && System.currentTimeMillis() - entry.storedAt() > maxAgeMillis) {
+            return null;
+        }
+        return entry.value();
+    }
+
+    public void put(TileKey tile, OutputFormat format, byte[] value) {
+        long cost = cost(value);
+        if (cost > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(new Key(tile, format), new Entry(value, System.currentTimeMillis()));
+            if (previous != null) {
+                currentBytes -= cost(previous.value());
+            }
+            currentBytes += cost;
+
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while (currentBytes > maxBytes && eldest.hasNext()) {
+                currentBytes -= cost(eldest.next().getValue().value());
+                eldest.remove();
+            }
+        }
+    }
+
+    public void invalidate(TileKey tile) {
+        synchronized (entries) {
+            for (OutputFormat format : OutputFormat.values()) {
+                Entry previous = entries.remove(new Key(tile, format));
+                if (previous != null) {
+                    currentBytes -= cost(previous.value());
+                }
+            }
+        }
+    }
+
+    public long sizeInBytes() {
+        synchronized (entries) {
+            return currentBytes;
+        }
+    }
+
+    private static long cost(byte[] value) {
+        return (long) value.length + ENTRY_OVERHEAD_BYTES;
+    }
+}
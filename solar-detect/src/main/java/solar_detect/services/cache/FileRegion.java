@@ -0,0 +1,15 @@
+package solar_detect.services.cache;
+
+import java.nio.file.Path;
+
+/**
+ * Trecho de um segmento do store onde está o payload de uma entrada. Permite
+ * ao servidor enviar a imagem direto do arquivo para o socket (sendfile),
+ * sem passar por buffer algum da JVM.
+ */
+public record FileRegion(Path path, long offset, long length) {
+
+    public long end() {
+        return offset + length;
+    }
+}
@@ -0,0 +1,157 @@
+package solar_detect.services.cache;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import solar_detect.config.PredictionProperties;
+
+/**
+ * Cache LRU em memória das imagens de predição, limitado pelo total de bytes
+ * armazenados e não pelo número de entradas.
+ */
+@Component
+public class PredictionCache {
+
+    // Custo aproximado de chave, entrada, nó do LinkedHashMap, digest e cabeçalho do array
+    private static final int ENTRY_OVERHEAD_BYTES = 144;
+
+    private record Entry(byte[] value, byte[] digest, long storedAt) {
+
+        StoredPrediction stored() {
+            return new StoredPrediction(ByteBuffer.wrap(value).asReadOnlyBuffer(), digest);
+        }
+    }
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+    private final LinkedHashMap<TileKey, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PredictionCache(PredictionProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.getCache().isEnabled();
+        this.maxBytes = properties.getCache().getMaxSize().toBytes();
+        Duration maxAge = properties.getCache().getMaxAge();
+        this.maxAgeMillis = maxAge == null ? 0 : maxAge.toMillis();
+
+        FunctionCounter.builder("prediction.cache.hits", hits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("prediction.cache.misses", misses, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("prediction.cache.evictions", evictions, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("prediction.cache.bytes", this, PredictionCache::sizeInBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("prediction.cache.entries", this, PredictionCache::size).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public StoredPrediction get(TileKey key) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null || isExpired(entry)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.stored();
+    }
+
+    // Ignora prediction.cache.max-age; usado como fallback quando o backend está fora
+    public StoredPrediction getStale(TileKey key) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        return entry == null ? null : entry.stored();
+    }
+
+    // digest é o StoredPrediction.digest de value, calculado uma vez por quem grava
+    public void put(TileKey key, byte[] value, byte[] digest) {
+        long cost = cost(value);
+        if (!enabled || cost > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(key, new Entry(value, digest, System.currentTimeMillis()));
+            if (previous != null) {
+                currentBytes -= cost(previous.value());
+            }
+            currentBytes += cost;
+
+            Iterator<Map.Entry<TileKey, Entry>> eldest = entries.entrySet().iterator();
+            while (currentBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<TileKey, Entry> entry = eldest.next();
+                currentBytes -= cost(entry.getValue().value());
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    // Só presença, sem contar hit/miss nem checar validade
+    public boolean contains(TileKey key) {
+        synchronized (entries) {
+            return entries.containsKey(key);
+        }
+    }
+
+    public void invalidate(TileKey key) {
+        synchronized (entries) {
+            Entry previous = entries.remove(key);
+            if (previous != null) {
+                currentBytes -= cost(previous.value());
+            }
+        }
+    }
+
+    public long sizeInBytes() {
+        synchronized (entries) {
+            return currentBytes;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long hitCount() {
+        return hits.get();
+    }
+
+    public long missCount() {
+        return misses.get();
+    }
+
+    private boolean isExpired(Entry entry) {
+        return maxAgeMillis > 0 && System.currentTimeMillis() - entry.storedAt() > maxAgeMillis;
+    }
+
+    private static long cost(byte[] value) {
+        return (long) value.length + ENTRY_OVERHEAD_BYTES;
+    }
+}
@@ -0,0 +1,73 @@
+package solar_detect.services.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Single-flight por tile: enquanto uma chamada ao backend para uma chave está
+ * em andamento, as chamadas seguintes esperam o mesmo future e recebem os
+ * mesmos bytes (e o mesmo digest) em vez de rodar o modelo de novo.
+ */
+@Component
+public class PredictionCoalescer {
+
+    private final ConcurrentHashMap<TileKey, CompletableFuture<StoredPrediction>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong followers = new AtomicLong();
+
+    public PredictionCoalescer(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("prediction.coalescer.leaders", leaders, AtomicLong::get)
+                .description("Chamadas que efetivamente foram ao backend")
+                .register(meterRegistry);
+        FunctionCounter.builder("prediction.coalescer.followers", followers, AtomicLong::get)
+                .description("Chamadas atendidas por uma requisição já em andamento")
+                .register(meterRegistry);
+        Gauge.builder("prediction.coalescer.inflight", inFlight, ConcurrentHashMap::size).register(meterRegistry);
+    }
+
+    public StoredPrediction load(TileKey key, Supplier<StoredPrediction> loader) {
+        CompletableFuture<StoredPrediction> flight = new CompletableFuture<>();
+        CompletableFuture<StoredPrediction> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            followers.incrementAndGet();
+            return await(existing);
+        }
+
+        leaders.incrementAndGet();
+        try {
+            StoredPrediction result = loader.get();
+            flight.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // Qualquer falha (inclusive Error) precisa completar o future, senão os seguidores esperam para sempre
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static StoredPrediction await(CompletableFuture<StoredPrediction> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            // Repassa a mesma exceção do líder para o handler global
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
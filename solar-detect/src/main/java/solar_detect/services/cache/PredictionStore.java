@@ -0,0 +1,488 @@
+package solar_detect.services.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.config.PredictionProperties;
+
+/**
+ * Armazenamento persistente das imagens de predição em segmentos append-only
+ * mapeados em memória. O índice (tile -> segmento, offset, tamanho) fica em
+ * memória e é reconstruído a partir dos segmentos na inicialização; cada
+ * posição guarda também o digest do payload (base do ETag), calculado ao
+ * gravar ou ao reconstruir o índice, nunca a cada leitura.
+ *
+ * Hits levam também a região do arquivo onde está o payload, para o
+ * controller servi-los via sendfile. Por isso um segmento descartado só tem o
+ * arquivo apagado depois de RETIRED_GRACE: envios já agendados pelo servidor
+ * abrem o arquivo pelo caminho, ao fim da requisição.
+ *
+ * Formato de cada registro:
+ * magic(4) | crc32(4) | zoom(4) | x(8) | y(8) | storedAt(8) | length(4) | payload(length)
+ */
+@Component
+@Slf4j
+public class PredictionStore implements DisposableBean {
+
+    static final int RECORD_MAGIC = 0x53445032;
+    static final int HEADER_BYTES = 40;
+    private static final int CRC_OFFSET = 4;
+    private static final int CHECKED_HEADER_OFFSET = 8;
+    private static final int ZOOM_OFFSET = 8;
+    private static final int X_OFFSET = 12;
+    private static final int Y_OFFSET = 20;
+    private static final int STORED_AT_OFFSET = 28;
+    private static final int LENGTH_OFFSET = 36;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    static final Duration RETIRED_GRACE = Duration.ofMinutes(1);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+    private final int segmentBytes;
+    private final double compactionThreshold;
+    private final long maxAgeMillis;
+
+    private final Map<TileKey, Location> index = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    // ReentrantLock em vez de monitor: gravações rodam em virtual threads e fazem I/O
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private Segment active;
+    // Arquivos de segmentos descartados e quando foram descartados; só mexido sob writeLock
+    private final Map<Path, Long> retired = new LinkedHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    record Location(int segmentId, int offset, int length, long storedAt, byte[] digest) {
+
+        int recordBytes() {
+            return HEADER_BYTES + length;
+        }
+
+        Location withDigest(byte[] digest) {
+            return new Location(segmentId, offset, length, storedAt, digest);
+        }
+    }
+
+    public PredictionStore(PredictionProperties properties, MeterRegistry meterRegistry) {
+        PredictionProperties.Store config = properties.getStore();
+        this.enabled = config.isEnabled();
+        this.directory = Path.of(config.getDirectory());
+        this.maxBytes = config.getMaxSize().toBytes();
+        this.segmentBytes = (int) Math.min(Integer.MAX_VALUE, config.getSegmentSize().toBytes());
+        this.compactionThreshold = config.getCompactionThreshold();
+        Duration maxAge = properties.getCache().getMaxAge();
+        this.maxAgeMillis = maxAge == null ? 0 : maxAge.toMillis();
+
+        FunctionCounter.builder("prediction.store.hits", hits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("prediction.store.misses", misses, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("prediction.store.entries", index, Map::size).register(meterRegistry);
+        Gauge.builder("prediction.store.segments", segments, Map::size).register(meterRegistry);
+        Gauge.builder("prediction.store.disk.bytes", this, PredictionStore::diskBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(PredictionStore::isSegmentFile)
+                    .sorted((a, b) -> Integer.compare(segmentId(a), segmentId(b)))
+                    .toList();
+        }
+
+        for (Path file : files) {
+            Segment segment = Segment.recover(segmentId(file), file);
+            if (segment == null) {
+                continue;
+            }
+            segments.put(segment.id, segment);
+            rebuild(segment);
+        }
+        for (Map.Entry<TileKey, Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            Segment segment = segments.get(location.segmentId());
+            segment.liveBytes.addAndGet(location.recordBytes());
+            entry.setValue(location.withDigest(StoredPrediction.digest(segment.payload(location))));
+        }
+
+        writeLock.lock();
+        try {
+            rollActive(true);
+        } finally {
+            writeLock.unlock();
+        }
+        log.info("Prediction store aberto em {}: {} entradas em {} segmentos", directory, index.size(),
+                segments.size());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean contains(TileKey key) {
+        return index.containsKey(key);
+    }
+
+    // Retorna uma visão somente leitura da região mapeada, sem cópia para o heap
+    public StoredPrediction get(TileKey key) {
+        if (!enabled) {
+            return null;
+        }
+        Location location = index.get(key);
+        Segment segment = location == null ? null : segments.get(location.segmentId());
+        if (segment == null || isExpired(location)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new StoredPrediction(segment.payload(location), location.digest(), segment.region(location));
+    }
+
+    // Ignora prediction.cache.max-age; usado como fallback quando o backend está fora
+    public StoredPrediction getStale(TileKey key) {
+        if (!enabled) {
+            return null;
+        }
+        Location location = index.get(key);
+        Segment segment = location == null ? null : segments.get(location.segmentId());
+        return segment == null ? null
+                : new StoredPrediction(segment.payload(location), location.digest(), segment.region(location));
+    }
+
+    public void put(TileKey key, byte[] value, byte[] digest) {
+        put(key, ByteBuffer.wrap(value), digest);
+    }
+
+    public void put(TileKey key, ByteBuffer value) {
+        if (enabled) {
+            put(key, value, StoredPrediction.digest(value));
+        }
+    }
+
+    // Aceita buffers diretos: o conteúdo vai de memória nativa para o segmento mapeado sem passar pelo heap
+    public void put(TileKey key, ByteBuffer value, byte[] digest) {
+        if (!enabled || HEADER_BYTES + value.remaining() > segmentBytes) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            append(key, value, System.currentTimeMillis(), digest, true);
+        } catch (IOException e) {
+            log.warn("Falha ao gravar predição {} no disco", key, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${prediction.store.compaction-interval:PT10M}")
+    public void compact() {
+        if (!enabled) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            deleteRetired(RETIRED_GRACE.toNanos());
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                if (segment == active || segment.writePosition == 0
+                        || (double) segment.liveBytes.get() / segment.writePosition >= compactionThreshold) {
+                    continue;
+                }
+                compact(segment);
+            }
+        } catch (IOException e) {
+            log.warn("Falha ao compactar o prediction store", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public long diskBytes() {
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            total += segment.diskBytes();
+        }
+        return total;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            if (active != null) {
+                active.seal();
+            }
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+            deleteRetired(0);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void compact(Segment segment) throws IOException {
+        int moved = 0;
+        for (Map.Entry<TileKey, Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            if (location.segmentId() == segment.id) {
+                append(entry.getKey(), segment.payload(location), location.storedAt(), location.digest(), false);
+                moved++;
+            }
+        }
+        drop(segment);
+        log.info("Segmento {} compactado: {} entradas vivas movidas", segment.path.getFileName(), moved);
+    }
+
+    private void append(TileKey key, ByteBuffer payload, long storedAt, byte[] digest, boolean allowEviction)
+            throws IOException {
+        int length = payload.remaining();
+        if (active.remaining() < HEADER_BYTES + length) {
+            rollActive(allowEviction);
+        }
+        int offset = active.append(key, payload, storedAt);
+        Location previous = index.put(key, new Location(active.id, offset, length, storedAt, digest));
+        active.liveBytes.addAndGet(HEADER_BYTES + length);
+        if (previous != null) {
+            Segment old = segments.get(previous.segmentId());
+            if (old != null) {
+                old.liveBytes.addAndGet(-previous.recordBytes());
+            }
+        }
+    }
+
+    private void rollActive(boolean allowEviction) throws IOException {
+        if (active != null) {
+            active.seal();
+        }
+        deleteRetired(RETIRED_GRACE.toNanos());
+        if (allowEviction) {
+            // Respeita o limite de disco descartando os segmentos mais antigos
+            while (diskBytes() + segmentBytes > maxBytes) {
+                Segment oldest = segments.isEmpty() ? null : segments.firstEntry().getValue();
+                if (oldest == null || oldest == active) {
+                    break;
+                }
+                index.values().removeIf(location -> location.segmentId() == oldest.id);
+                drop(oldest);
+            }
+        }
+        int nextId = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        active = Segment.create(nextId, directory.resolve(segmentFileName(nextId)), segmentBytes);
+        segments.put(nextId, active);
+    }
+
+    private void drop(Segment segment) throws IOException {
+        segments.remove(segment.id);
+        segment.channel.close();
+        // Leitores que já têm um slice continuam válidos: o mapeamento sobrevive à remoção do arquivo.
+        // Quem recebeu a região para sendfile precisa do caminho, então o arquivo fica mais um pouco
+        retired.put(segment.path, System.nanoTime());
+    }
+
+    /*
+     * Apaga os arquivos descartados há pelo menos graceNanos.
+     * Se o processo cair antes disso, o arquivo volta como segmento na
+     * abertura; as entradas dele ou foram regravadas em segmentos mais novos,
+     * que vencem na reconstrução do índice, ou ainda são predições válidas.
+     */
+    private void deleteRetired(long graceNanos) throws IOException {
+        long now = System.nanoTime();
+        for (Iterator<Map.Entry<Path, Long>> it = retired.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, Long> entry = it.next();
+            if (now - entry.getValue() < graceNanos) {
+                break;
+            }
+            Files.deleteIfExists(entry.getKey());
+            it.remove();
+        }
+    }
+
+    private void rebuild(Segment segment) {
+        int position = 0;
+        while (position < segment.writePosition) {
+            int length = segment.buffer.getInt(position + LENGTH_OFFSET);
+            TileKey key = new TileKey(
+                    segment.buffer.getInt(position + ZOOM_OFFSET),
+                    segment.buffer.getLong(position + X_OFFSET),
+                    segment.buffer.getLong(position + Y_OFFSET));
+            long storedAt = segment.buffer.getLong(position + STORED_AT_OFFSET);
+            // Sem digest: registros mais novos da mesma chave ainda podem substituir este
+            index.put(key, new Location(segment.id, position, length, storedAt, null));
+            position += HEADER_BYTES + length;
+        }
+    }
+
+    private boolean isExpired(Location location) {
+        return maxAgeMillis > 0 && System.currentTimeMillis() - location.storedAt() > maxAgeMillis;
+    }
+
+    private static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static int segmentId(Path path) {
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static String segmentFileName(int id) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX);
+    }
+
+    private static int checksum(ByteBuffer buffer, int from, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(from, length));
+        return (int) crc.getValue();
+    }
+
+    static final class Segment {
+        final int id;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final AtomicLong liveBytes = new AtomicLong();
+        volatile int writePosition;
+        volatile boolean sealed;
+
+        private Segment(int id, Path path, FileChannel channel, MappedByteBuffer buffer, int writePosition,
+                boolean sealed) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.writePosition = writePosition;
+            this.sealed = sealed;
+        }
+
+        static Segment create(int id, Path path, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new Segment(id, path, channel, buffer, 0, false);
+        }
+
+        // Reabre um segmento existente e descarta o final a partir do primeiro registro inválido
+        static Segment recover(int id, Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = Math.min(channel.size(), Integer.MAX_VALUE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            int validEnd = scan(buffer);
+            if (validEnd == 0) {
+                channel.close();
+                Files.deleteIfExists(path);
+                return null;
+            }
+            if (validEnd < size) {
+                channel.truncate(validEnd);
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, validEnd);
+            }
+            return new Segment(id, path, channel, buffer, validEnd, true);
+        }
+
+        private static int scan(ByteBuffer buffer) {
+            int position = 0;
+            int limit = buffer.capacity();
+            while (position + HEADER_BYTES <= limit) {
+                if (buffer.getInt(position) != RECORD_MAGIC) {
+                    break;
+                }
+                int length = buffer.getInt(position + LENGTH_OFFSET);
+                if (length < 0 || (long) position + HEADER_BYTES + length > limit) {
+                    break;
+                }
+                int expected = checksum(buffer, position + CHECKED_HEADER_OFFSET,
+                        HEADER_BYTES - CHECKED_HEADER_OFFSET + length);
+                if (buffer.getInt(position + CRC_OFFSET) != expected) {
+                    break;
+                }
+                position += HEADER_BYTES + length;
+            }
+            return position;
+        }
+
+        int remaining() {
+            return sealed ? 0 : buffer.capacity() - writePosition;
+        }
+
+        int append(TileKey key, ByteBuffer payload, long storedAt) {
+            int offset = writePosition;
+            int length = payload.remaining();
+            buffer.putInt(offset, RECORD_MAGIC);
+            buffer.putInt(offset + ZOOM_OFFSET, key.zoom());
+            buffer.putLong(offset + X_OFFSET, key.x());
+            buffer.putLong(offset + Y_OFFSET, key.y());
+            buffer.putLong(offset + STORED_AT_OFFSET, storedAt);
+            buffer.putInt(offset + LENGTH_OFFSET, length);
+            buffer.put(offset + HEADER_BYTES, payload.duplicate(), payload.position(), length);
+            buffer.putInt(offset + CRC_OFFSET, checksum(buffer, offset + CHECKED_HEADER_OFFSET,
+                    HEADER_BYTES - CHECKED_HEADER_OFFSET + length));
+            writePosition = offset + HEADER_BYTES + length;
+            return offset;
+        }
+
+        ByteBuffer payload(Location location) {
+            return buffer.slice(location.offset() + HEADER_BYTES, location.length()).asReadOnlyBuffer();
+        }
+
+        FileRegion region(Location location) {
+            return new FileRegion(path, location.offset() + HEADER_BYTES, location.length());
+        }
+
+        void seal() throws IOException {
+            if (sealed) {
+                return;
+            }
+            buffer.force();
+            channel.truncate(writePosition);
+            sealed = true;
+        }
+
+        long diskBytes() {
+            return sealed ? writePosition : buffer.capacity();
+        }
+    }
+}
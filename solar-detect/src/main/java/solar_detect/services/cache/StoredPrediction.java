@@ -0,0 +1,37 @@
+package solar_detect.services.cache;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Entrada do cache ou do store junto com o digest do conteúdo, calculado uma
+ * única vez quando a entrada é gravada (no store, também ao reconstruir o
+ * índice). É a base do ETag: um hit não relê o payload para respondê-lo.
+ * Entradas do store trazem também a região do segmento onde o payload está;
+ * as do cache em memória e as recém-chegadas do backend, null.
+ */
+public record StoredPrediction(ByteBuffer payload, byte[] digest, FileRegion region) {
+
+    static final int DIGEST_BYTES = 16;
+
+    public StoredPrediction(ByteBuffer payload, byte[] digest) {
+        this(payload, digest, null);
+    }
+
+    public static StoredPrediction of(byte[] value) {
+        return new StoredPrediction(ByteBuffer.wrap(value).asReadOnlyBuffer(), digest(ByteBuffer.wrap(value)));
+    }
+
+    // SHA-256 truncado em 128 bits, o mesmo tamanho do ETag
+    public static byte[] digest(ByteBuffer value) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(value.duplicate());
+            return Arrays.copyOf(sha.digest(), DIGEST_BYTES);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package solar_detect.services.cache;
+
+import solar_detect.util.WebMercator;
+import solar_detect.util.WebMercator.LatLon;
+import solar_detect.util.WebMercator.PixelPoint;
+
+/**
+ * Posição normalizada de uma predição: o pixel central (zoom 19) ajustado
+ * ao centro de uma célula de {@code gridPixels} x {@code gridPixels}. As
+ * células são centradas nos múltiplos de {@code gridPixels}, então, com uma
+ * grade que divide 128, o centro de cada tile de 256 px (o ponto usado pela
+ * varredura de área) é ele mesmo um centro de célula.
+ */
+public record TileKey(int zoom, long x, long y) {
+
+    public static TileKey of(double lat, double lon, int gridPixels) {
+        return of(lat, lon, WebMercator.DETECTION_ZOOM, gridPixels);
+    }
+
+    public static TileKey of(double lat, double lon, int zoom, int gridPixels) {
+        int grid = Math.max(1, gridPixels);
+        PixelPoint pixel = WebMercator.latLonToPixel(lat, lon, zoom);
+        long x = Math.floorDiv(pixel.x() + grid / 2, grid) * grid;
+        long y = Math.floorDiv(pixel.y() + grid / 2, grid) * grid;
+        return new TileKey(zoom, x, y);
+    }
+
+    // Chave da célula a dx, dy células desta, na mesma grade
+    public TileKey neighbour(int dx, int dy, int gridPixels) {
+        int grid = Math.max(1, gridPixels);
+        return new TileKey(zoom, x + (long) dx * grid, y + (long) dy * grid);
+    }
+
+    // Coordenada enviada ao FastAPI; o +0.5 mantém o int() do Python no mesmo pixel
+    public LatLon centre() {
+        return WebMercator.pixelToLatLon(x + 0.5, y + 0.5, zoom);
+    }
+
+    @Override
+    public String toString() {
+        return zoom + "/" + x + "/" + y;
+    }
+}
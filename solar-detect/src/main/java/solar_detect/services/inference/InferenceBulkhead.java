@@ -0,0 +1,89 @@
+package solar_detect.services.inference;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import solar_detect.config.PredictionProperties;
+import solar_detect.exceptions.InferenceUnavailableException;
+
+/**
+ * Limita quantas chamadas ao backend de inferência podem estar em andamento,
+ * independente de quantas threads (servlet ou virtuais) estão esperando por elas.
+ */
+@Component
+public class InferenceBulkhead {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long maxWaitMillis;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public InferenceBulkhead(PredictionProperties properties, MeterRegistry meterRegistry) {
+        PredictionProperties.Bulkhead config = properties.getBulkhead();
+        this.maxConcurrent = config.getMaxConcurrent();
+        this.maxWaitMillis = config.getMaxWait().toMillis();
+        this.permits = new Semaphore(maxConcurrent, true);
+
+        Gauge.builder("inference.bulkhead.inflight", this, InferenceBulkhead::inFlight)
+                .description("Chamadas ao backend em andamento")
+                .register(meterRegistry);
+        Gauge.builder("inference.bulkhead.waiting", permits, Semaphore::getQueueLength)
+                .description("Chamadas aguardando uma vaga no bulkhead")
+                .register(meterRegistry);
+        FunctionCounter.builder("inference.bulkhead.rejected", rejected, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    public <T> T call(Supplier<T> backendCall) {
+        try (Permit permit = acquire()) {
+            return backendCall.get();
+        }
+    }
+
+    // Para chamadas cuja duração vai além de um Supplier (ex.: streaming do corpo da resposta)
+    public Permit acquire() {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InferenceUnavailableException("Interrompido aguardando o backend de inferência", 1, e);
+        }
+        if (!acquired) {
+            rejected.incrementAndGet();
+            throw new InferenceUnavailableException("Backend de inferência saturado, tente novamente em instantes", 2);
+        }
+        return new Permit();
+    }
+
+    public int inFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int maxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public final class Permit implements AutoCloseable {
+
+        private boolean released;
+
+        private Permit() {
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package solar_detect.services.inference;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.config.InferenceProperties;
+import solar_detect.exceptions.InferenceUnavailableException;
+
+/**
+ * Circuit breaker na frente do backend de inferência. Olha as últimas
+ * window-size chamadas: se a taxa de falhas ou de chamadas lentas passa do
+ * limite, o circuito abre e as requisições falham na hora (ou caem no cache)
+ * em vez de esperar o timeout de leitura. Depois de open-duration algumas
+ * chamadas de teste decidem se ele fecha de novo.
+ */
+@Component
+@Slf4j
+public class InferenceCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean enabled;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    // Janela circular das últimas chamadas; protegida pelo monitor do próprio breaker
+    private final boolean[] failedCalls;
+    private final boolean[] slowCalls;
+    private int position;
+    private int recorded;
+    private int failureCount;
+    private int slowCount;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+    private int halfOpenSlow;
+
+    private final AtomicLong shortCircuited = new AtomicLong();
+
+    public InferenceCircuitBreaker(InferenceProperties properties, MeterRegistry meterRegistry) {
+        InferenceProperties.CircuitBreaker config = properties.getCircuitBreaker();
+        this.enabled = config.isEnabled();
+        this.minimumCalls = Math.min(config.getMinimumCalls(), config.getWindowSize());
+        this.failureRateThreshold = config.getFailureRateThreshold();
+        this.slowCallRateThreshold = config.getSlowCallRateThreshold();
+        this.slowCallNanos = config.getSlowCallDuration().toNanos();
+        this.openNanos = config.getOpenDuration().toNanos();
+        this.halfOpenCalls = Math.max(1, config.getHalfOpenCalls());
+        this.failedCalls = new boolean[config.getWindowSize()];
+        this.slowCalls = new boolean[config.getWindowSize()];
+
+        Gauge.builder("inference.circuit.state", this, breaker -> breaker.state().ordinal())
+                .description("0 = fechado, 1 = aberto, 2 = meio aberto")
+                .register(meterRegistry);
+        Gauge.builder("inference.circuit.failure.rate", this, InferenceCircuitBreaker::failureRate)
+                .register(meterRegistry);
+        Gauge.builder("inference.circuit.slow.rate", this, InferenceCircuitBreaker::slowCallRate)
+                .register(meterRegistry);
+        FunctionCounter.builder("inference.circuit.short.circuited", shortCircuited, AtomicLong::get)
+                .description("Chamadas recusadas sem ir ao backend")
+                .register(meterRegistry);
+    }
+
+    public <T> T execute(Supplier<T> backendCall) {
+        long started = acquirePermission();
+        boolean failed = true;
+        try {
+            T result = backendCall.get();
+            failed = false;
+            return result;
+        } finally {
+            onResult(started, failed);
+        }
+    }
+
+    // Só consulta; não reserva uma chamada de teste no estado meio aberto
+    public synchronized boolean isCallPermitted() {
+        if (!enabled) {
+            return true;
+        }
+        return switch (currentState()) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> halfOpenPermits > 0;
+        };
+    }
+
+    /*
+     * Para chamadas que não cabem em um Supplier (ex.: streaming). Retorna o
+     * instante de início, que deve voltar em onResult quando a chamada terminar.
+     */
+    public synchronized long acquirePermission() {
+        if (!enabled) {
+            return System.nanoTime();
+        }
+        State current = currentState();
+        if (current == State.OPEN || (current == State.HALF_OPEN && halfOpenPermits == 0)) {
+            shortCircuited.incrementAndGet();
+            throw openException();
+        }
+        if (current == State.HALF_OPEN) {
+            halfOpenPermits--;
+        }
+        return System.nanoTime();
+    }
+
+    public synchronized void onResult(long startedNanos, boolean failed) {
+        if (!enabled) {
+            return;
+        }
+        boolean slow = System.nanoTime() - startedNanos >= slowCallNanos;
+        switch (state) {
+            case CLOSED -> record(failed, slow);
+            case HALF_OPEN -> recordHalfOpen(failed, slow);
+            case OPEN -> {
+                // Resposta atrasada de uma chamada iniciada antes de abrir: ignorada
+            }
+        }
+    }
+
+    public synchronized State state() {
+        return enabled ? currentState() : State.CLOSED;
+    }
+
+    public synchronized double failureRate() {
+        return recorded == 0 ? 0.0 : (double) failureCount / recorded;
+    }
+
+    public synchronized double slowCallRate() {
+        return recorded == 0 ? 0.0 : (double) slowCount / recorded;
+    }
+
+    public synchronized InferenceUnavailableException openException() {
+        long retryAfter = 1;
+        if (state == State.OPEN) {
+            long remaining = openNanos - (System.nanoTime() - openedAt);
+            retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + TimeUnit.SECONDS.toNanos(1) - 1));
+        }
+        return new InferenceUnavailableException(
+                "Backend de inferência indisponível, tente novamente em instantes", retryAfter);
+    }
+
+    private State currentState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            transitionTo(State.HALF_OPEN);
+        }
+        return state;
+    }
+
+    private void record(boolean failed, boolean slow) {
+        if (recorded == failedCalls.length) {
+            failureCount -= failedCalls[position] ? 1 : 0;
+            slowCount -= slowCalls[position] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failedCalls[position] = failed;
+        slowCalls[position] = slow;
+        failureCount += failed ? 1 : 0;
+        slowCount += slow ? 1 : 0;
+        position = (position + 1) % failedCalls.length;
+
+        if (recorded >= minimumCalls
+                && (failureRate() >= failureRateThreshold || slowCallRate() >= slowCallRateThreshold)) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void recordHalfOpen(boolean failed, boolean slow) {
+        if (failed) {
+            transitionTo(State.OPEN);
+            return;
+        }
+        halfOpenSuccesses++;
+        halfOpenSlow += slow ? 1 : 0;
+        if (halfOpenSuccesses == halfOpenCalls) {
+            boolean stillSlow = (double) halfOpenSlow / halfOpenCalls >= slowCallRateThreshold;
+            transitionTo(stillSlow ? State.OPEN : State.CLOSED);
+        }
+    }
+
+    private void transitionTo(State next) {
+        if (next == state) {
+            return;
+        }
+        log.warn("Circuit breaker do backend de inferência: {} -> {} (falhas {}, lentas {})",
+                state, next, String.format("%.2f", failureRate()), String.format("%.2f", slowCallRate()));
+        state = next;
+        switch (next) {
+            case OPEN -> openedAt = System.nanoTime();
+            case HALF_OPEN -> {
+                halfOpenPermits = halfOpenCalls;
+                halfOpenSuccesses = 0;
+                halfOpenSlow = 0;
+            }
+            case CLOSED -> {
+                position = 0;
+                recorded = 0;
+                failureCount = 0;
+                slowCount = 0;
+            }
+        }
+    }
+}
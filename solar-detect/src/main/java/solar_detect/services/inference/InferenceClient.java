@@ -0,0 +1,257 @@
+package solar_detect.services.inference;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.config.InferenceProperties;
+import solar_detect.exceptions.InferenceUnavailableException;
+import solar_detect.services.render.MaskPayload;
+import solar_detect.util.PngFormat;
+
+/**
+ * Cliente HTTP compartilhado para o backend FastAPI de inferência.
+ * Mantém um pool limitado de conexões keep-alive em vez de abrir um
+ * RestTemplate (e um handshake TCP) por requisição.
+ */
+@Component
+@Slf4j
+public class InferenceClient implements DisposableBean {
+
+    private final InferenceProperties properties;
+    private final InferenceLoadBalancer loadBalancer;
+    private final RequestConfig healthCheckConfig;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate restTemplate;
+
+    public InferenceClient(InferenceProperties properties, InferenceLoadBalancer loadBalancer,
+            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.loadBalancer = loadBalancer;
+
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxConnections())
+                .setMaxConnPerRoute(properties.getMaxConnections())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(properties.getConnectTimeout().toMillis()))
+                        .setSocketTimeout(Timeout.ofMilliseconds(properties.getReadTimeout().toMillis()))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        TimeValue keepAlive = TimeValue.ofMilliseconds(properties.getKeepAlive().toMillis());
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy((response, context) -> keepAlive)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(
+                                Timeout.ofMilliseconds(properties.getConnectionRequestTimeout().toMillis()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(properties.getReadTimeout().toMillis()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(properties.getIdleEviction().toMillis()))
+                .build();
+
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+
+        Timeout healthCheckTimeout = Timeout.ofMilliseconds(properties.getHealthCheck().getTimeout().toMillis());
+        this.healthCheckConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(healthCheckTimeout)
+                .setResponseTimeout(healthCheckTimeout)
+                .build();
+
+        registerPoolMetrics(meterRegistry);
+    }
+
+    public byte[] predict(double lat, double lon) {
+        return get("/predict", lat, lon, "", PngFormat::isPng, "um PNG");
+    }
+
+    // Máscara binária + tile original (MaskPayload), para o overlay ser montado no Java
+    public byte[] predictMask(double lat, double lon) {
+        return get("/predict/mask", lat, lon, "&tile_format=" + properties.getMaskTileFormat(),
+                MaskPayload::isMaskPayload, "uma máscara");
+    }
+
+    /*
+     * O FastAPI responde 200 com um JSON de erro quando o modelo falha: o
+     * corpo é conferido antes de contar sucesso, senão a réplica quebrada
+     * (e a mais rápida) nunca seria ejetada e receberia ainda mais tráfego.
+     */
+    private byte[] get(String path, double lat, double lon, String extraQuery, Predicate<byte[]> valid,
+            String expected) {
+        InferenceEndpoint endpoint = loadBalancer.choose();
+        long started = endpoint.begin();
+        boolean failed = true;
+        try {
+            byte[] body = restTemplate.getForObject(predictUrl(endpoint, path, lat, lon) + extraQuery, byte[].class);
+            if (!valid.test(body)) {
+                throw new InferenceUnavailableException(
+                        "Backend de inferência " + endpoint + " não retornou " + expected, 1);
+            }
+            failed = false;
+            return body;
+        } catch (RestClientException e) {
+            throw new InferenceUnavailableException("Falha ao chamar o backend de inferência " + endpoint, 1, e);
+        } finally {
+            if (failed) {
+                endpoint.onFailure(started);
+            } else {
+                endpoint.onSuccess(started);
+            }
+        }
+    }
+
+    // Abre a resposta sem lê-la; quem chama faz o streaming do corpo e fecha
+    public UpstreamResponse open(double lat, double lon) throws IOException {
+        InferenceEndpoint endpoint = loadBalancer.choose();
+        URI uri = URI.create(predictUrl(endpoint, "/predict", lat, lon));
+        HttpHost target = new HttpHost(uri.getScheme(), uri.getHost(), uri.getPort());
+        long started = endpoint.begin();
+        ClassicHttpResponse response;
+        try {
+            response = httpClient.executeOpen(target, new HttpGet(uri), null);
+        } catch (IOException | RuntimeException e) {
+            endpoint.onFailure(started);
+            throw new InferenceUnavailableException("Falha ao chamar o backend de inferência " + endpoint, 1, e);
+        }
+
+        HttpEntity entity = response.getEntity();
+        if (response.getCode() != 200 || entity == null) {
+            EntityUtils.consumeQuietly(entity);
+            response.close();
+            endpoint.onFailure(started);
+            throw new InferenceUnavailableException(
+                    "Backend de inferência " + endpoint + " respondeu com status " + response.getCode(), 1);
+        }
+        return new UpstreamResponse(response, entity, endpoint, started);
+    }
+
+    // Qualquer 200 no path de health check conta como saudável
+    public boolean isHealthy(InferenceEndpoint endpoint) {
+        HttpGet request = new HttpGet(endpoint.baseUrl() + properties.getHealthCheck().getPath());
+        request.setConfig(healthCheckConfig);
+        try {
+            return httpClient.execute(request, response -> {
+                EntityUtils.consume(response.getEntity());
+                return response.getCode() == 200;
+            });
+        } catch (IOException e) {
+            log.debug("Health check de {} falhou: {}", endpoint, e.getMessage());
+            return false;
+        }
+    }
+
+    private static String predictUrl(InferenceEndpoint endpoint, String path, double lat, double lon) {
+        return String.format(Locale.US, "%s%s?lat=%.6f&lon=%.6f", endpoint.baseUrl(), path, lat, lon);
+    }
+
+    public PoolStats poolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    private void registerPoolMetrics(MeterRegistry registry) {
+        Gauge.builder("inference.pool.leased", connectionManager, cm -> cm.getTotalStats().getLeased())
+                .description("Conexões em uso com o backend de inferência")
+                .register(registry);
+        Gauge.builder("inference.pool.pending", connectionManager, cm -> cm.getTotalStats().getPending())
+                .description("Requisições aguardando uma conexão livre")
+                .register(registry);
+        Gauge.builder("inference.pool.available", connectionManager, cm -> cm.getTotalStats().getAvailable())
+                .description("Conexões ociosas mantidas em keep-alive")
+                .register(registry);
+        Gauge.builder("inference.pool.max", connectionManager, cm -> cm.getTotalStats().getMax())
+                .register(registry);
+        Gauge.builder("inference.pool.saturation", connectionManager, cm -> {
+            PoolStats stats = cm.getTotalStats();
+            return stats.getMax() == 0 ? 0.0 : (double) stats.getLeased() / stats.getMax();
+        }).description("Fração do pool em uso (1.0 = saturado)").register(registry);
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        httpClient.close();
+        connectionManager.close();
+    }
+
+    public static final class UpstreamResponse implements Closeable {
+
+        private final ClassicHttpResponse response;
+        private final HttpEntity entity;
+        private final InferenceEndpoint endpoint;
+        private final long startedNanos;
+        private boolean failed;
+        private boolean closed;
+
+        private UpstreamResponse(ClassicHttpResponse response, HttpEntity entity, InferenceEndpoint endpoint,
+                long startedNanos) {
+            this.response = response;
+            this.entity = entity;
+            this.endpoint = endpoint;
+            this.startedNanos = startedNanos;
+        }
+
+        // -1 quando o backend responde com transfer-encoding chunked
+        public long contentLength() {
+            return entity.getContentLength();
+        }
+
+        public String contentType() {
+            return entity.getContentType();
+        }
+
+        public InputStream body() throws IOException {
+            return entity.getContent();
+        }
+
+        // Resposta inutilizável (ex.: não é imagem); conta como erro da réplica ao fechar
+        public void markFailed() {
+            failed = true;
+        }
+
+        // A chamada só termina para o balanceador quando o corpo foi consumido
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                response.close();
+            } finally {
+                if (failed) {
+                    endpoint.onFailure(startedNanos);
+                } else {
+                    endpoint.onSuccess(startedNanos);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package solar_detect.services.inference;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Uma réplica do backend de inferência: requisições em andamento, estado de
+ * saúde e métricas próprias. Falhas consecutivas (de chamadas reais ou do
+ * health check) ejetam a réplica. O health check a reintegra; passado o
+ * cool-down da ejeção, uma chamada real por vez também serve de teste, e
+ * healthy-threshold sucessos seguidos a reintegram mesmo sem health check.
+ */
+@Slf4j
+public class InferenceEndpoint {
+
+    private final String baseUrl;
+    private final int unhealthyThreshold;
+    private final int healthyThreshold;
+    private final long cooldownNanos;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile boolean healthy = true;
+    private int consecutiveFailures;
+    private int consecutiveSuccesses;
+    private long ejectedAtNanos;
+    private boolean probing;
+
+    private final Timer latency;
+    private final Counter errors;
+
+    InferenceEndpoint(String baseUrl, int unhealthyThreshold, int healthyThreshold, Duration ejectionCooldown,
+            MeterRegistry meterRegistry) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.unhealthyThreshold = Math.max(1, unhealthyThreshold);
+        this.healthyThreshold = Math.max(1, healthyThreshold);
+        this.cooldownNanos = ejectionCooldown.toNanos();
+
+        this.latency = Timer.builder("inference.endpoint.latency")
+                .tag("endpoint", this.baseUrl)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.errors = Counter.builder("inference.endpoint.errors")
+                .tag("endpoint", this.baseUrl)
+                .register(meterRegistry);
+        Gauge.builder("inference.endpoint.outstanding", outstanding, AtomicInteger::get)
+                .tag("endpoint", this.baseUrl)
+                .register(meterRegistry);
+        Gauge.builder("inference.endpoint.healthy", this, endpoint -> endpoint.isHealthy() ? 1 : 0)
+                .tag("endpoint", this.baseUrl)
+                .register(meterRegistry);
+    }
+
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public int outstanding() {
+        return outstanding.get();
+    }
+
+    // Marca o início de uma chamada; retorna o instante para onSuccess/onFailure
+    long begin() {
+        outstanding.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    // Ejetada e fora do cool-down, sem outra chamada de teste em andamento: reserva a vez
+    synchronized boolean tryProbe() {
+        if (healthy || probing || System.nanoTime() - ejectedAtNanos < cooldownNanos) {
+            return false;
+        }
+        probing = true;
+        return true;
+    }
+
+    void onSuccess(long startedNanos) {
+        outstanding.decrementAndGet();
+        latency.record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+        synchronized (this) {
+            consecutiveFailures = 0;
+            if (!healthy) {
+                probing = false;
+                recordSuccess("após chamadas de teste");
+            }
+        }
+    }
+
+    void onFailure(long startedNanos) {
+        outstanding.decrementAndGet();
+        latency.record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+        errors.increment();
+        recordFailure();
+    }
+
+    synchronized void onHealthCheck(boolean passed) {
+        if (!passed) {
+            recordFailure();
+            return;
+        }
+        consecutiveFailures = 0;
+        if (!healthy) {
+            recordSuccess("pelo health check");
+        }
+    }
+
+    private synchronized void recordSuccess(String how) {
+        if (++consecutiveSuccesses >= healthyThreshold) {
+            healthy = true;
+            consecutiveSuccesses = 0;
+            log.info("Réplica de inferência {} reintegrada {}", baseUrl, how);
+        }
+    }
+
+    // Ainda ejetada, a falha recomeça o cool-down da próxima chamada de teste
+    private synchronized void recordFailure() {
+        consecutiveSuccesses = 0;
+        if (!healthy) {
+            probing = false;
+            ejectedAtNanos = System.nanoTime();
+        } else if (++consecutiveFailures >= unhealthyThreshold) {
+            healthy = false;
+            ejectedAtNanos = System.nanoTime();
+            log.warn("Réplica de inferência {} ejetada após {} falhas consecutivas", baseUrl, consecutiveFailures);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return baseUrl;
+    }
+}
@@ -0,0 +1,30 @@
+package solar_detect.services.inference;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import solar_detect.config.InferenceProperties;
+
+/**
+ * Health check ativo das réplicas de inferência. Roda também para as réplicas
+ * saudáveis, para ejetar uma réplica parada antes que o tráfego real chegue a ela.
+ */
+@Component
+@RequiredArgsConstructor
+public class InferenceHealthChecker {
+
+    private final InferenceLoadBalancer loadBalancer;
+    private final InferenceClient inferenceClient;
+    private final InferenceProperties properties;
+
+    @Scheduled(fixedDelayString = "${inference.health-check.interval:PT5S}")
+    public void checkEndpoints() {
+        if (!properties.getHealthCheck().isEnabled()) {
+            return;
+        }
+        for (InferenceEndpoint endpoint : loadBalancer.endpoints()) {
+            endpoint.onHealthCheck(inferenceClient.isHealthy(endpoint));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package solar_detect.services.inference;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import solar_detect.config.InferenceProperties;
+
+/**
+ * Balanceamento do lado do cliente entre as réplicas do FastAPI: cada chamada
+ * vai para a réplica saudável com menos requisições em andamento, de modo que
+ * uma réplica lenta acumula fila e deixa de receber tráfego. Réplicas
+ * ejetadas voltam a receber uma chamada de teste a cada ejection-cooldown.
+ */
+@Component
+public class InferenceLoadBalancer {
+
+    private final List<InferenceEndpoint> endpoints;
+    private final AtomicInteger rotation = new AtomicInteger();
+
+    public InferenceLoadBalancer(InferenceProperties properties, MeterRegistry meterRegistry) {
+        InferenceProperties.HealthCheck healthCheck = properties.getHealthCheck();
+        List<String> urls = properties.getEndpoints().isEmpty()
+                ? List.of(properties.getBaseUrl())
+                : properties.getEndpoints();
+        this.endpoints = urls.stream()
+                .map(url -> new InferenceEndpoint(url, healthCheck.getUnhealthyThreshold(),
+                        healthCheck.getHealthyThreshold(), healthCheck.getEjectionCooldown(), meterRegistry))
+                .toList();
+
+        Gauge.builder("inference.endpoints.healthy", this, InferenceLoadBalancer::healthyCount)
+                .register(meterRegistry);
+    }
+
+    public InferenceEndpoint choose() {
+        // Réplica ejetada cujo cool-down passou recebe esta chamada como teste (reintegração passiva)
+        for (InferenceEndpoint endpoint : endpoints) {
+            if (endpoint.tryProbe()) {
+                return endpoint;
+            }
+        }
+        InferenceEndpoint chosen = leastOutstanding(true);
+        // Todas ejetadas: melhor tentar alguma do que recusar; o circuit breaker cuida do resto
+        return chosen != null ? chosen : leastOutstanding(false);
+    }
+
+    public List<InferenceEndpoint> endpoints() {
+        return endpoints;
+    }
+
+    public long healthyCount() {
+        return endpoints.stream().filter(InferenceEndpoint::isHealthy).count();
+    }
+
+    // O início da varredura gira a cada chamada para que empates não caiam sempre na primeira réplica
+    private InferenceEndpoint leastOutstanding(boolean healthyOnly) {
+        int size = endpoints.size();
+        int start = Math.floorMod(rotation.getAndIncrement(), size);
+        InferenceEndpoint best = null;
+        for (int i = 0; i < size; i++) {
+            InferenceEndpoint candidate = endpoints.get((start + i) % size);
+            if (healthyOnly && !candidate.isHealthy()) {
+                continue;
+            }
+            if (best == null || candidate.outstanding() < best.outstanding()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,159 @@
+package solar_detect.services.prefetch;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.config.PredictionProperties;
+import solar_detect.config.PrefetchProperties;
+import solar_detect.exceptions.InferenceUnavailableException;
+import solar_detect.services.PredictionService;
+import solar_detect.services.cache.TileKey;
+import solar_detect.services.inference.InferenceBulkhead;
+import solar_detect.services.inference.InferenceCircuitBreaker;
+import solar_detect.util.WebMercator.LatLon;
+
+/**
+ * Pré-calcula predições das regiões mais pedidas. A cada execução agrupa os
+ * request_logs recentes em pontos de ~10 m, pega os mais frequentes e as
+ * células vizinhas na grade do cache e busca, um por vez, os que ainda não
+ * estão em cache nem no store. Os vizinhos saem da mesma quantização das
+ * chaves de requisição (TileKey), então um pedido próximo ao hotspot cai
+ * exatamente numa chave buscada. Antes de cada busca confere se o backend
+ * está ocioso; se o tráfego real subir (bulkhead acima de
+ * prefetch.idle-utilization ou circuito aberto), para e espera a próxima
+ * execução. O aproveitamento aparece em prediction.prefetch.hit.ratio.
+ */
+@Component
+@Slf4j
+public class HotspotPrefetcher {
+
+    private static final String HOTSPOTS = """
+            SELECT ROUND(CAST(latitude AS numeric), 4) AS lat, ROUND(CAST(longitude AS numeric), 4) AS lon,
+                   COUNT(*) AS hits
+            FROM request_logs
+            WHERE request_time >= ? AND latitude IS NOT NULL AND longitude IS NOT NULL
+            GROUP BY 1, 2
+            ORDER BY hits DESC
+            LIMIT ?
+            """;
+
+    private final PrefetchProperties properties;
+    private final int gridPixels;
+    private final PredictionService predictionService;
+    private final PrefetchTracker tracker;
+    private final InferenceBulkhead bulkhead;
+    private final InferenceCircuitBreaker circuitBreaker;
+    private final JdbcTemplate jdbcTemplate;
+    private final ExecutorService predictionExecutor;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Counter yielded;
+
+    public HotspotPrefetcher(PrefetchProperties properties, PredictionProperties predictionProperties,
+            PredictionService predictionService, PrefetchTracker tracker, InferenceBulkhead bulkhead,
+            InferenceCircuitBreaker circuitBreaker, JdbcTemplate jdbcTemplate, ExecutorService predictionExecutor,
+            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.gridPixels = predictionProperties.getCache().getGridPixels();
+        this.predictionService = predictionService;
+        this.tracker = tracker;
+        this.bulkhead = bulkhead;
+        this.circuitBreaker = circuitBreaker;
+        this.jdbcTemplate = jdbcTemplate;
+        this.predictionExecutor = predictionExecutor;
+        this.yielded = Counter.builder("prediction.prefetch.yielded")
+                .description("Execuções interrompidas por tráfego real no backend")
+                .register(meterRegistry);
+    }
+
+    // A execução roda numa virtual thread para não prender o scheduler (health check, compactação)
+    @Scheduled(fixedDelayString = "${prefetch.interval:PT5M}", initialDelayString = "${prefetch.interval:PT5M}")
+    public void schedule() {
+        if (!properties.isEnabled() || !predictionService.cachingEnabled() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        predictionExecutor.execute(() -> {
+            try {
+                run();
+            } catch (RuntimeException e) {
+                log.warn("Falha no prefetch de hotspots", e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    void run() {
+        tracker.expire(properties.getLookback());
+        int fetched = 0;
+        for (TileKey key : candidates()) {
+            if (fetched >= properties.getMaxTilesPerRun()) {
+                break;
+            }
+            if (!backendIdle()) {
+                yielded.increment();
+                break;
+            }
+            try {
+                if (predictionService.prefetch(key)) {
+                    fetched++;
+                    tracker.prefetched(key);
+                }
+            } catch (InferenceUnavailableException e) {
+                log.debug("Prefetch interrompido: {}", e.getMessage());
+                break;
+            }
+        }
+        if (fetched > 0) {
+            log.info("Prefetch de hotspots: {} tiles adicionados ao cache", fetched);
+        }
+    }
+
+    private boolean backendIdle() {
+        return circuitBreaker.isCallPermitted()
+                && bulkhead.inFlight() <= bulkhead.maxConcurrent() * properties.getIdleUtilization();
+    }
+
+    /*
+     * Hotspots do mais ao menos pedido; depois os vizinhos de cada um, na
+     * mesma ordem. Fica de fora o que já está em cache ou no store, mesmo
+     * expirado: entradas expiradas são renovadas pelo tráfego, não pelo
+     * prefetch. Os próprios hotspots costumam já estar lá, porque vieram de
+     * requisições.
+     */
+    List<TileKey> candidates() {
+        List<LatLon> hotspots = jdbcTemplate.query(HOTSPOTS,
+                (rs, row) -> new LatLon(rs.getDouble("lat"), rs.getDouble("lon")),
+                Timestamp.valueOf(LocalDateTime.now().minus(properties.getLookback())), properties.getHotspots());
+
+        List<TileKey> keys = hotspots.stream()
+                .map(hotspot -> predictionService.tileKey(hotspot.lat(), hotspot.lon()))
+                .distinct()
+                .toList();
+        Set<TileKey> candidates = new LinkedHashSet<>(keys);
+        int rings = properties.getNeighbourRings();
+        int step = Math.max(1, properties.getNeighbourStepCells()) * gridPixels;
+        for (TileKey key : keys) {
+            for (int dy = -rings; dy <= rings; dy++) {
+                for (int dx = -rings; dx <= rings; dx++) {
+                    if (dx != 0 || dy != 0) {
+                        candidates.add(key.neighbour(dx, dy, step));
+                    }
+                }
+            }
+        }
+        candidates.removeIf(predictionService::isCached);
+        return List.copyOf(candidates);
+    }
+}
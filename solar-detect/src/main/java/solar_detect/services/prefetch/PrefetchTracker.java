@@ -0,0 +1,59 @@
+package solar_detect.services.prefetch;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import solar_detect.services.cache.TileKey;
+
+/**
+ * Acompanha os tiles buscados pelo prefetch até a primeira requisição que
+ * os usa, para medir quanto do trabalho antecipado é aproveitado. Cada tile
+ * conta no máximo um acerto; os nunca usados saem depois de expire.
+ */
+@Component
+public class PrefetchTracker {
+
+    private final ConcurrentHashMap<TileKey, Long> pending = new ConcurrentHashMap<>();
+    private final AtomicLong prefetched = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    public PrefetchTracker(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("prediction.prefetch.tiles", prefetched, AtomicLong::get)
+                .description("Tiles buscados antecipadamente pelo prefetch")
+                .register(meterRegistry);
+        FunctionCounter.builder("prediction.prefetch.hits", hits, AtomicLong::get)
+                .description("Tiles do prefetch servidos depois a uma requisição")
+                .register(meterRegistry);
+        Gauge.builder("prediction.prefetch.hit.ratio", this, PrefetchTracker::hitRatio)
+                .description("Fração dos tiles do prefetch que chegaram a ser usados")
+                .register(meterRegistry);
+    }
+
+    public void prefetched(TileKey key) {
+        prefetched.incrementAndGet();
+        pending.put(key, System.currentTimeMillis());
+    }
+
+    // Chamado nos hits de cache; só o primeiro uso de um tile do prefetch conta
+    public void served(TileKey key) {
+        if (!pending.isEmpty() && pending.remove(key) != null) {
+            hits.incrementAndGet();
+        }
+    }
+
+    public void expire(Duration maxAge) {
+        long oldest = System.currentTimeMillis() - maxAge.toMillis();
+        pending.values().removeIf(prefetchedAt -> prefetchedAt < oldest);
+    }
+
+    public double hitRatio() {
+        long total = prefetched.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+}
@@ -0,0 +1,22 @@
+package solar_detect.services.queue;
+
+import java.time.Duration;
+
+/**
+ * O item não falhou, só não pode ser processado agora (ex.: backend de
+ * inferência fora). Volta para a fila após {@code delay} sem gastar tentativa,
+ * e a instância pausa o despacho da fila pelo mesmo tempo.
+ */
+public class WorkDeferredException extends RuntimeException {
+
+    private final Duration delay;
+
+    public WorkDeferredException(Duration delay, Throwable cause) {
+        super(cause.getMessage(), cause);
+        this.delay = delay;
+    }
+
+    public Duration getDelay() {
+        return delay;
+    }
+}
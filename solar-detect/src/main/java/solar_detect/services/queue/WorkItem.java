@@ -0,0 +1,9 @@
+package solar_detect.services.queue;
+
+/**
+ * Item reivindicado da fila. {@code attempts} já inclui a tentativa atual e,
+ * junto com {@code lockedBy}, identifica a posse: se o timeout de visibilidade
+ * vencer e outro nó reivindicar o item, as atualizações deste passam a ser ignoradas.
+ */
+public record WorkItem(long id, String queue, String payload, int attempts, String lockedBy) {
+}
@@ -0,0 +1,115 @@
+package solar_detect.services.queue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import solar_detect.config.WorkQueueProperties;
+
+/**
+ * Fila de trabalho na tabela work_items. Cada reivindicação é um único
+ * UPDATE sobre um SELECT ... FOR UPDATE SKIP LOCKED: instâncias concorrentes
+ * pulam as linhas já travadas em vez de esperar por elas, então cada item vai
+ * para um só nó e nenhum nó bloqueia o outro. Todos os horários vêm do now()
+ * do banco para não depender do relógio de cada instância.
+ */
+@Component
+public class WorkQueue {
+
+    private static final String CLAIM = """
+            UPDATE work_items w
+            SET status = 'RUNNING', attempts = w.attempts + 1, locked_by = ?,
+                available_at = now() + ?::double precision * interval '1 millisecond'
+            WHERE w.id IN (
+                SELECT id FROM work_items
+                WHERE queue = ? AND status IN ('PENDING', 'RUNNING') AND available_at <= now()
+                ORDER BY available_at, id
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED)
+            RETURNING w.id, w.queue, w.payload, w.attempts, w.locked_by
+            """;
+
+    // As condições de posse fazem a atualização de um nó cujo item expirou não ter efeito
+    private static final String OWNED = " WHERE id = ? AND locked_by = ? AND attempts = ? AND status = 'RUNNING'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final WorkQueueProperties properties;
+
+    public WorkQueue(JdbcTemplate jdbcTemplate, WorkQueueProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+    }
+
+    public void enqueue(String queue, List<String> payloads) {
+        jdbcTemplate.batchUpdate("INSERT INTO work_items (queue, payload) VALUES (?, ?)", payloads, 1000,
+                (statement, payload) -> {
+                    statement.setString(1, queue);
+                    statement.setString(2, payload);
+                });
+    }
+
+    // Enfileira o resultado de um SELECT de payloads em um único comando, sem trazer as linhas para a JVM
+    public int enqueueSelect(String queue, String payloadSelect, Object... args) {
+        Object[] params = new Object[args.length + 1];
+        params[0] = queue;
+        System.arraycopy(args, 0, params, 1, args.length);
+        return jdbcTemplate.update("INSERT INTO work_items (queue, payload) SELECT ?, payload FROM ("
+                + payloadSelect + ") AS source", params);
+    }
+
+    public List<WorkItem> claim(String queue, String nodeId, int limit) {
+        return jdbcTemplate.query(CLAIM,
+                (rs, row) -> new WorkItem(rs.getLong("id"), rs.getString("queue"), rs.getString("payload"),
+                        rs.getInt("attempts"), rs.getString("locked_by")),
+                nodeId, properties.getVisibilityTimeout().toMillis(), queue, limit);
+    }
+
+    // Concluído com sucesso: a linha sai da tabela, mantendo a fila e o índice pequenos
+    public boolean complete(WorkItem item) {
+        return jdbcTemplate.update("DELETE FROM work_items" + OWNED,
+                item.id(), item.lockedBy(), item.attempts()) == 1;
+    }
+
+    /*
+     * Agenda nova tentativa com backoff exponencial e jitter, ou marca FAILED
+     * quando as tentativas se esgotam. Retorna true se o item virou dead letter.
+     */
+    public boolean fail(WorkItem item, String error) {
+        if (item.attempts() >= properties.getMaxAttempts()) {
+            jdbcTemplate.update("UPDATE work_items SET status = 'FAILED', locked_by = NULL, last_error = ?" + OWNED,
+                    error, item.id(), item.lockedBy(), item.attempts());
+            return true;
+        }
+        jdbcTemplate.update("UPDATE work_items SET status = 'PENDING', locked_by = NULL, last_error = ?, "
+                + "available_at = now() + ?::double precision * interval '1 millisecond'" + OWNED,
+                error, backoff(item.attempts()).toMillis(), item.id(), item.lockedBy(), item.attempts());
+        return false;
+    }
+
+    // Devolve o item sem gastar a tentativa atual
+    public void defer(WorkItem item, Duration delay) {
+        jdbcTemplate.update("UPDATE work_items SET status = 'PENDING', locked_by = NULL, attempts = attempts - 1, "
+                + "available_at = now() + ?::double precision * interval '1 millisecond'" + OWNED,
+                delay.toMillis(), item.id(), item.lockedBy(), item.attempts());
+    }
+
+    public int deleteWhere(String queue, String payloadSelect, Object... args) {
+        Object[] params = new Object[args.length + 1];
+        params[0] = queue;
+        System.arraycopy(args, 0, params, 1, args.length);
+        return jdbcTemplate.update("DELETE FROM work_items WHERE queue = ? AND status IN ('PENDING', 'RUNNING') "
+                + "AND payload IN (" + payloadSelect + ")", params);
+    }
+
+    Duration backoff(int attempts) {
+        long initial = properties.getBackoffInitial().toMillis();
+        long max = properties.getBackoffMax().toMillis();
+        long exponential = initial << Math.min(attempts - 1, 20);
+        long capped = Math.min(max, exponential);
+        // Jitter entre metade e o total, para que falhas em massa não voltem todas juntas
+        return Duration.ofMillis(capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1));
+    }
+}
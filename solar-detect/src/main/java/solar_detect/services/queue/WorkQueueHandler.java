@@ -0,0 +1,20 @@
+package solar_detect.services.queue;
+
+/**
+ * Processa os itens de uma fila. Retornar normalmente conclui o item; uma
+ * exceção agenda nova tentativa com backoff, e {@link WorkDeferredException}
+ * devolve o item sem contar tentativa.
+ */
+public interface WorkQueueHandler {
+
+    String queue();
+
+    // Itens desta fila processados ao mesmo tempo nesta instância
+    int concurrency();
+
+    void handle(WorkItem item);
+
+    // Chamado quando o item esgota as tentativas e é marcado como FAILED
+    default void onDeadLetter(WorkItem item, String error) {
+    }
+}
@@ -0,0 +1,179 @@
+package solar_detect.services.queue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.config.WorkQueueProperties;
+
+/**
+ * Consome as filas registradas por {@link WorkQueueHandler}. Por fila há uma
+ * thread despachante que reivindica só quantos itens cabem nas vagas livres
+ * desta instância e entrega cada um a uma virtual thread. Como a posse fica
+ * no banco, mais instâncias simplesmente dividem a mesma fila.
+ */
+@Component
+@Slf4j
+public class WorkQueueWorker {
+
+    private final WorkQueue workQueue;
+    private final List<WorkQueueHandler> handlers;
+    private final ExecutorService predictionExecutor;
+    private final WorkQueueProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final String nodeId;
+    private final List<Thread> dispatchers = new ArrayList<>();
+
+    private volatile boolean running;
+
+    public WorkQueueWorker(WorkQueue workQueue, List<WorkQueueHandler> handlers, ExecutorService predictionExecutor,
+            WorkQueueProperties properties, MeterRegistry meterRegistry) {
+        this.workQueue = workQueue;
+        this.handlers = handlers;
+        this.predictionExecutor = predictionExecutor;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.nodeId = properties.getNodeId() == null || properties.getNodeId().isBlank()
+                ? UUID.randomUUID().toString()
+                : properties.getNodeId();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        running = true;
+        for (WorkQueueHandler handler : handlers) {
+            if (handler.concurrency() <= 0) {
+                continue;
+            }
+            Dispatcher dispatcher = new Dispatcher(handler);
+            dispatchers.add(Thread.ofPlatform().name("work-queue-" + handler.queue()).daemon().start(dispatcher));
+        }
+        log.info("Fila de trabalho iniciada no nó {} para {}", nodeId,
+                handlers.stream().map(WorkQueueHandler::queue).toList());
+    }
+
+    // Itens em andamento não são esperados: voltam à fila quando o timeout de visibilidade vencer
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread dispatcher : dispatchers) {
+            dispatcher.interrupt();
+        }
+        for (Thread dispatcher : dispatchers) {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    private final class Dispatcher implements Runnable {
+
+        private final WorkQueueHandler handler;
+        private final Semaphore slots;
+        private final Counter completed;
+        private final Counter retried;
+        private final Counter deadLettered;
+        private volatile long pausedUntil;
+
+        private Dispatcher(WorkQueueHandler handler) {
+            this.handler = handler;
+            this.slots = new Semaphore(handler.concurrency());
+            this.completed = Counter.builder("work.queue.completed").tag("queue", handler.queue())
+                    .register(meterRegistry);
+            this.retried = Counter.builder("work.queue.retried").tag("queue", handler.queue())
+                    .register(meterRegistry);
+            this.deadLettered = Counter.builder("work.queue.dead.lettered").tag("queue", handler.queue())
+                    .register(meterRegistry);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    long pause = pausedUntil - System.currentTimeMillis();
+                    if (pause > 0) {
+                        Thread.sleep(pause);
+                    }
+                    slots.acquire();
+                    int free = 1 + slots.drainPermits();
+                    List<WorkItem> claimed = claim(free);
+                    slots.release(free - claimed.size());
+                    if (claimed.isEmpty()) {
+                        Thread.sleep(properties.getPollInterval().toMillis());
+                        continue;
+                    }
+                    claimed.forEach(item -> predictionExecutor.execute(() -> {
+                        try {
+                            process(item);
+                        } finally {
+                            slots.release();
+                        }
+                    }));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private List<WorkItem> claim(int limit) throws InterruptedException {
+            try {
+                return workQueue.claim(handler.queue(), nodeId, limit);
+            } catch (RuntimeException e) {
+                log.error("Falha ao reivindicar itens da fila {}", handler.queue(), e);
+                Thread.sleep(properties.getPollInterval().toMillis());
+                return List.of();
+            }
+        }
+
+        private void process(WorkItem item) {
+            try {
+                if (item.attempts() > properties.getMaxAttempts()) {
+                    // Reivindicado de novo após o timeout em todas as tentativas (ex.: derruba o nó)
+                    deadLetter(item, "Tentativas esgotadas sem conclusão");
+                    return;
+                }
+                handler.handle(item);
+                workQueue.complete(item);
+                completed.increment();
+            } catch (WorkDeferredException e) {
+                pausedUntil = System.currentTimeMillis() + e.getDelay().toMillis();
+                workQueue.defer(item, e.getDelay());
+            } catch (RuntimeException e) {
+                String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                if (item.attempts() >= properties.getMaxAttempts()) {
+                    deadLetter(item, error);
+                } else {
+                    log.debug("Item {} da fila {} falhou (tentativa {}): {}", item.id(), item.queue(),
+                            item.attempts(), error);
+                    workQueue.fail(item, error);
+                    retried.increment();
+                }
+            }
+        }
+
+        private void deadLetter(WorkItem item, String error) {
+            log.warn("Item {} da fila {} falhou após {} tentativas: {}", item.id(), item.queue(),
+                    item.attempts(), error);
+            workQueue.fail(item, error);
+            deadLettered.increment();
+            handler.onDeadLetter(item, error);
+        }
+    }
+}
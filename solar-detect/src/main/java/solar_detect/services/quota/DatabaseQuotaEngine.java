@@ -0,0 +1,91 @@
+package solar_detect.services.quota;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import solar_detect.models.User;
+
+/**
+ * Saldo em request_quotas, decidido pelo próprio banco. Cada consumo é um
+ * único upsert: a primeira requisição cria a linha já descontada e as
+ * seguintes caem no ON CONFLICT, onde o CASE recarrega a janela vencida e o
+ * WHERE recusa o débito que não cabe. A trava da linha serializa requisições
+ * concorrentes do mesmo usuário, sem ler-alterar-gravar na JVM.
+ */
+@Component
+public class DatabaseQuotaEngine implements QuotaEngine {
+
+    // EXCLUDED traz a linha nova (capacidade já descontada, agora); ? de corte = agora - janela
+    private static final String CONSUME = """
+            INSERT INTO request_quotas AS q (user_id, remaining_requests, last_reset_time)
+            VALUES (?, ?, ?)
+            ON CONFLICT (user_id) DO UPDATE SET
+                remaining_requests = CASE WHEN q.last_reset_time <= ?
+                    THEN EXCLUDED.remaining_requests ELSE q.remaining_requests - ? END,
+                last_reset_time = CASE WHEN q.last_reset_time <= ?
+                    THEN EXCLUDED.last_reset_time ELSE q.last_reset_time END
+            WHERE q.last_reset_time <= ? OR q.remaining_requests >= ?
+            RETURNING remaining_requests
+            """;
+    private static final String REFUND =
+            "UPDATE request_quotas SET remaining_requests = LEAST(?, remaining_requests + ?) WHERE user_id = ?";
+    private static final String SELECT =
+            "SELECT remaining_requests, last_reset_time FROM request_quotas WHERE user_id = ?";
+    // Recarga persistida na consulta, para o lastResetTime exibido não mudar a cada leitura
+    private static final String RESET = """
+            UPDATE request_quotas SET remaining_requests = ?, last_reset_time = ?
+            WHERE user_id = ? AND last_reset_time <= ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DatabaseQuotaEngine(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void consume(User user, int requests) {
+        int capacity = QuotaPolicy.capacity(user);
+        if (requests > capacity) {
+            throw QuotaPolicy.exceeded(requests, state(user).remainingRequests());
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp cutoff = Timestamp.valueOf(now.minus(QuotaPolicy.RESET_WINDOW));
+        List<Integer> remaining = jdbcTemplate.queryForList(CONSUME, Integer.class,
+                user.getId(), capacity - requests, Timestamp.valueOf(now),
+                cutoff, requests, cutoff, cutoff, requests);
+        if (remaining.isEmpty()) {
+            // Só o lote precisa do saldo na mensagem; a recusa simples não custa outra ida ao banco
+            throw QuotaPolicy.exceeded(requests, requests == 1 ? 0 : state(user).remainingRequests());
+        }
+    }
+
+    @Override
+    public void refund(User user, int requests) {
+        jdbcTemplate.update(REFUND, QuotaPolicy.capacity(user), requests, user.getId());
+    }
+
+    @Override
+    public QuotaState state(User user) {
+        int capacity = QuotaPolicy.capacity(user);
+        LocalDateTime now = LocalDateTime.now();
+        List<QuotaState> rows = jdbcTemplate.query(SELECT,
+                (rs, row) -> new QuotaState(rs.getInt("remaining_requests"),
+                        rs.getTimestamp("last_reset_time").toLocalDateTime()),
+                user.getId());
+        if (rows.isEmpty()) {
+            return new QuotaState(capacity, now);
+        }
+        QuotaState state = rows.get(0);
+        LocalDateTime cutoff = now.minus(QuotaPolicy.RESET_WINDOW);
+        if (state.lastResetTime().isAfter(cutoff)) {
+            return state;
+        }
+        jdbcTemplate.update(RESET, capacity, Timestamp.valueOf(now), user.getId(), Timestamp.valueOf(cutoff));
+        return new QuotaState(capacity, now);
+    }
+}
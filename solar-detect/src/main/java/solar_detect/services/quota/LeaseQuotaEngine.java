@@ -0,0 +1,265 @@
+package solar_detect.services.quota;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.config.QuotaProperties;
+import solar_detect.models.User;
+
+/**
+ * Quota distribuída entre instâncias por aluguel de tokens. A linha de
+ * request_quotas guarda o que ainda não foi alugado na janela; cada nó tira
+ * dela um bloco por usuário e consome localmente até acabar. Sobras voltam
+ * para a linha quando o aluguel vence ou o nó desliga, e só para a mesma
+ * janela: depois de uma recarga a linha já voltou à capacidade cheia.
+ *
+ * O bloco se adapta ao ritmo do usuário: dobra quando acaba antes de vencer
+ * e cai pela metade quando vence com sobra, de modo que usuários lentos não
+ * prendem tokens num nó enquanto pedem em outro.
+ */
+@Component
+@Slf4j
+public class LeaseQuotaEngine implements QuotaEngine {
+
+    // O FOR UPDATE no CTE serializa os nós; os valores antigos saem no RETURNING como granted
+    private static final String ACQUIRE = """
+            WITH locked AS (
+                SELECT id,
+                       CASE WHEN last_reset_time <= ? THEN ? ELSE remaining_requests END AS available,
+                       CASE WHEN last_reset_time <= ? THEN ? ELSE last_reset_time END AS window_start
+                FROM request_quotas WHERE user_id = ?
+                FOR UPDATE)
+            UPDATE request_quotas q
+            SET remaining_requests = l.available - LEAST(l.available, ?), last_reset_time = l.window_start
+            FROM locked l
+            WHERE q.id = l.id
+            RETURNING LEAST(l.available, ?) AS granted, q.last_reset_time
+            """;
+    private static final String CREATE = """
+            INSERT INTO request_quotas (user_id, remaining_requests, last_reset_time) VALUES (?, ?, ?)
+            ON CONFLICT (user_id) DO NOTHING
+            """;
+    private static final String RELEASE = """
+            UPDATE request_quotas SET remaining_requests = LEAST(?, remaining_requests + ?)
+            WHERE user_id = ? AND last_reset_time = ?
+            """;
+    private static final String SELECT =
+            "SELECT remaining_requests, last_reset_time FROM request_quotas WHERE user_id = ?";
+
+    private record Grant(int tokens, LocalDateTime windowStart) {
+    }
+
+    // Estado de um usuário neste nó; todos os campos sob lock. ReentrantLock e não synchronized:
+    // o aluguel vai ao banco segurando o lock e não deve prender a virtual thread à portadora
+    private static final class Lease {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int tokens;
+        private int capacity;
+        private LocalDateTime windowStart;
+        private long expiresAt;
+        private int size;
+        private boolean retired; // removido do mapa: quem ainda o segura busca outro
+    }
+
+    private final QuotaProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentHashMap<Long, Lease> leases = new ConcurrentHashMap<>();
+
+    public LeaseQuotaEngine(QuotaProperties properties, JdbcTemplate jdbcTemplate) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void consume(User user, int requests) {
+        int capacity = QuotaPolicy.capacity(user);
+        while (true) {
+            Lease lease = leases.computeIfAbsent(user.getId(), id -> newLease());
+            lease.lock.lock();
+            try {
+                if (lease.retired) {
+                    continue;
+                }
+                LocalDateTime now = LocalDateTime.now();
+                dropIfWindowEnded(lease, now);
+                if (lease.tokens < requests) {
+                    acquire(user.getId(), lease, capacity, requests - lease.tokens, now);
+                }
+                if (lease.tokens < requests) {
+                    // O que foi alugado fica no nó para as próximas requisições ou volta no vencimento
+                    throw QuotaPolicy.exceeded(requests, lease.tokens);
+                }
+                lease.tokens -= requests;
+                return;
+            } finally {
+                lease.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void refund(User user, int requests) {
+        Lease lease = leases.get(user.getId());
+        if (lease == null) {
+            return;
+        }
+        lease.lock.lock();
+        try {
+            dropIfWindowEnded(lease, LocalDateTime.now());
+            if (!lease.retired && lease.windowStart != null) {
+                lease.tokens = Math.min(QuotaPolicy.capacity(user), lease.tokens + requests);
+            }
+        } finally {
+            lease.lock.unlock();
+        }
+    }
+
+    // Saldo visível deste nó: a linha mais o que ele tem alugado; aluguéis de outros nós não aparecem
+    @Override
+    public QuotaState state(User user) {
+        int capacity = QuotaPolicy.capacity(user);
+        LocalDateTime now = LocalDateTime.now();
+        List<QuotaState> rows = jdbcTemplate.query(SELECT,
+                (rs, row) -> new QuotaState(rs.getInt("remaining_requests"),
+                        rs.getTimestamp("last_reset_time").toLocalDateTime()),
+                user.getId());
+        if (rows.isEmpty() || windowEnded(rows.get(0).lastResetTime(), now)) {
+            return new QuotaState(capacity, now);
+        }
+        QuotaState state = rows.get(0);
+        int local = 0;
+        Lease lease = leases.get(user.getId());
+        if (lease != null) {
+            lease.lock.lock();
+            try {
+                if (state.lastResetTime().equals(lease.windowStart)) {
+                    local = lease.tokens;
+                }
+            } finally {
+                lease.lock.unlock();
+            }
+        }
+        return new QuotaState(Math.min(capacity, state.remainingRequests() + local), state.lastResetTime());
+    }
+
+    private void acquire(long userId, Lease lease, int capacity, int missing, LocalDateTime now) {
+        QuotaProperties.Lease config = properties.getLease();
+        // Acabou antes de vencer: o usuário pede mais rápido do que o bloco cobre
+        if (lease.windowStart != null && System.currentTimeMillis() < lease.expiresAt) {
+            lease.size = Math.min(config.getMaxSize(), lease.size * 2);
+        }
+        int wanted = Math.min(capacity, Math.max(lease.size, missing));
+
+        Grant grant = take(userId, capacity, wanted, now);
+        if (grant == null) {
+            jdbcTemplate.update(CREATE, userId, capacity, Timestamp.valueOf(now));
+            grant = take(userId, capacity, wanted, now);
+        }
+        if (grant == null) {
+            return;
+        }
+        // Outro nó recarregou a janela antes deste perceber: o que sobrou da anterior não vale mais
+        if (!grant.windowStart().equals(lease.windowStart)) {
+            lease.tokens = 0;
+            lease.windowStart = grant.windowStart();
+        }
+        lease.tokens += grant.tokens();
+        lease.capacity = capacity;
+        lease.expiresAt = System.currentTimeMillis() + config.getDuration().toMillis();
+    }
+
+    private Grant take(long userId, int capacity, int wanted, LocalDateTime now) {
+        Timestamp cutoff = Timestamp.valueOf(now.minus(QuotaPolicy.RESET_WINDOW));
+        List<Grant> grants = jdbcTemplate.query(ACQUIRE,
+                (rs, row) -> new Grant(rs.getInt("granted"), rs.getTimestamp("last_reset_time").toLocalDateTime()),
+                cutoff, capacity, cutoff, Timestamp.valueOf(now), userId, wanted, wanted);
+        return grants.isEmpty() ? null : grants.get(0);
+    }
+
+    @Scheduled(fixedDelayString = "${quota.lease.sweep-interval:PT1S}",
+            initialDelayString = "${quota.lease.sweep-interval:PT1S}")
+    public void scheduledRelease() {
+        if (properties.getMode() == QuotaProperties.Mode.LEASE) {
+            releaseExpired();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (properties.getMode() == QuotaProperties.Mode.LEASE) {
+            release(true);
+        }
+    }
+
+    void releaseExpired() {
+        release(false);
+    }
+
+    /*
+     * Devolve as sobras dos aluguéis vencidos (ou de todos, no desligamento)
+     * num único batch. Aluguéis vazios há mais de um período saem do mapa.
+     */
+    void release(boolean all) {
+        long now = System.currentTimeMillis();
+        int minSize = properties.getLease().getMinSize();
+        long idle = properties.getLease().getDuration().toMillis();
+        List<Object[]> rows = new ArrayList<>();
+        leases.forEach((userId, lease) -> {
+            lease.lock.lock();
+            try {
+                if (!all && now < lease.expiresAt) {
+                    return;
+                }
+                if (lease.tokens > 0) {
+                    rows.add(new Object[] { lease.capacity, lease.tokens, userId,
+                            Timestamp.valueOf(lease.windowStart) });
+                    lease.tokens = 0;
+                    lease.size = Math.max(minSize, lease.size / 2);
+                    lease.expiresAt = now;
+                } else if (now >= lease.expiresAt + idle && leases.remove(userId, lease)) {
+                    // Vazio há mais de um aluguel: usuário parado, o tamanho aprendido pode ir embora
+                    lease.retired = true;
+                }
+            } finally {
+                lease.lock.unlock();
+            }
+        });
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(RELEASE, rows);
+        } catch (DataAccessException e) {
+            // Tokens perdidos só valem até o fim da janela; o erro é para menos, nunca para mais
+            log.warn("Falha ao devolver {} aluguéis de quota: {}", rows.size(), e.getMessage());
+        }
+    }
+
+    private Lease newLease() {
+        Lease lease = new Lease();
+        lease.size = Math.max(1, properties.getLease().getMinSize());
+        return lease;
+    }
+
+    private static void dropIfWindowEnded(Lease lease, LocalDateTime now) {
+        if (lease.windowStart != null && windowEnded(lease.windowStart, now)) {
+            lease.tokens = 0;
+            lease.windowStart = null;
+        }
+    }
+
+    private static boolean windowEnded(LocalDateTime windowStart, LocalDateTime now) {
+        return !windowStart.isAfter(now.minus(QuotaPolicy.RESET_WINDOW));
+    }
+}
@@ -0,0 +1,160 @@
+package solar_detect.services.quota;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.config.QuotaProperties;
+import solar_detect.models.User;
+
+/**
+ * Quota em memória: um TokenBucket por usuário, decidido com compareAndSet
+ * sem tocar no banco. Os buckets são carregados de request_quotas na
+ * inicialização e os alterados voltam para lá num flush periódico
+ * (write-behind) e no desligamento. Só vale com uma instância da API; com
+ * várias, cada uma teria o próprio saldo.
+ */
+@Component
+@Slf4j
+public class MemoryQuotaEngine implements QuotaEngine {
+
+    private static final long WINDOW_MILLIS = QuotaPolicy.RESET_WINDOW.toMillis();
+    private static final ZoneId ZONE = ZoneId.systemDefault(); // last_reset_time é gravado em horário local
+
+    private static final String LOAD_SQL =
+            "SELECT user_id, remaining_requests, last_reset_time FROM request_quotas";
+    // Usuário removido enquanto o bucket esperava o flush: não há linha a gravar
+    private static final String UPSERT_SQL = """
+            INSERT INTO request_quotas (user_id, remaining_requests, last_reset_time)
+            SELECT ?, ?, ? WHERE EXISTS (SELECT 1 FROM users WHERE id = ?)
+            ON CONFLICT (user_id) DO UPDATE
+            SET remaining_requests = EXCLUDED.remaining_requests, last_reset_time = EXCLUDED.last_reset_time
+            """;
+
+    private final QuotaProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentHashMap<Long, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    public MemoryQuotaEngine(QuotaProperties properties, JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+
+        Gauge.builder("quota.memory.buckets", buckets, ConcurrentHashMap::size).register(meterRegistry);
+    }
+
+    // Antes de atender: um usuário sem bucket começaria com a quota cheia
+    @PostConstruct
+    void rehydrate() {
+        if (!isActive()) {
+            return;
+        }
+        jdbcTemplate.query(LOAD_SQL, (RowCallbackHandler) rs -> {
+            long windowStart = rs.getTimestamp("last_reset_time").toLocalDateTime().atZone(ZONE)
+                    .toInstant().toEpochMilli();
+            buckets.put(rs.getLong("user_id"), new TokenBucket(rs.getInt("remaining_requests"), windowStart));
+        });
+        log.info("Quota em memória: {} buckets carregados de request_quotas", buckets.size());
+    }
+
+    @Override
+    public void consume(User user, int requests) {
+        int capacity = QuotaPolicy.capacity(user);
+        long now = System.currentTimeMillis();
+        int left = bucket(user, capacity, now).tryConsume(requests, capacity, now, WINDOW_MILLIS);
+        if (left < 0) {
+            throw QuotaPolicy.exceeded(requests, left + requests);
+        }
+    }
+
+    @Override
+    public void refund(User user, int requests) {
+        TokenBucket bucket = buckets.get(user.getId());
+        if (bucket != null) {
+            bucket.refund(requests, QuotaPolicy.capacity(user), System.currentTimeMillis(), WINDOW_MILLIS);
+        }
+    }
+
+    @Override
+    public QuotaState state(User user) {
+        int capacity = QuotaPolicy.capacity(user);
+        long now = System.currentTimeMillis();
+        TokenBucket bucket = buckets.get(user.getId());
+        if (bucket == null) {
+            return new QuotaState(capacity, toLocal(now));
+        }
+        long state = bucket.refresh(capacity, now, WINDOW_MILLIS);
+        return new QuotaState(TokenBucket.remaining(state), toLocal(TokenBucket.windowStart(state)));
+    }
+
+    // get antes do computeIfAbsent: o caminho comum não pega o lock do bin
+    private TokenBucket bucket(User user, int capacity, long now) {
+        TokenBucket bucket = buckets.get(user.getId());
+        return bucket != null ? bucket : buckets.computeIfAbsent(user.getId(), id -> new TokenBucket(capacity, now));
+    }
+
+    @Scheduled(fixedDelayString = "${quota.flush-interval:PT5S}", initialDelayString = "${quota.flush-interval:PT5S}")
+    public void scheduledFlush() {
+        if (isActive()) {
+            flush();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (isActive()) {
+            flush();
+        }
+    }
+
+    synchronized void flush() {
+        List<Long> userIds = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        buckets.forEach((userId, bucket) -> {
+            long state = bucket.takeDirty();
+            if (state >= 0) {
+                userIds.add(userId);
+                rows.add(new Object[] { userId, TokenBucket.remaining(state),
+                        Timestamp.valueOf(toLocal(TokenBucket.windowStart(state))), userId });
+            }
+        });
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+        } catch (DataAccessException e) {
+            // Nada se perde: os buckets voltam a ficar pendentes para o próximo flush
+            userIds.forEach(userId -> {
+                TokenBucket bucket = buckets.get(userId);
+                if (bucket != null) {
+                    bucket.markDirty();
+                }
+            });
+            log.warn("Falha no flush da quota em memória ({} buckets pendentes): {}", rows.size(), e.getMessage());
+        }
+    }
+
+    private boolean isActive() {
+        return properties.getMode() == QuotaProperties.Mode.MEMORY;
+    }
+
+    private static LocalDateTime toLocal(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZONE);
+    }
+}
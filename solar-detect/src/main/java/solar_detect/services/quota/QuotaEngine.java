@@ -0,0 +1,17 @@
+package solar_detect.services.quota;
+
+import solar_detect.models.User;
+
+/**
+ * Onde o saldo de quota de cada usuário vive. consume cobra tudo ou nada e
+ * lança QuotaExceededException quando não cabe; refund devolve requisições
+ * cobradas e não entregues, sem passar da capacidade do papel.
+ */
+public interface QuotaEngine {
+
+    void consume(User user, int requests);
+
+    void refund(User user, int requests);
+
+    QuotaState state(User user);
+}
@@ -0,0 +1,43 @@
+package solar_detect.services.quota;
+
+import java.time.Duration;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import solar_detect.exceptions.QuotaExceededException;
+import solar_detect.models.User;
+
+/**
+ * Regras de quota por papel, comuns a todas as engines: STUDENT tem 3 e
+ * COMPANY 10 requisições, recarregadas por inteiro 5 minutos depois do
+ * último reset.
+ */
+public final class QuotaPolicy {
+
+    public static final Duration RESET_WINDOW = Duration.ofMinutes(5);
+
+    private static final int STUDENT_QUOTA = 3;
+    private static final int COMPANY_QUOTA = 10;
+    private static final String ROLE_STUDENT = "ROLE_STUDENT";
+
+    private QuotaPolicy() {
+    }
+
+    public static int capacity(User user) {
+        return role(user).equals(ROLE_STUDENT) ? STUDENT_QUOTA : COMPANY_QUOTA;
+    }
+
+    public static String role(User user) {
+        return user.getAuthorities().stream()
+                .findFirst()
+                .map(GrantedAuthority::getAuthority)
+                .orElseThrow(() -> new IllegalStateException("User has no roles"));
+    }
+
+    public static QuotaExceededException exceeded(int requests, int remaining) {
+        return new QuotaExceededException(requests == 1
+                ? "Request quota exceeded. Please wait until the quota resets."
+                : "Request quota insufficient for a batch of " + requests + " points (" + remaining
+                        + " remaining).");
+    }
+}
@@ -0,0 +1,6 @@
+package solar_detect.services.quota;
+
+import java.time.LocalDateTime;
+
+public record QuotaState(int remainingRequests, LocalDateTime lastResetTime) {
+}
@@ -0,0 +1,100 @@
+package solar_detect.services.quota;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Saldo de um usuário num único AtomicLong: início da janela em milissegundos
+ * nos bits altos e requisições restantes nos 20 bits baixos. Consumo, recarga
+ * e devolução são um compareAndSet sobre esse par, sem lock. dirty marca que
+ * o estado mudou desde o último flush para request_quotas.
+ */
+final class TokenBucket {
+
+    private static final int REMAINING_BITS = 20;
+    private static final long REMAINING_MASK = (1L << REMAINING_BITS) - 1;
+
+    private final AtomicLong state;
+    private volatile boolean dirty;
+
+    TokenBucket(int remaining, long windowStartMillis) {
+        this.state = new AtomicLong(pack(windowStartMillis, remaining));
+    }
+
+    // Saldo depois do consumo; negativo quando não coube, e nesse caso nada é cobrado
+    int tryConsume(int requests, int capacity, long now, long windowMillis) {
+        while (true) {
+            long current = state.get();
+            long windowStart = windowStart(current);
+            int remaining = remaining(current);
+            if (now - windowStart >= windowMillis) {
+                windowStart = now;
+                remaining = capacity;
+            }
+            if (remaining < requests) {
+                return remaining - requests;
+            }
+            if (state.compareAndSet(current, pack(windowStart, remaining - requests))) {
+                dirty = true;
+                return remaining - requests;
+            }
+        }
+    }
+
+    // Uma janela já vencida recarrega no próximo consumo; não há o que devolver nela
+    void refund(int requests, int capacity, long now, long windowMillis) {
+        while (true) {
+            long current = state.get();
+            if (now - windowStart(current) >= windowMillis) {
+                return;
+            }
+            int remaining = Math.min(capacity, remaining(current) + requests);
+            if (state.compareAndSet(current, pack(windowStart(current), remaining))) {
+                dirty = true;
+                return;
+            }
+        }
+    }
+
+    // Estado atual, aplicando a recarga se a janela venceu (como o getQuota antigo)
+    long refresh(int capacity, long now, long windowMillis) {
+        while (true) {
+            long current = state.get();
+            if (now - windowStart(current) < windowMillis) {
+                return current;
+            }
+            long refilled = pack(now, capacity);
+            if (state.compareAndSet(current, refilled)) {
+                dirty = true;
+                return refilled;
+            }
+        }
+    }
+
+    /*
+     * Para o flush: limpa dirty antes de ler o estado, então um consumo que
+     * acontecer no meio volta a marcar o bucket e entra no próximo flush.
+     */
+    long takeDirty() {
+        if (!dirty) {
+            return -1;
+        }
+        dirty = false;
+        return state.get();
+    }
+
+    void markDirty() {
+        dirty = true;
+    }
+
+    static long windowStart(long state) {
+        return state >>> REMAINING_BITS;
+    }
+
+    static int remaining(long state) {
+        return (int) (state & REMAINING_MASK);
+    }
+
+    private static long pack(long windowStartMillis, int remaining) {
+        return windowStartMillis << REMAINING_BITS | Math.max(0, Math.min(remaining, (int) REMAINING_MASK));
+    }
+}
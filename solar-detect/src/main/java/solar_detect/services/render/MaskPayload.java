@@ -0,0 +1,65 @@
+package solar_detect.services.render;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import solar_detect.exceptions.InferenceUnavailableException;
+
+/**
+ * Resposta do /predict/mask do FastAPI (ver encode_mask_payload em pyFunctions.py):
+ * magic(4) | width(2) | height(2) | tileEncoding(1) | reservado(3) | maskLength(4) | mask
+ * | tileLength(4) | tile. A máscara tem 1 bit por pixel, em ordem de linha, bit
+ * mais significativo primeiro. Os buffers são fatias do payload, sem cópia.
+ */
+public record MaskPayload(int width, int height, int tileEncoding, ByteBuffer mask, ByteBuffer tile) {
+
+    public static final int MAGIC = 0x53444D31; // "SDM1"
+    public static final int TILE_RAW_RGB = 0;
+    public static final int TILE_JPEG = 1;
+    private static final int HEADER_BYTES = 16;
+
+    public static boolean isMaskPayload(ByteBuffer payload) {
+        if (payload == null || payload.remaining() < HEADER_BYTES) {
+            return false;
+        }
+        int position = payload.position();
+        int magic = (payload.get(position) & 0xFF) << 24 | (payload.get(position + 1) & 0xFF) << 16
+                | (payload.get(position + 2) & 0xFF) << 8 | (payload.get(position + 3) & 0xFF);
+        return magic == MAGIC;
+    }
+
+    public static boolean isMaskPayload(byte[] payload) {
+        return payload != null && isMaskPayload(ByteBuffer.wrap(payload));
+    }
+
+    public static MaskPayload parse(ByteBuffer payload) {
+        ByteBuffer in = payload.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (!isMaskPayload(in)) {
+            throw new InferenceUnavailableException("Resposta do backend não é um payload de máscara", 1);
+        }
+        in.getInt();
+        int width = Short.toUnsignedInt(in.getShort());
+        int height = Short.toUnsignedInt(in.getShort());
+        int tileEncoding = Byte.toUnsignedInt(in.get());
+        in.position(in.position() + 3);
+        ByteBuffer mask = slice(in, in.getInt());
+        if ((long) mask.remaining() * 8 < (long) width * height) {
+            throw new InferenceUnavailableException("Máscara menor que o tile informado", 1);
+        }
+        ByteBuffer tile = slice(in, in.getInt());
+        return new MaskPayload(width, height, tileEncoding, mask, tile);
+    }
+
+    public boolean isSet(int pixel) {
+        return (mask.get(mask.position() + (pixel >>> 3)) & (0x80 >>> (pixel & 7))) != 0;
+    }
+
+    private static ByteBuffer slice(ByteBuffer in, int length) {
+        if (length < 0 || length > in.remaining()) {
+            throw new InferenceUnavailableException("Payload de máscara truncado", 1);
+        }
+        ByteBuffer slice = in.slice(in.position(), length);
+        in.position(in.position() + length);
+        return slice;
+    }
+}
@@ -0,0 +1,130 @@
+package solar_detect.services.render;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.springframework.stereotype.Component;
+
+import solar_detect.dto.PredictionStats;
+import solar_detect.util.WebMercator;
+import solar_detect.util.WebMercator.LatLon;
+
+/**
+ * Estatísticas de painéis direto da máscara empacotada, numa única passada:
+ * cada linha é lida como trechos contínuos de pixels de painel, e trechos
+ * que se sobrepõem aos da linha anterior são unidos num union-find. Bytes
+ * zerados da máscara pulam oito pixels de uma vez.
+ */
+@Component
+public class MaskStatistics {
+
+    public PredictionStats compute(MaskPayload mask, LatLon centre, int zoom) {
+        int width = mask.width();
+        int height = mask.height();
+        ByteBuffer bits = mask.mask();
+        int base = bits.position();
+
+        int[] previousStarts = new int[16];
+        int[] previousEnds = new int[16];
+        int[] previousLabels = new int[16];
+        int previousCount = 0;
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int[] labels = new int[16];
+        int[] parent = new int[64];
+
+        int runs = 0;
+        int unions = 0;
+        long pixels = 0;
+
+        for (int y = 0; y < height; y++) {
+            int count = 0;
+            int overlap = 0; // primeiro trecho da linha anterior que ainda pode tocar os próximos
+            int rowStart = y * width;
+            int x = 0;
+            while (x < width) {
+                int pixel = rowStart + x;
+                int value = bits.get(base + (pixel >>> 3)) & 0xFF;
+                if (value == 0 && (pixel & 7) == 0 && x + 8 <= width) {
+                    x += 8;
+                    continue;
+                }
+                if ((value & (0x80 >>> (pixel & 7))) == 0) {
+                    x++;
+                    continue;
+                }
+
+                int start = x;
+                while (x < width && mask.isSet(rowStart + x)) {
+                    x++;
+                }
+                pixels += x - start;
+
+                if (runs == parent.length) {
+                    parent = Arrays.copyOf(parent, runs * 2);
+                }
+                int label = runs++;
+                parent[label] = label;
+                while (overlap < previousCount && previousEnds[overlap] <= start) {
+                    overlap++;
+                }
+                for (int j = overlap; j < previousCount && previousStarts[j] < x; j++) {
+                    if (union(parent, label, previousLabels[j])) {
+                        unions++;
+                    }
+                }
+
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    ends = Arrays.copyOf(ends, count * 2);
+                    labels = Arrays.copyOf(labels, count * 2);
+                }
+                starts[count] = start;
+                ends[count] = x;
+                labels[count] = label;
+                count++;
+            }
+
+            int[] swap = previousStarts;
+            previousStarts = starts;
+            starts = swap;
+            swap = previousEnds;
+            previousEnds = ends;
+            ends = swap;
+            swap = previousLabels;
+            previousLabels = labels;
+            labels = swap;
+            previousCount = count;
+        }
+
+        double metersPerPixel = WebMercator.groundResolution(centre.lat(), zoom);
+        long total = (long) width * height;
+        return PredictionStats.builder()
+                .latitude(centre.lat())
+                .longitude(centre.lon())
+                .panelCount(runs - unions)
+                .panelPixels(pixels)
+                .panelAreaM2(pixels * metersPerPixel * metersPerPixel)
+                .coverage(total == 0 ? 0 : (double) pixels / total)
+                .metersPerPixel(metersPerPixel)
+                .build();
+    }
+
+    private static boolean union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA == rootB) {
+            return false;
+        }
+        parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        return true;
+    }
+
+    private static int find(int[] parent, int label) {
+        while (parent[label] != label) {
+            parent[label] = parent[parent[label]];
+            label = parent[label];
+        }
+        return label;
+    }
+}
@@ -0,0 +1,334 @@
+package solar_detect.services.render;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+import solar_detect.config.PredictionProperties;
+import solar_detect.util.WebMercator;
+import solar_detect.util.WebMercator.LatLon;
+
+/**
+ * Converte a máscara em polígonos GeoJSON. As bordas entre pixels de painel e
+ * de fundo são seguidas sobre a grade de cantos (marching squares binário),
+ * cada anel é simplificado com Douglas-Peucker e os vértices voltam para
+ * lat/lon pela mesma Web Mercator do FastAPI. Regiões que só se tocam na
+ * diagonal viram polígonos separados (vizinhança 4).
+ */
+@Component
+public class MaskVectorizer {
+
+    private static final int EAST = 0;
+    private static final int SOUTH = 1;
+    private static final int WEST = 2;
+    private static final int NORTH = 3;
+    private static final int[] DX = { 1, 0, -1, 0 };
+    private static final int[] DY = { 0, 1, 0, -1 };
+
+    private static final double COORDINATE_SCALE = 1e7; // ~1 cm; mantém o payload pequeno
+
+    private final double tolerance;
+
+    public MaskVectorizer(PredictionProperties properties) {
+        this.tolerance = properties.getVector().getSimplifyTolerance();
+    }
+
+    /*
+     * Anel fechado em coordenadas de canto de pixel, sem repetir o primeiro
+     * ponto. area2 é o dobro da área com sinal: positiva para contornos
+     * externos e negativa para buracos (y cresce para baixo).
+     */
+    record Ring(int[] xs, int[] ys, long area2, int startX, int startY) {
+
+        int size() {
+            return xs.length;
+        }
+
+        boolean isOuter() {
+            return area2 > 0;
+        }
+
+        boolean contains(double px, double py) {
+            boolean inside = false;
+            for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+                if ((ys[i] > py) != (ys[j] > py)
+                        && px < (double) (xs[j] - xs[i]) * (py - ys[i]) / (ys[j] - ys[i]) + xs[i]) {
+                    inside = !inside;
+                }
+            }
+            return inside;
+        }
+    }
+
+    record Polygon(Ring outer, List<Ring> holes) {
+
+        long areaPixels() {
+            long area2 = outer.area2();
+            for (Ring hole : holes) {
+                area2 += hole.area2();
+            }
+            return area2 / 2;
+        }
+    }
+
+    /**
+     * FeatureCollection com um Polygon por região conectada. A origem é o
+     * pixel global (no zoom informado) do canto superior esquerdo da máscara.
+     */
+    public byte[] toGeoJson(MaskPayload mask, long originX, long originY, int zoom) {
+        List<Polygon> polygons = polygons(trace(mask));
+
+        StringBuilder json = new StringBuilder(256 + polygons.size() * 256);
+        json.append("{\"type\":\"FeatureCollection\",\"features\":[");
+        for (int i = 0; i < polygons.size(); i++) {
+            Polygon polygon = polygons.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"type\":\"Feature\",\"properties\":{\"areaPixels\":").append(polygon.areaPixels())
+                    .append("},\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[");
+            appendRing(json, polygon.outer(), originX, originY, zoom);
+            for (Ring hole : polygon.holes()) {
+                json.append(',');
+                appendRing(json, hole, originX, originY, zoom);
+            }
+            json.append("]}}");
+        }
+        json.append("]}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Contornos externos e buracos de todas as regiões, na ordem em que aparecem linha a linha
+    static List<Ring> trace(MaskPayload mask) {
+        int width = mask.width();
+        int height = mask.height();
+        int stride = width + 1;
+
+        // Arestas de borda saindo de cada canto, orientadas com o painel à direita
+        byte[] edges = new byte[stride * (height + 1)];
+        for (int y = 0, pixel = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, pixel++) {
+                if (!mask.isSet(pixel)) {
+                    continue;
+                }
+                int corner = y * stride + x;
+                if (y == 0 || !mask.isSet(pixel - width)) {
+                    edges[corner] |= 1 << EAST;
+                }
+                if (x == width - 1 || !mask.isSet(pixel + 1)) {
+                    edges[corner + 1] |= 1 << SOUTH;
+                }
+                if (y == height - 1 || !mask.isSet(pixel + width)) {
+                    edges[corner + stride + 1] |= 1 << WEST;
+                }
+                if (x == 0 || !mask.isSet(pixel - 1)) {
+                    edges[corner + stride] |= 1 << NORTH;
+                }
+            }
+        }
+
+        // Todo anel, externo ou buraco, tem ao menos uma aresta de topo (leste)
+        List<Ring> rings = new ArrayList<>();
+        for (int corner = 0; corner < edges.length; corner++) {
+            if ((edges[corner] & (1 << EAST)) != 0) {
+                rings.add(traceRing(edges, stride, corner));
+            }
+        }
+        return rings;
+    }
+
+    private static Ring traceRing(byte[] edges, int stride, int start) {
+        int[] xs = new int[16];
+        int[] ys = new int[16];
+        int count = 0;
+        long area2 = 0;
+
+        int corner = start;
+        int direction = EAST;
+        int previous = -1;
+        do {
+            int x = corner % stride;
+            int y = corner / stride;
+            if (direction != previous) {
+                if (count == xs.length) {
+                    xs = Arrays.copyOf(xs, count * 2);
+                    ys = Arrays.copyOf(ys, count * 2);
+                }
+                xs[count] = x;
+                ys[count] = y;
+                count++;
+            }
+            edges[corner] &= (byte) ~(1 << direction);
+            int nx = x + DX[direction];
+            int ny = y + DY[direction];
+            area2 += (long) x * ny - (long) nx * y;
+
+            corner = ny * stride + nx;
+            previous = direction;
+            // A aresta inicial já foi consumida, mas ainda fecha o anel
+            direction = next(edges[corner] | (corner == start ? 1 << EAST : 0), direction);
+        } while (corner != start || direction != EAST);
+
+        int first = previous == EAST ? 1 : 0; // início no meio de um lado: não é vértice
+        int startX = start % stride;
+        int startY = start / stride;
+        return new Ring(Arrays.copyOfRange(xs, first, count), Arrays.copyOfRange(ys, first, count), area2,
+                startX, startY);
+    }
+
+    // Num canto com duas saídas (pixels só na diagonal) vira à direita, separando as regiões
+    private static int next(int available, int direction) {
+        int right = (direction + 1) & 3;
+        if ((available & (1 << right)) != 0) {
+            return right;
+        }
+        if ((available & (1 << direction)) != 0) {
+            return direction;
+        }
+        return (direction + 3) & 3;
+    }
+
+    /*
+     * Cada buraco pertence ao menor contorno externo que contém um pixel de
+     * fundo logo acima da sua aresta inicial. Os anéis são simplificados só
+     * depois, para o teste de contenção usar a borda exata.
+     */
+    List<Polygon> polygons(List<Ring> rings) {
+        List<Ring> outers = new ArrayList<>();
+        List<List<Ring>> holes = new ArrayList<>();
+        for (Ring ring : rings) {
+            if (ring.isOuter()) {
+                outers.add(ring);
+                holes.add(new ArrayList<>());
+            }
+        }
+        for (Ring ring : rings) {
+            if (ring.isOuter()) {
+                continue;
+            }
+            double px = ring.startX() + 0.5;
+            double py = ring.startY() - 0.5;
+            int owner = -1;
+            for (int i = 0; i < outers.size(); i++) {
+                Ring outer = outers.get(i);
+                if ((owner < 0 || outer.area2() < outers.get(owner).area2()) && outer.contains(px, py)) {
+                    owner = i;
+                }
+            }
+            if (owner >= 0) {
+                holes.get(owner).add(simplify(ring));
+            }
+        }
+
+        List<Polygon> polygons = new ArrayList<>(outers.size());
+        for (int i = 0; i < outers.size(); i++) {
+            polygons.add(new Polygon(simplify(outers.get(i)), holes.get(i)));
+        }
+        return polygons;
+    }
+
+    // Douglas-Peucker no anel fechado; se sobrar menos que um triângulo, mantém o anel original
+    Ring simplify(Ring ring) {
+        int n = ring.size();
+        if (tolerance <= 0 || n <= 4) {
+            return ring;
+        }
+        int[] xs = ring.xs();
+        int[] ys = ring.ys();
+        int farthest = 0;
+        long best = -1;
+        for (int i = 1; i < n; i++) {
+            long dx = xs[i] - xs[0];
+            long dy = ys[i] - ys[0];
+            if (dx * dx + dy * dy > best) {
+                best = dx * dx + dy * dy;
+                farthest = i;
+            }
+        }
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[farthest] = true;
+        simplify(xs, ys, 0, farthest, keep);
+        simplify(xs, ys, farthest, n, keep);
+
+        int kept = 0;
+        for (boolean k : keep) {
+            kept += k ? 1 : 0;
+        }
+        if (kept < 3) {
+            return ring;
+        }
+        int[] sx = new int[kept];
+        int[] sy = new int[kept];
+        for (int i = 0, j = 0; i < n; i++) {
+            if (keep[i]) {
+                sx[j] = xs[i];
+                sy[j] = ys[i];
+                j++;
+            }
+        }
+        return new Ring(sx, sy, ring.area2(), ring.startX(), ring.startY());
+    }
+
+    // Trecho [from, to] do anel; to == n representa a volta ao ponto 0
+    private void simplify(int[] xs, int[] ys, int from, int to, boolean[] keep) {
+        int n = xs.length;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = from;
+        stack[top++] = to;
+        while (top > 0) {
+            int end = stack[--top];
+            int begin = stack[--top];
+            double ax = xs[begin];
+            double ay = ys[begin];
+            double bx = xs[end % n];
+            double by = ys[end % n];
+            double length = Math.hypot(bx - ax, by - ay);
+
+            int index = -1;
+            double max = tolerance;
+            for (int i = begin + 1; i < end; i++) {
+                double distance = length == 0
+                        ? Math.hypot(xs[i] - ax, ys[i] - ay)
+                        : Math.abs((bx - ax) * (ay - ys[i]) - (ax - xs[i]) * (by - ay)) / length;
+                if (distance > max) {
+                    max = distance;
+                    index = i;
+                }
+            }
+            if (index < 0) {
+                continue;
+            }
+            keep[index] = true;
+            if (top + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top++] = begin;
+            stack[top++] = index;
+            stack[top++] = index;
+            stack[top++] = end;
+        }
+    }
+
+    private static void appendRing(StringBuilder json, Ring ring, long originX, long originY, int zoom) {
+        json.append('[');
+        for (int i = 0; i <= ring.size(); i++) {
+            int point = i % ring.size(); // GeoJSON repete o primeiro ponto no fim
+            LatLon latLon = WebMercator.pixelToLatLon(originX + ring.xs()[point], originY + ring.ys()[point], zoom);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('[').append(round(latLon.lon())).append(',').append(round(latLon.lat())).append(']');
+        }
+        json.append(']');
+    }
+
+    private static double round(double degrees) {
+        return Math.round(degrees * COORDINATE_SCALE) / COORDINATE_SCALE;
+    }
+}
@@ -0,0 +1,24 @@
+package solar_detect.services.render;
+
+import org.springframework.http.MediaType;
+
+public enum OutputFormat {
+    PNG(MediaType.IMAGE_PNG),
+    JPEG(MediaType.IMAGE_JPEG),
+    // width(2) | height(2) | máscara com 1 bit por pixel, como vem do backend
+    MASK(MediaType.APPLICATION_OCTET_STREAM),
+    // FeatureCollection com um Polygon por painel detectado
+    GEOJSON(new MediaType("application", "geo+json")),
+    // Contagem de painéis, área em m² e cobertura do tile (PredictionStats)
+    STATS(MediaType.APPLICATION_JSON);
+
+    private final MediaType mediaType;
+
+    OutputFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+}
@@ -0,0 +1,190 @@
+package solar_detect.services.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import solar_detect.config.PredictionProperties;
+import solar_detect.exceptions.InferenceUnavailableException;
+
+/**
+ * Monta o overlay a partir da máscara e do tile original vindos do FastAPI,
+ * com a mesma mistura do overlay_mask do Python. Pixels, linhas, Deflater e
+ * buffers de saída vêm de um pool, então uma renderização aloca pouco além
+ * do array final.
+ */
+@Component
+public class OverlayRenderer {
+
+    private static final DirectColorModel RGB = new DirectColorModel(24, 0xFF0000, 0x00FF00, 0x0000FF);
+
+    private final ConcurrentLinkedQueue<Scratch> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final int maxPooled;
+    private final int compressionLevel;
+    private final float jpegQuality;
+
+    public OverlayRenderer(PredictionProperties properties) {
+        PredictionProperties.Render config = properties.getRender();
+        this.maxPooled = config.getMaxScratchBuffers();
+        this.compressionLevel = config.getPngCompressionLevel();
+        this.jpegQuality = config.getJpegQuality();
+    }
+
+    public byte[] render(MaskPayload payload, RenderOptions options) {
+        if (options.format() == OutputFormat.MASK) {
+            return maskBytes(payload);
+        }
+        int width = payload.width();
+        int height = payload.height();
+        Scratch scratch = acquire();
+        try {
+            int[] pixels = scratch.pixels(width * height);
+            decodeTile(payload, pixels, scratch);
+            blend(payload, pixels, options);
+            return options.format() == OutputFormat.PNG
+                    ? PngEncoder.encode(pixels, width, height, scratch)
+                    : encodeJpeg(pixels, width, height, scratch);
+        } finally {
+            release(scratch);
+        }
+    }
+
+    // width(2) | height(2) | máscara empacotada
+    private static byte[] maskBytes(MaskPayload payload) {
+        int maskBytes = (payload.width() * payload.height() + 7) / 8;
+        byte[] out = new byte[4 + maskBytes];
+        out[0] = (byte) (payload.width() >>> 8);
+        out[1] = (byte) payload.width();
+        out[2] = (byte) (payload.height() >>> 8);
+        out[3] = (byte) payload.height();
+        payload.mask().get(payload.mask().position(), out, 4, maskBytes);
+        return out;
+    }
+
+    private static void decodeTile(MaskPayload payload, int[] pixels, Scratch scratch) {
+        int count = payload.width() * payload.height();
+        ByteBuffer tile = payload.tile();
+        if (payload.tileEncoding() == MaskPayload.TILE_RAW_RGB) {
+            if (tile.remaining() < count * 3) {
+                throw new InferenceUnavailableException("Tile RGB menor que o tamanho informado", 1);
+            }
+            for (int i = 0, p = tile.position(); i < count; i++, p += 3) {
+                pixels[i] = (tile.get(p) & 0xFF) << 16 | (tile.get(p + 1) & 0xFF) << 8 | (tile.get(p + 2) & 0xFF);
+            }
+            return;
+        }
+
+        byte[] encoded = scratch.bytes(tile.remaining());
+        tile.get(tile.position(), encoded, 0, tile.remaining());
+        BufferedImage image;
+        try {
+            image = ImageIO.read(new ByteArrayInputStream(encoded, 0, tile.remaining()));
+        } catch (IOException e) {
+            throw new InferenceUnavailableException("Tile JPEG inválido no payload de máscara", 1, e);
+        }
+        if (image == null || image.getWidth() != payload.width() || image.getHeight() != payload.height()) {
+            throw new InferenceUnavailableException("Tile do payload não corresponde à máscara", 1);
+        }
+        image.getRGB(0, 0, payload.width(), payload.height(), pixels, 0, payload.width());
+    }
+
+    /*
+     * cv2.addWeighted(cor, alpha, pixel, 1 - alpha) só nos pixels da máscara,
+     * em aritmética inteira com alpha em 1/256. Bytes zerados da máscara
+     * (a maior parte de um tile) pulam oito pixels de uma vez.
+     */
+    private static void blend(MaskPayload payload, int[] pixels, RenderOptions options) {
+        int alpha = (int) Math.round(options.alpha() * 256);
+        int inverse = 256 - alpha;
+        int red = (options.rgb() >>> 16 & 0xFF) * alpha + 128;
+        int green = (options.rgb() >>> 8 & 0xFF) * alpha + 128;
+        int blue = (options.rgb() & 0xFF) * alpha + 128;
+
+        int count = payload.width() * payload.height();
+        ByteBuffer mask = payload.mask();
+        int base = mask.position();
+        for (int byteIndex = 0, pixel = 0; pixel < count; byteIndex++, pixel += 8) {
+            int bits = mask.get(base + byteIndex) & 0xFF;
+            if (bits == 0) {
+                continue;
+            }
+            int end = Math.min(8, count - pixel);
+            for (int bit = 0; bit < end; bit++) {
+                if ((bits & (0x80 >>> bit)) != 0) {
+                    int rgb = pixels[pixel + bit];
+                    int r = (red + (rgb >>> 16 & 0xFF) * inverse) >>> 8;
+                    int g = (green + (rgb >>> 8 & 0xFF) * inverse) >>> 8;
+                    int b = (blue + (rgb & 0xFF) * inverse) >>> 8;
+                    pixels[pixel + bit] = Math.min(r, 255) << 16 | Math.min(g, 255) << 8 | Math.min(b, 255);
+                }
+            }
+        }
+    }
+
+    // O BufferedImage usa o próprio array de pixels do scratch, sem cópia
+    private byte[] encodeJpeg(int[] pixels, int width, int height, Scratch scratch) {
+        WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(pixels, width * height), width, height,
+                width, RGB.getMasks(), null);
+        BufferedImage image = new BufferedImage(RGB, raster, false, null);
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        Scratch.Buffer out = scratch.output;
+        out.reset();
+        try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private Scratch acquire() {
+        Scratch scratch = pool.poll();
+        if (scratch == null) {
+            return new Scratch(compressionLevel);
+        }
+        pooled.decrementAndGet();
+        return scratch;
+    }
+
+    private void release(Scratch scratch) {
+        if (pooled.incrementAndGet() <= maxPooled) {
+            pool.offer(scratch);
+        } else {
+            pooled.decrementAndGet();
+            scratch.close();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        Scratch scratch;
+        while ((scratch = pool.poll()) != null) {
+            scratch.close();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package solar_detect.services.render;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encoder PNG RGB de 8 bits mínimo, feito para reaproveitar Deflater, CRC e
+ * buffers entre chamadas (o ImageIO aloca tudo de novo a cada imagem). Usa o
+ * filtro Sub em todas as linhas, que comprime bem tiles de satélite a um custo baixo.
+ */
+final class PngEncoder {
+
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final int FILTER_SUB = 1;
+
+    private PngEncoder() {
+    }
+
+    static byte[] encode(int[] pixels, int width, int height, Scratch scratch) {
+        Deflater deflater = scratch.deflater;
+        Scratch.Buffer deflated = scratch.deflated;
+        deflater.reset();
+        deflated.reset();
+
+        byte[] row = scratch.row(1 + width * 3);
+        byte[] chunk = scratch.chunk;
+        for (int y = 0; y < height; y++) {
+            row[0] = FILTER_SUB;
+            int previous = 0;
+            for (int x = 0, offset = y * width, i = 1; x < width; x++, i += 3) {
+                int rgb = pixels[offset + x];
+                row[i] = (byte) ((rgb >>> 16) - (previous >>> 16));
+                row[i + 1] = (byte) ((rgb >>> 8) - (previous >>> 8));
+                row[i + 2] = (byte) (rgb - previous);
+                previous = rgb;
+            }
+            deflater.setInput(row, 0, 1 + width * 3);
+            while (!deflater.needsInput()) {
+                deflated.write(chunk, 0, deflater.deflate(chunk));
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflated.write(chunk, 0, deflater.deflate(chunk));
+        }
+
+        Scratch.Buffer out = scratch.output;
+        out.reset();
+        out.write(SIGNATURE, 0, SIGNATURE.length);
+
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8; // bits por canal
+        header[9] = 2; // RGB
+        writeChunk(out, scratch.crc, "IHDR", header, 0, header.length);
+        writeChunk(out, scratch.crc, "IDAT", deflated.array(), 0, deflated.size());
+        writeChunk(out, scratch.crc, "IEND", header, 0, 0);
+        return out.toByteArray();
+    }
+
+    private static void writeChunk(Scratch.Buffer out, CRC32 crc, String type, byte[] data, int offset, int length) {
+        byte[] typeBytes = { (byte) type.charAt(0), (byte) type.charAt(1), (byte) type.charAt(2), (byte) type.charAt(3) };
+        writeInt(out, length);
+        out.write(typeBytes, 0, 4);
+        out.write(data, offset, length);
+        crc.reset();
+        crc.update(typeBytes, 0, 4);
+        crc.update(data, offset, length);
+        writeInt(out, (int) crc.getValue());
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,42 @@
+package solar_detect.services.render;
+
+import java.util.Locale;
+
+import solar_detect.exceptions.BusinessException;
+
+/**
+ * Como o cliente quer receber a predição. O padrão reproduz o overlay que o
+ * FastAPI sempre gerou: magenta com alpha 0.5, em PNG.
+ */
+public record RenderOptions(OutputFormat format, int rgb, double alpha) {
+
+    public static final RenderOptions DEFAULT = new RenderOptions(OutputFormat.PNG, 0xFF00FF, 0.5);
+
+    public static RenderOptions of(String format, String color, Double alpha) {
+        OutputFormat outputFormat;
+        try {
+            outputFormat = format == null ? DEFAULT.format() : OutputFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException("Formato inválido: " + format + " (use png, jpeg, mask, geojson ou stats)");
+        }
+
+        int rgb = DEFAULT.rgb();
+        if (color != null) {
+            String hex = color.startsWith("#") ? color.substring(1) : color;
+            if (!hex.matches("[0-9a-fA-F]{6}")) {
+                throw new BusinessException("Cor inválida: " + color + " (use RRGGBB)");
+            }
+            rgb = Integer.parseInt(hex, 16);
+        }
+
+        double overlayAlpha = alpha == null ? DEFAULT.alpha() : alpha;
+        if (!(overlayAlpha >= 0 && overlayAlpha <= 1)) {
+            throw new BusinessException("alpha deve estar entre 0 e 1");
+        }
+        return new RenderOptions(outputFormat, rgb, overlayAlpha);
+    }
+
+    public boolean isDefault() {
+        return equals(DEFAULT);
+    }
+}
@@ -0,0 +1,63 @@
+package solar_detect.services.render;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Buffers de trabalho de uma renderização. Ficam num pool do OverlayRenderer
+ * em vez de ThreadLocal, porque as renderizações rodam em virtual threads
+ * descartáveis.
+ */
+final class Scratch {
+
+    final Deflater deflater;
+    final CRC32 crc = new CRC32();
+    final Buffer deflated = new Buffer(64 * 1024);
+    final Buffer output = new Buffer(128 * 1024);
+    final byte[] chunk = new byte[16 * 1024];
+    private int[] pixels = new int[0];
+    private byte[] row = new byte[0];
+    private byte[] bytes = new byte[0];
+
+    Scratch(int compressionLevel) {
+        this.deflater = new Deflater(compressionLevel);
+    }
+
+    int[] pixels(int length) {
+        if (pixels.length < length) {
+            pixels = new int[length];
+        }
+        return pixels;
+    }
+
+    byte[] row(int length) {
+        if (row.length < length) {
+            row = new byte[length];
+        }
+        return row;
+    }
+
+    byte[] bytes(int length) {
+        if (bytes.length < length) {
+            bytes = new byte[length];
+        }
+        return bytes;
+    }
+
+    void close() {
+        deflater.end();
+    }
+
+    // ByteArrayOutputStream que expõe o array interno, para ler o conteúdo sem cópia
+    static final class Buffer extends ByteArrayOutputStream {
+
+        Buffer(int initialSize) {
+            super(initialSize);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package solar_detect.services.requestlog;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * role não vai para request_logs; acompanha o registro para os
+ * RequestLogListener. chargeId identifica a cobrança: aleatório, único na
+ * prática entre as linhas do mesmo usuário e instante, que é onde a devolução
+ * procura. Com refund, o registro não é inserido: marca como REFUNDED a linha
+ * gravada antes com o mesmo chargeId.
+ */
+public record RequestLogEntry(long userId, String role, LocalDateTime requestTime, float latitude, float longitude,
+        long chargeId, boolean refund) {
+
+    public RequestLogEntry(long userId, String role, LocalDateTime requestTime, float latitude, float longitude) {
+        this(userId, role, requestTime, latitude, longitude, ThreadLocalRandom.current().nextLong(), false);
+    }
+
+    public RequestLogEntry asRefund() {
+        return new RequestLogEntry(userId, role, requestTime, latitude, longitude, chargeId, true);
+    }
+}
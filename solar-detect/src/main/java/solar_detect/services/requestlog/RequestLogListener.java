@@ -0,0 +1,18 @@
+package solar_detect.services.requestlog;
+
+import java.util.List;
+
+/**
+ * Avisado pelo RequestLogWriter depois que um lote é gravado em
+ * request_logs, na thread que gravou. Deve ser rápido e seguro para uso
+ * concorrente, e não guardar a lista, que é reaproveitada. Exceções são
+ * registradas e não afetam a gravação.
+ */
+public interface RequestLogListener {
+
+    void onWritten(List<RequestLogEntry> entries);
+
+    // Cobranças avisadas antes em onWritten que acabaram de ser marcadas REFUNDED
+    default void onRefunded(List<RequestLogEntry> entries) {
+    }
+}
@@ -0,0 +1,185 @@
+package solar_detect.services.requestlog;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.config.RequestLogProperties;
+
+/**
+ * Mantém as partições mensais de request_logs (V6): cria as dos próximos
+ * meses antes de serem necessárias e tira as que passaram da retenção, uma
+ * partição inteira por vez, sem DELETE. Roda na inicialização e uma vez por
+ * dia; com várias instâncias, um advisory lock deixa só uma trabalhar.
+ *
+ * Linhas que caíram em request_logs_default (V12) porque o mês não tinha
+ * partição são movidas para uma partição nova do mês, anexada na mesma
+ * transação. Os gauges de meses de folga e de linhas na default permitem
+ * alertar antes que a manutenção parada vire perda de registros.
+ */
+@Component
+@Slf4j
+public class RequestLogPartitionManager {
+
+    private static final String PREFIX = "request_logs_p";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final String LOCK = "SELECT pg_try_advisory_xact_lock(hashtext('request_logs_partitions'))";
+    private static final String PARTITIONS = """
+            SELECT c.relname FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'request_logs'::regclass
+            """;
+    private static final String DEFAULT_PARTITION = "request_logs_default";
+    private static final String DEFAULT_MONTHS = "SELECT DISTINCT to_char(request_time, 'YYYYMM') FROM "
+            + DEFAULT_PARTITION;
+
+    private final RequestLogProperties.Partitions properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private volatile YearMonth coveredUntil; // último mês com partição própria, contíguo ao atual
+    private volatile long defaultRows;
+
+    public RequestLogPartitionManager(RequestLogProperties properties, JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.properties = properties.getPartitions();
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+
+        // Calculado a partir da última manutenção bem-sucedida: cai sozinho se ela parar de rodar
+        Gauge.builder("request.log.partitions.runway", this, RequestLogPartitionManager::runwayMonths)
+                .description("Meses à frente do atual com partição própria; negativo = inserts na partição default")
+                .baseUnit("months")
+                .register(meterRegistry);
+        Gauge.builder("request.log.partitions.default.rows", this, manager -> manager.defaultRows)
+                .description("Linhas em request_logs_default na última manutenção")
+                .register(meterRegistry);
+    }
+
+    double runwayMonths() {
+        YearMonth covered = coveredUntil;
+        return covered == null ? Double.NaN : ChronoUnit.MONTHS.between(YearMonth.now(), covered);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduledMaintenance();
+    }
+
+    @Scheduled(cron = "${request-log.partitions.cron:0 15 3 * * *}")
+    public void scheduledMaintenance() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            maintain(YearMonth.now());
+        } catch (DataAccessException e) {
+            log.error("Falha na manutenção das partições de request_logs", e);
+        }
+    }
+
+    void maintain(YearMonth current) {
+        transaction.executeWithoutResult(status -> {
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(LOCK, Boolean.class))) {
+                return;
+            }
+            rehomeDefaultRows();
+            for (int i = 0; i <= properties.getMonthsAhead(); i++) {
+                YearMonth month = current.plusMonths(i);
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name(month) + " PARTITION OF request_logs "
+                        + "FOR VALUES FROM " + bounds(month));
+            }
+            if (properties.getRetentionMonths() > 0) {
+                retire(current.minusMonths(properties.getRetentionMonths()));
+            }
+            Set<String> partitions = new HashSet<>(jdbcTemplate.queryForList(PARTITIONS, String.class));
+            YearMonth covered = current.minusMonths(1);
+            while (partitions.contains(name(covered.plusMonths(1)))) {
+                covered = covered.plusMonths(1);
+            }
+            coveredUntil = covered;
+            defaultRows = jdbcTemplate.queryForObject("SELECT count(*) FROM " + DEFAULT_PARTITION, Long.class);
+        });
+        if (runwayMonths() < properties.getMonthsAhead()) {
+            log.warn("request_logs com partições só até {}; inserts além disso vão para {}", coveredUntil,
+                    DEFAULT_PARTITION);
+        }
+    }
+
+    /*
+     * Com linhas do mês na default, CREATE ... PARTITION OF falha. A partição
+     * nasce avulsa, recebe as linhas e só então é anexada; o lock impede que
+     * um insert caia na default entre a cópia e o ATTACH.
+     */
+    private void rehomeDefaultRows() {
+        jdbcTemplate.execute("LOCK TABLE " + DEFAULT_PARTITION + " IN ACCESS EXCLUSIVE MODE");
+        List<YearMonth> months = jdbcTemplate.queryForList(DEFAULT_MONTHS, String.class).stream()
+                .map(suffix -> YearMonth.parse(suffix, SUFFIX))
+                .toList();
+        for (YearMonth month : months) {
+            String partition = name(month);
+            jdbcTemplate.execute("CREATE TABLE " + partition
+                    + " (LIKE request_logs INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                    + " WHERE request_time >= ? AND request_time < ? RETURNING *) INSERT INTO " + partition
+                    + " SELECT * FROM moved", month.atDay(1), month.plusMonths(1).atDay(1));
+            jdbcTemplate.execute("ALTER TABLE request_logs ATTACH PARTITION " + partition + " FOR VALUES FROM "
+                    + bounds(month));
+            log.warn("{} request_logs de {} estavam em {}; movidos para {}", moved, month, DEFAULT_PARTITION,
+                    partition);
+        }
+    }
+
+    // Partições de meses anteriores a oldestKept saem; nomes fora do padrão não são tocados
+    private void retire(YearMonth oldestKept) {
+        List<String> retired = new ArrayList<>();
+        for (String partition : jdbcTemplate.queryForList(PARTITIONS, String.class)) {
+            YearMonth month = month(partition);
+            if (month == null || !month.isBefore(oldestKept)) {
+                continue;
+            }
+            jdbcTemplate.execute(properties.getRetention() == RequestLogProperties.Retention.DETACH
+                    ? "ALTER TABLE request_logs DETACH PARTITION " + partition
+                    : "DROP TABLE " + partition);
+            retired.add(partition);
+        }
+        if (!retired.isEmpty()) {
+            log.info("Partições de request_logs fora da retenção ({}): {}", properties.getRetention(), retired);
+        }
+    }
+
+    private static String name(YearMonth month) {
+        return PREFIX + month.format(SUFFIX);
+    }
+
+    private static String bounds(YearMonth month) {
+        return "('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')";
+    }
+
+    private static YearMonth month(String partition) {
+        if (!partition.startsWith(PREFIX)) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(partition.substring(PREFIX.length()), SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package solar_detect.services.requestlog;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.config.RequestLogProperties;
+
+/**
+ * Grava request_logs fora do caminho da requisição. append só coloca o
+ * registro numa fila limitada; uma thread própria junta o que houver (até
+ * batch-size) e insere tudo num único INSERT ... SELECT FROM unnest, uma ida
+ * ao banco por lote. Devoluções de quota passam pela mesma fila e viram um
+ * UPDATE para REFUNDED, pelo charge_id, depois dos inserts do lote: como a
+ * fila é FIFO, a linha da cobrança já foi gravada quando a marcação chega.
+ * Com a fila cheia vale request-log.overflow: a requisição grava sozinha
+ * (padrão) ou o registro é descartado. No desligamento a fila é esvaziada
+ * antes do pool de conexões fechar.
+ */
+@Component
+@Slf4j
+public class RequestLogWriter {
+
+    private static final String INSERT = """
+            INSERT INTO request_logs (user_id, request_time, latitude, longitude, charge_id)
+            SELECT * FROM unnest(?::bigint[], ?::timestamp[], ?::float8[], ?::float8[], ?::bigint[])
+            """;
+    // A linha da cobrança pelo charge_id; usuário e instante levam ao índice e à partição certa
+    private static final String REFUND = """
+            UPDATE request_logs l SET status = 'REFUNDED'
+            FROM unnest(?::bigint[], ?::timestamp[], ?::float8[], ?::float8[], ?::bigint[])
+                AS r(user_id, request_time, latitude, longitude, charge_id)
+            WHERE l.user_id = r.user_id AND l.request_time = r.request_time
+              AND l.charge_id = r.charge_id AND l.status = 'OK'
+            RETURNING l.charge_id
+            """;
+
+    private final RequestLogProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final List<RequestLogListener> listeners;
+    private final ArrayBlockingQueue<RequestLogEntry> queue;
+    // Na fila ou no lote em gravação; só chega a zero depois que os listeners foram avisados
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter callerWrites;
+    private final Counter failed;
+    private final Timer flushes;
+
+    // Os listeners são dependências do writer: no desligamento ele esvazia a fila antes deles fecharem
+    public RequestLogWriter(RequestLogProperties properties, JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager, List<RequestLogListener> listeners,
+            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.listeners = List.copyOf(listeners);
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+
+        Gauge.builder("request.log.queue", queue, ArrayBlockingQueue::size).register(meterRegistry);
+        this.written = Counter.builder("request.log.written").register(meterRegistry);
+        this.dropped = Counter.builder("request.log.dropped")
+                .description("Registros descartados com a fila cheia (overflow=drop)")
+                .register(meterRegistry);
+        this.callerWrites = Counter.builder("request.log.caller.writes")
+                .description("Registros gravados pela própria requisição com a fila cheia")
+                .register(meterRegistry);
+        this.failed = Counter.builder("request.log.failed")
+                .description("Registros perdidos depois de esgotar as tentativas")
+                .register(meterRegistry);
+        this.flushes = Timer.builder("request.log.flush").register(meterRegistry);
+
+        this.writer = Thread.ofPlatform().name("request-log-writer").daemon().start(this::run);
+    }
+
+    public void append(RequestLogEntry entry) {
+        append(List.of(entry));
+    }
+
+    // Marca as cobranças como REFUNDED; entra na fila depois delas
+    public void refund(List<RequestLogEntry> charged) {
+        append(charged.stream().map(RequestLogEntry::asRefund).toList());
+    }
+
+    // Depois do desligamento, ou com a fila cheia em caller-runs, grava na hora
+    public void append(List<RequestLogEntry> entries) {
+        List<RequestLogEntry> overflow = null;
+        for (RequestLogEntry entry : entries) {
+            pending.incrementAndGet();
+            if (running && queue.offer(entry)) {
+                continue;
+            }
+            pending.decrementAndGet();
+            if (running && properties.getOverflow() == RequestLogProperties.Overflow.DROP) {
+                dropped.increment();
+                continue;
+            }
+            if (overflow == null) {
+                overflow = new ArrayList<>();
+            }
+            overflow.add(entry);
+        }
+        if (overflow != null) {
+            callerWrites.increment(overflow.size());
+            write(overflow);
+        }
+    }
+
+    public int pending() {
+        return pending.get();
+    }
+
+    private void run() {
+        List<RequestLogEntry> batch = new ArrayList<>(properties.getBatchSize());
+        long pollMillis = properties.getPollInterval().toMillis();
+        while (running || !queue.isEmpty()) {
+            try {
+                RequestLogEntry first = queue.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, properties.getBatchSize() - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                // Ninguém interrompe esta thread de propósito; o laço segue até a fila esvaziar
+                Thread.interrupted();
+            } catch (RuntimeException e) {
+                // Qualquer outra falha perde só este lote; a thread tem que seguir, senão a fila para
+                failed.increment(batch.size());
+                log.error("Falha inesperada ao gravar {} request_logs", batch.size(), e);
+            } finally {
+                pending.addAndGet(-batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<RequestLogEntry> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                flushes.record(() -> write(batch));
+                return;
+            } catch (DataAccessException | TransactionException e) {
+                if (attempt >= properties.getMaxAttempts()) {
+                    failed.increment(batch.size());
+                    log.error("Falha ao gravar {} request_logs depois de {} tentativas", batch.size(), attempt, e);
+                    return;
+                }
+                log.warn("Falha ao gravar {} request_logs (tentativa {}): {}", batch.size(), attempt,
+                        e.getMessage());
+                sleep(100L * attempt);
+            }
+        }
+    }
+
+    private void notifyListeners(List<RequestLogEntry> entries,
+            BiConsumer<RequestLogListener, List<RequestLogEntry>> event) {
+        for (RequestLogListener listener : listeners) {
+            try {
+                event.accept(listener, entries);
+            } catch (RuntimeException e) {
+                log.warn("Listener de request_logs falhou: {}", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private void write(List<RequestLogEntry> entries) {
+        if (entries.stream().noneMatch(RequestLogEntry::refund)) {
+            jdbcTemplate.update(statement(INSERT, entries));
+            written.increment(entries.size());
+            notifyListeners(entries, RequestLogListener::onWritten);
+            return;
+        }
+        // Inserts antes das devoluções, que podem se referir a cobranças do mesmo lote. Dois comandos:
+        // numa transação, para que uma nova tentativa do lote não grave as cobranças de novo
+        List<RequestLogEntry> inserts = entries.stream().filter(entry -> !entry.refund()).toList();
+        List<RequestLogEntry> refunds = entries.stream().filter(RequestLogEntry::refund).toList();
+        Set<Long> matched = transaction.execute(status -> {
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.update(statement(INSERT, inserts));
+            }
+            return new HashSet<>(jdbcTemplate.query(statement(REFUND, refunds), (rs, row) -> rs.getLong(1)));
+        });
+        if (!inserts.isEmpty()) {
+            written.increment(inserts.size());
+            notifyListeners(inserts, RequestLogListener::onWritten);
+        }
+        // Só as devoluções que acharam a cobrança: as demais nunca foram contadas pelos listeners
+        List<RequestLogEntry> refunded = refunds.stream().filter(entry -> matched.contains(entry.chargeId())).toList();
+        if (!refunded.isEmpty()) {
+            notifyListeners(refunded, RequestLogListener::onRefunded);
+        }
+    }
+
+    private static PreparedStatementCreator statement(String sql, List<RequestLogEntry> entries) {
+        int size = entries.size();
+        Long[] users = new Long[size];
+        Timestamp[] times = new Timestamp[size];
+        Double[] latitudes = new Double[size];
+        Double[] longitudes = new Double[size];
+        Long[] charges = new Long[size];
+        for (int i = 0; i < size; i++) {
+            RequestLogEntry entry = entries.get(i);
+            users[i] = entry.userId();
+            times[i] = Timestamp.valueOf(entry.requestTime());
+            latitudes[i] = (double) entry.latitude();
+            longitudes[i] = (double) entry.longitude();
+            charges[i] = entry.chargeId();
+        }
+        return (Connection connection) -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            Array[] arrays = {
+                    connection.createArrayOf("bigint", users),
+                    connection.createArrayOf("timestamp", times),
+                    connection.createArrayOf("float8", latitudes),
+                    connection.createArrayOf("float8", longitudes),
+                    connection.createArrayOf("bigint", charges) };
+            for (int i = 0; i < arrays.length; i++) {
+                statement.setArray(i + 1, arrays[i]);
+            }
+            return statement;
+        };
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Sem interrupt: um lote no meio da gravação termina, e o poll acorda sozinho em poll-interval
+        running = false;
+        writer.join(properties.getShutdownTimeout().toMillis());
+        // O que entrou na fila enquanto a thread terminava
+        List<RequestLogEntry> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            flush(rest);
+            pending.addAndGet(-rest.size());
+        }
+        if (writer.isAlive()) {
+            log.warn("request-log-writer não terminou em {}", properties.getShutdownTimeout());
+        }
+    }
+}
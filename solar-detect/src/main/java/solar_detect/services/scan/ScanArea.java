@@ -0,0 +1,196 @@
+package solar_detect.services.scan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import solar_detect.exceptions.BusinessException;
+import solar_detect.util.WebMercator;
+import solar_detect.util.WebMercator.LatLon;
+
+/**
+ * Área de um job de varredura, projetada em pixels de zoom 19 com a mesma
+ * conta do backend Python. Um tile entra na varredura quando o seu centro
+ * está dentro da área (regra par-ímpar, então buracos de polígonos são
+ * respeitados) ou quando contém um vértice, para que áreas menores que um
+ * tile ainda gerem ao menos uma predição.
+ */
+public final class ScanArea {
+
+    private static final int ZOOM = WebMercator.DETECTION_ZOOM;
+    private static final int TILE = WebMercator.TILE_SIZE;
+    // Limite de tiles candidatos (retângulo envolvente) por tile aceito, contra áreas absurdas
+    private static final long MAX_CANDIDATES_PER_TILE = 64;
+
+    // Cada polígono é uma lista de anéis; cada anel alterna x, y em pixels
+    private final List<List<double[]>> polygons;
+    private final String geoJson;
+
+    private ScanArea(List<List<double[]>> polygons, String geoJson) {
+        this.polygons = polygons;
+        this.geoJson = geoJson;
+    }
+
+    public record Tile(long tileX, long tileY, double lat, double lon) {
+    }
+
+    public static ScanArea fromBoundingBox(double minLat, double minLon, double maxLat, double maxLon) {
+        if (minLat >= maxLat || minLon >= maxLon) {
+            throw new BusinessException("bbox inválida: min deve ser menor que max");
+        }
+        double[] ring = {
+                WebMercator.pixelX(minLon, ZOOM), WebMercator.pixelY(minLat, ZOOM),
+                WebMercator.pixelX(maxLon, ZOOM), WebMercator.pixelY(minLat, ZOOM),
+                WebMercator.pixelX(maxLon, ZOOM), WebMercator.pixelY(maxLat, ZOOM),
+                WebMercator.pixelX(minLon, ZOOM), WebMercator.pixelY(maxLat, ZOOM),
+        };
+        String geoJson = String.format(Locale.US,
+                "{\"type\":\"Polygon\",\"coordinates\":[[[%f,%f],[%f,%f],[%f,%f],[%f,%f],[%f,%f]]]}",
+                minLon, minLat, maxLon, minLat, maxLon, maxLat, minLon, maxLat, minLon, minLat);
+        return new ScanArea(List.of(List.of(ring)), geoJson);
+    }
+
+    public static ScanArea fromGeoJson(JsonNode geometry) {
+        List<List<double[]>> polygons = new ArrayList<>();
+        JsonNode node = "Feature".equals(geometry.path("type").asText()) ? geometry.path("geometry") : geometry;
+        String type = node.path("type").asText();
+        JsonNode coordinates = node.path("coordinates");
+        switch (type) {
+            case "Polygon" -> polygons.add(parsePolygon(coordinates));
+            case "MultiPolygon" -> {
+                if (!coordinates.isArray() || coordinates.isEmpty()) {
+                    throw new BusinessException("MultiPolygon sem coordenadas");
+                }
+                coordinates.forEach(polygon -> polygons.add(parsePolygon(polygon)));
+            }
+            default -> throw new BusinessException("Geometria GeoJSON não suportada: " + type
+                    + " (use Polygon ou MultiPolygon)");
+        }
+        return new ScanArea(polygons, node.toString());
+    }
+
+    public String geoJson() {
+        return geoJson;
+    }
+
+    // Tiles em ordem de linha (norte para sul, oeste para leste)
+    public List<Tile> tiles(int maxTiles) {
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (List<double[]> polygon : polygons) {
+            for (double[] ring : polygon) {
+                for (int i = 0; i < ring.length; i += 2) {
+                    minX = Math.min(minX, ring[i]);
+                    maxX = Math.max(maxX, ring[i]);
+                    minY = Math.min(minY, ring[i + 1]);
+                    maxY = Math.max(maxY, ring[i + 1]);
+                }
+            }
+        }
+        long minTx = (long) Math.floor(minX / TILE);
+        long maxTx = (long) Math.floor(maxX / TILE);
+        long minTy = (long) Math.floor(minY / TILE);
+        long maxTy = (long) Math.floor(maxY / TILE);
+        int columns = (int) (maxTx - minTx + 1);
+        long candidates = (maxTy - minTy + 1) * (long) columns;
+        if (candidates > (long) maxTiles * MAX_CANDIDATES_PER_TILE) {
+            throw new BusinessException("Área grande demais para um único job (limite de " + maxTiles + " tiles)");
+        }
+
+        Map<Long, BitSet> vertexTiles = new HashMap<>();
+        for (List<double[]> polygon : polygons) {
+            for (double[] ring : polygon) {
+                for (int i = 0; i < ring.length; i += 2) {
+                    long tx = (long) Math.floor(ring[i] / TILE);
+                    long ty = (long) Math.floor(ring[i + 1] / TILE);
+                    vertexTiles.computeIfAbsent(ty, row -> new BitSet(columns)).set((int) (tx - minTx));
+                }
+            }
+        }
+
+        List<Tile> tiles = new ArrayList<>();
+        BitSet row = new BitSet(columns);
+        for (long ty = minTy; ty <= maxTy; ty++) {
+            row.clear();
+            // O mesmo +0.5 do TileKey: é o ponto que o int() do Python leva ao pixel central
+            double centreY = ty * TILE + TILE / 2 + 0.5;
+            for (List<double[]> polygon : polygons) {
+                fillRow(polygon, centreY, minTx, columns, row);
+            }
+            BitSet vertices = vertexTiles.get(ty);
+            if (vertices != null) {
+                row.or(vertices);
+            }
+            for (int column = row.nextSetBit(0); column >= 0; column = row.nextSetBit(column + 1)) {
+                if (tiles.size() == maxTiles) {
+                    throw new BusinessException("Área grande demais para um único job (limite de " + maxTiles
+                            + " tiles)");
+                }
+                long tx = minTx + column;
+                LatLon centre = WebMercator.pixelToLatLon(tx * TILE + TILE / 2 + 0.5, centreY, ZOOM);
+                tiles.add(new Tile(tx, ty, centre.lat(), centre.lon()));
+            }
+        }
+        return tiles;
+    }
+
+    // Varredura por linha: cruza a linha dos centros com as arestas e preenche entre pares de interseções
+    private static void fillRow(List<double[]> polygon, double y, long minTx, int columns, BitSet row) {
+        double[] crossings = new double[16];
+        int count = 0;
+        for (double[] ring : polygon) {
+            int points = ring.length / 2;
+            for (int i = 0, j = points - 1; i < points; j = i++) {
+                double x1 = ring[2 * j], y1 = ring[2 * j + 1];
+                double x2 = ring[2 * i], y2 = ring[2 * i + 1];
+                if ((y1 > y) != (y2 > y)) {
+                    if (count == crossings.length) {
+                        crossings = Arrays.copyOf(crossings, count * 2);
+                    }
+                    crossings[count++] = x1 + (y - y1) * (x2 - x1) / (y2 - y1);
+                }
+            }
+        }
+        Arrays.sort(crossings, 0, count);
+        for (int k = 0; k + 1 < count; k += 2) {
+            // Centro do tile tx fica em tx * TILE + TILE / 2 + 0.5; entra se estiver em [início, fim)
+            long first = (long) Math.ceil((crossings[k] - TILE / 2 - 0.5) / TILE);
+            long last = (long) Math.ceil((crossings[k + 1] - TILE / 2 - 0.5) / TILE) - 1;
+            int from = (int) Math.max(0, first - minTx);
+            int to = (int) Math.min(columns - 1, last - minTx);
+            if (from <= to) {
+                row.set(from, to + 1);
+            }
+        }
+    }
+
+    private static List<double[]> parsePolygon(JsonNode rings) {
+        if (!rings.isArray() || rings.isEmpty()) {
+            throw new BusinessException("Polygon sem coordenadas");
+        }
+        List<double[]> parsed = new ArrayList<>(rings.size());
+        for (JsonNode ring : rings) {
+            if (!ring.isArray() || ring.size() < 4) {
+                throw new BusinessException("Cada anel do polígono precisa de ao menos 4 posições");
+            }
+            double[] pixels = new double[ring.size() * 2];
+            int i = 0;
+            for (JsonNode position : ring) {
+                double lon = position.path(0).asDouble(Double.NaN);
+                double lat = position.path(1).asDouble(Double.NaN);
+                if (!(lon >= -180 && lon <= 180 && lat >= -85 && lat <= 85)) {
+                    throw new BusinessException("Posição inválida no GeoJSON: " + position);
+                }
+                pixels[i++] = WebMercator.pixelX(lon, ZOOM);
+                pixels[i++] = WebMercator.pixelY(lat, ZOOM);
+            }
+            parsed.add(pixels);
+        }
+        return parsed;
+    }
+}
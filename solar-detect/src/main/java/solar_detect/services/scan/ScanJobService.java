@@ -0,0 +1,212 @@
+package solar_detect.services.scan;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.RequiredArgsConstructor;
+import solar_detect.config.ScanJobProperties;
+import solar_detect.dto.ScanJobRequest;
+import solar_detect.dto.ScanJobResponse;
+import solar_detect.dto.ScanResultsPage;
+import solar_detect.dto.ScanTileResult;
+import solar_detect.exceptions.BusinessException;
+import solar_detect.exceptions.ResourceNotFoundException;
+import solar_detect.models.ScanJob;
+import solar_detect.models.ScanTile;
+import solar_detect.models.User;
+import solar_detect.repository.ScanJobRepository;
+import solar_detect.repository.ScanTileRepository;
+import solar_detect.services.queue.WorkQueue;
+
+@Service
+@RequiredArgsConstructor
+public class ScanJobService {
+
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final String INSERT_TILE = "INSERT INTO scan_tiles "
+            + "(job_id, tile_index, tile_x, tile_y, latitude, longitude, status) VALUES (?, ?, ?, ?, ?, ?, 'PENDING')";
+
+    public static final String QUEUE = "scan-tile";
+    private static final String JOB_TILE_IDS = "SELECT id::text AS payload FROM scan_tiles WHERE job_id = ?";
+
+    private final ScanJobRepository jobRepository;
+    private final ScanTileRepository tileRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final WorkQueue workQueue;
+    private final ScanJobProperties properties;
+
+    @Transactional
+    public ScanJobResponse createJob(User user, ScanJobRequest request) {
+        if (user.getUserType() != User.UserType.COMPANY) {
+            throw new BusinessException("Varredura de área disponível apenas para empresas");
+        }
+        if (jobRepository.countByUserAndStatus(user, ScanJob.Status.RUNNING) >= properties.getMaxActiveJobsPerUser()) {
+            throw new BusinessException("Limite de " + properties.getMaxActiveJobsPerUser()
+                    + " jobs em andamento atingido");
+        }
+
+        ScanArea area = request.getBbox() != null
+                ? ScanArea.fromBoundingBox(request.getBbox().getMinLat(), request.getBbox().getMinLon(),
+                        request.getBbox().getMaxLat(), request.getBbox().getMaxLon())
+                : ScanArea.fromGeoJson(request.getGeometry());
+        List<ScanArea.Tile> tiles = area.tiles(properties.getMaxTilesPerJob());
+
+        ScanJob job = jobRepository.save(ScanJob.builder()
+                .user(user)
+                .status(tiles.isEmpty() ? ScanJob.Status.COMPLETED : ScanJob.Status.RUNNING)
+                .area(area.geoJson())
+                .totalTiles(tiles.size())
+                .createdAt(LocalDateTime.now())
+                .finishedAt(tiles.isEmpty() ? LocalDateTime.now() : null)
+                .build());
+
+        // Milhares de linhas: insert em lote via JDBC em vez de um round-trip por entidade
+        List<Integer> indexes = IntStream.range(0, tiles.size()).boxed().toList();
+        jdbcTemplate.batchUpdate(INSERT_TILE, indexes, 1000, (statement, index) -> {
+            ScanArea.Tile tile = tiles.get(index);
+            statement.setLong(1, job.getId());
+            statement.setInt(2, index);
+            statement.setLong(3, tile.tileX());
+            statement.setLong(4, tile.tileY());
+            statement.setDouble(5, tile.lat());
+            statement.setDouble(6, tile.lon());
+        });
+        // Mesma transação: o job só fica visível junto com os itens da fila
+        workQueue.enqueueSelect(QUEUE, JOB_TILE_IDS + " ORDER BY tile_index", job.getId());
+        return toResponse(job);
+    }
+
+    @Transactional(readOnly = true)
+    public ScanJobResponse getJob(User user, Long jobId) {
+        return toResponse(findJob(user, jobId));
+    }
+
+    @Transactional(readOnly = true)
+    public List<ScanJobResponse> listJobs(User user) {
+        return jobRepository.findByUserOrderByCreatedAtDesc(user).stream()
+                .map(this::toResponse)
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public ScanResultsPage getResults(User user, Long jobId, ScanTile.Status status, int page, int size) {
+        ScanJob job = findJob(user, jobId);
+        PageRequest pageRequest = PageRequest.of(Math.max(0, page), Math.min(Math.max(1, size), MAX_PAGE_SIZE));
+        Page<ScanTile> tiles = status == null
+                ? tileRepository.findByJobIdOrderByTileIndex(job.getId(), pageRequest)
+                : tileRepository.findByJobIdAndStatusOrderByTileIndex(job.getId(), status, pageRequest);
+
+        return ScanResultsPage.builder()
+                .content(tiles.getContent().stream().map(this::toResult).toList())
+                .page(tiles.getNumber())
+                .size(tiles.getSize())
+                .totalElements(tiles.getTotalElements())
+                .totalPages(tiles.getTotalPages())
+                .build();
+    }
+
+    @Transactional(readOnly = true)
+    public ScanTile getFinishedTile(User user, Long jobId, int tileIndex) {
+        ScanJob job = findJob(user, jobId);
+        ScanTile tile = tileRepository.findByJobIdAndTileIndex(job.getId(), tileIndex)
+                .orElseThrow(() -> new ResourceNotFoundException("Tile não encontrado"));
+        if (tile.getStatus() != ScanTile.Status.DONE) {
+            throw new BusinessException("Tile ainda não processado (" + tile.getStatus() + ")");
+        }
+        return tile;
+    }
+
+    @Transactional
+    public ScanJobResponse cancelJob(User user, Long jobId) {
+        ScanJob job = findJob(user, jobId);
+        if (job.getStatus() == ScanJob.Status.RUNNING) {
+            job.setStatus(ScanJob.Status.CANCELLED);
+            job.setFinishedAt(LocalDateTime.now());
+            workQueue.deleteWhere(QUEUE, JOB_TILE_IDS, job.getId());
+        }
+        return toResponse(job);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<ScanTile> findTile(long tileId) {
+        return tileRepository.findById(tileId);
+    }
+
+    /*
+     * Resultado gravado pelo worker ao concluir o tile. Vazio para tiles
+     * concluídos antes de o resultado ser guardado junto com o job.
+     */
+    @Transactional(readOnly = true)
+    public Optional<ByteBuffer> findResult(ScanTile tile) {
+        byte[] result = jdbcTemplate.queryForObject("SELECT result FROM scan_tiles WHERE id = ?", byte[].class,
+                tile.getId());
+        return Optional.ofNullable(result).map(bytes -> ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+    }
+
+    /*
+     * Um item pode ser entregue mais de uma vez (timeout de visibilidade), então
+     * só a primeira conclusão do tile conta no progresso do job. O resultado
+     * fica com o tile: a imagem é servida dele, mesmo depois de o cache
+     * descartar a entrada.
+     */
+    @Transactional
+    public void completeTile(ScanTile tile, ByteBuffer result, String error) {
+        LocalDateTime now = LocalDateTime.now();
+        byte[] bytes = null;
+        if (result != null) {
+            bytes = new byte[result.remaining()];
+            result.duplicate().get(bytes);
+        }
+        int updated = jdbcTemplate.update(
+                "UPDATE scan_tiles SET status = ?, error = ?, result = ?, completed_at = ? "
+                        + "WHERE id = ? AND status = 'PENDING'",
+                error == null ? ScanTile.Status.DONE.name() : ScanTile.Status.FAILED.name(),
+                error, bytes, Timestamp.valueOf(now), tile.getId());
+        if (updated == 1) {
+            jobRepository.incrementProgress(tile.getJobId(), error == null ? 1 : 0, error == null ? 0 : 1);
+            jobRepository.completeIfFinished(tile.getJobId(), now);
+        }
+    }
+
+    private ScanJob findJob(User user, Long jobId) {
+        return jobRepository.findByIdAndUser(jobId, user)
+                .orElseThrow(() -> new ResourceNotFoundException("Job de varredura não encontrado"));
+    }
+
+    private ScanJobResponse toResponse(ScanJob job) {
+        int finished = job.getCompletedTiles() + job.getFailedTiles();
+        return ScanJobResponse.builder()
+                .id(job.getId())
+                .status(job.getStatus().name())
+                .totalTiles(job.getTotalTiles())
+                .completedTiles(job.getCompletedTiles())
+                .failedTiles(job.getFailedTiles())
+                .progress(job.getTotalTiles() == 0 ? 1.0 : (double) finished / job.getTotalTiles())
+                .createdAt(job.getCreatedAt())
+                .finishedAt(job.getFinishedAt())
+                .build();
+    }
+
+    private ScanTileResult toResult(ScanTile tile) {
+        return ScanTileResult.builder()
+                .index(tile.getTileIndex())
+                .lat(tile.getLatitude())
+                .lon(tile.getLongitude())
+                .status(tile.getStatus().name())
+                .error(tile.getError())
+                .imageUrl(tile.getStatus() == ScanTile.Status.DONE
+                        ? "/api/scan-jobs/" + tile.getJobId() + "/tiles/" + tile.getTileIndex() + "/image"
+                        : null)
+                .build();
+    }
+}
@@ -0,0 +1,61 @@
+package solar_detect.services.scan;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.config.ScanJobProperties;
+import solar_detect.exceptions.InferenceUnavailableException;
+import solar_detect.services.PredictionService;
+import solar_detect.services.queue.WorkDeferredException;
+import solar_detect.services.queue.WorkItem;
+import solar_detect.services.queue.WorkQueueHandler;
+
+/**
+ * Processa os tiles dos jobs de varredura a partir da fila compartilhada.
+ * O payload de cada item é o id do tile; retries, backoff e a divisão do
+ * trabalho entre instâncias ficam por conta do WorkQueueWorker.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ScanJobWorker implements WorkQueueHandler {
+
+    private final ScanJobService scanJobService;
+    private final PredictionService predictionService;
+    private final ScanJobProperties properties;
+
+    @Override
+    public String queue() {
+        return ScanJobService.QUEUE;
+    }
+
+    @Override
+    public int concurrency() {
+        return properties.isEnabled() ? properties.getConcurrency() : 0;
+    }
+
+    @Override
+    public void handle(WorkItem item) {
+        // Tile removido junto com o job: nada a fazer
+        scanJobService.findTile(Long.parseLong(item.payload())).ifPresent(tile -> {
+            ByteBuffer result;
+            try {
+                result = predictionService.loadPrediction(tile.getLatitude(), tile.getLongitude());
+            } catch (InferenceUnavailableException e) {
+                // Backend fora ou circuito aberto: não é falha do tile
+                throw new WorkDeferredException(Duration.ofSeconds(e.getRetryAfterSeconds()), e);
+            }
+            scanJobService.completeTile(tile, result, null);
+        });
+    }
+
+    @Override
+    public void onDeadLetter(WorkItem item, String error) {
+        scanJobService.findTile(Long.parseLong(item.payload()))
+                .ifPresent(tile -> scanJobService.completeTile(tile, null, error));
+    }
+}
@@ -0,0 +1,355 @@
+package solar_detect.services.spatial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.config.DetectionIndexProperties;
+import solar_detect.config.PredictionProperties;
+import solar_detect.exceptions.BusinessException;
+import solar_detect.services.cache.TileKey;
+import solar_detect.util.WebMercator;
+
+/**
+ * Índice espacial em memória dos tiles já preditos, na mesma grade do cache.
+ * Os pontos ficam em células fixas no zoom 19, cada uma com um int[] de
+ * x, y intercalados, e um conjunto de longs com endereçamento aberto evita
+ * duplicatas; nada é alocado por ponto. É carregado de request_logs na
+ * inicialização, só com as requisições entregues (status OK; as devolvidas
+ * não chegaram a ter predição), e recebe cada predição concluída depois disso.
+ */
+@Component
+@Slf4j
+public class DetectionIndex {
+
+    private static final int ZOOM = WebMercator.DETECTION_ZOOM;
+    private static final long EMPTY = -1L;
+    private static final int LOAD_BATCH = 4096;
+    private static final String LOAD_SQL = "SELECT latitude, longitude FROM request_logs "
+            + "WHERE status = 'OK' AND latitude IS NOT NULL AND longitude IS NOT NULL";
+
+    public record Nearby(TileKey key, double distanceMeters) {
+    }
+
+    private static final class Cell {
+        private int[] points = new int[8];
+        private int count;
+
+        private void add(int x, int y) {
+            if (count * 2 == points.length) {
+                points = Arrays.copyOf(points, points.length * 2);
+            }
+            points[count * 2] = x;
+            points[count * 2 + 1] = y;
+            count++;
+        }
+    }
+
+    private final DetectionIndexProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int gridPixels;
+    private final int cellShift;
+    private final long worldPixels = (long) WebMercator.TILE_SIZE << ZOOM;
+    private final long worldCells;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HashMap<Long, Cell> cells = new HashMap<>();
+    private long[] members = newMembers(1 << 16);
+    private int size;
+    private volatile boolean loaded;
+
+    public DetectionIndex(DetectionIndexProperties properties, PredictionProperties predictionProperties,
+            JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.gridPixels = predictionProperties.getCache().getGridPixels();
+        int cellPixels = Integer.highestOneBit(Math.max(1, properties.getCellPixels()));
+        this.cellShift = Integer.numberOfTrailingZeros(cellPixels);
+        this.worldCells = worldPixels >> cellShift;
+
+        Gauge.builder("detection.index.points", this, DetectionIndex::size).register(meterRegistry);
+    }
+
+    // Carga em background: a aplicação já atende enquanto o histórico é lido
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Thread.ofPlatform().name("detection-index-load").daemon().start(this::load);
+    }
+
+    void load() {
+        long started = System.nanoTime();
+        long[] batch = new long[LOAD_BATCH];
+        int[] pending = { 0 };
+        try {
+            SpatialSupport.streamRows(jdbcTemplate, readOnlyTransaction, LOAD_SQL, properties.getLoadFetchSize(),
+                    rs -> {
+                        TileKey key = TileKey.of(rs.getDouble(1), rs.getDouble(2), gridPixels);
+                        batch[pending[0]++] = pack((int) key.x(), (int) key.y());
+                        if (pending[0] == LOAD_BATCH) {
+                            addAll(batch, pending[0]);
+                            pending[0] = 0;
+                        }
+                    });
+            addAll(batch, pending[0]);
+            loaded = true;
+            log.info("Índice de detecções carregado: {} tiles em {} ms", size(),
+                    (System.nanoTime() - started) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.error("Falha ao carregar o índice de detecções de request_logs", e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public void add(TileKey key) {
+        if (!properties.isEnabled() || key.zoom() != ZOOM) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            insert((int) key.x(), (int) key.y());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addAll(long[] packed, int count) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                insert((int) (packed[i] >>> 32), (int) packed[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Tiles até radiusMeters do ponto, do mais próximo ao mais distante. A
+     * distância usa a resolução do zoom 19 na latitude consultada, exata o
+     * bastante dentro de alguns quilômetros. Só as células que cruzam o
+     * quadrado do raio são lidas, e um heap limitado guarda os melhores. Em x
+     * o quadrado dá a volta no antimeridiano; em y para nas bordas do mapa.
+     * Quando o quadrado tem mais células que o índice (perto dos polos), são
+     * percorridas as células existentes; acima de max-scan-cells a consulta é
+     * recusada, para não segurar o lock de leitura que add() espera.
+     */
+    public List<Nearby> nearby(double lat, double lon, double radiusMeters, int limit) {
+        double metersPerPixel = WebMercator.groundResolution(lat, ZOOM);
+        double px = WebMercator.pixelX(lon, ZOOM);
+        double py = WebMercator.pixelY(lat, ZOOM);
+        double radius = radiusMeters / metersPerPixel;
+        double radiusSquared = radius * radius;
+        long minCellX = (long) Math.floor(px - radius) >> cellShift;
+        long maxCellX = (long) Math.floor(px + radius) >> cellShift;
+        if (maxCellX - minCellX + 1 >= worldCells) {
+            minCellX = 0;
+            maxCellX = worldCells - 1;
+        }
+        long spanX = maxCellX - minCellX;
+        // worldCells inclusive: o ajuste do TileKey pode levar y até a borda de baixo
+        long minCellY = Math.max(0, (long) Math.floor(py - radius) >> cellShift);
+        long maxCellY = Math.min(worldCells, (long) Math.floor(py + radius) >> cellShift);
+        long rangeCells = (spanX + 1) * Math.max(0, maxCellY - minCellY + 1);
+
+        NearestHeap heap = new NearestHeap(limit);
+        lock.readLock().lock();
+        try {
+            if (Math.min(rangeCells, cells.size()) > properties.getMaxScanCells()) {
+                throw new BusinessException("Raio grande demais para esta latitude");
+            }
+            if (rangeCells <= cells.size()) {
+                for (long cellY = minCellY; cellY <= maxCellY; cellY++) {
+                    for (long cellX = minCellX; cellX <= maxCellX; cellX++) {
+                        Cell cell = cells.get(cellKey((int) Math.floorMod(cellX, worldCells), (int) cellY));
+                        if (cell != null) {
+                            collect(cell, px, py, radiusSquared, heap);
+                        }
+                    }
+                }
+            } else {
+                for (Map.Entry<Long, Cell> entry : cells.entrySet()) {
+                    long key = entry.getKey();
+                    int cellX = (int) (key >>> 32);
+                    int cellY = (int) key;
+                    if (cellY >= minCellY && cellY <= maxCellY && Math.floorMod(cellX - minCellX, worldCells) <= spanX) {
+                        collect(entry.getValue(), px, py, radiusSquared, heap);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return heap.drain(metersPerPixel);
+    }
+
+    private void collect(Cell cell, double px, double py, double radiusSquared, NearestHeap heap) {
+        int[] points = cell.points;
+        for (int i = 0, end = cell.count * 2; i < end; i += 2) {
+            // Distância até o centro do pixel do tile, pelo lado mais curto do antimeridiano
+            double dx = points[i] + 0.5 - px;
+            if (dx > worldPixels / 2) {
+                dx -= worldPixels;
+            } else if (dx < -worldPixels / 2) {
+                dx += worldPixels;
+            }
+            double dy = points[i + 1] + 0.5 - py;
+            double distanceSquared = dx * dx + dy * dy;
+            if (distanceSquared <= radiusSquared) {
+                heap.offer(distanceSquared, points[i], points[i + 1]);
+            }
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(int x, int y) {
+        long packed = pack(x, y);
+        if ((size + 1) * 2L > members.length) {
+            rehash();
+        }
+        int mask = members.length - 1;
+        int slot = SpatialSupport.hash(packed) & mask;
+        while (members[slot] != EMPTY) {
+            if (members[slot] == packed) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        members[slot] = packed;
+        size++;
+        // x = worldPixels (longitude 180) é a mesma coluna de células que x = 0
+        cells.computeIfAbsent(cellKey((int) Math.floorMod(x >> cellShift, worldCells), y >> cellShift),
+                k -> new Cell()).add(x, y);
+    }
+
+    private void rehash() {
+        long[] previous = members;
+        members = newMembers(previous.length * 2);
+        int mask = members.length - 1;
+        for (long packed : previous) {
+            if (packed == EMPTY) {
+                continue;
+            }
+            int slot = SpatialSupport.hash(packed) & mask;
+            while (members[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            members[slot] = packed;
+        }
+    }
+
+    private static long[] newMembers(int capacity) {
+        long[] array = new long[capacity];
+        Arrays.fill(array, EMPTY);
+        return array;
+    }
+
+    private static long pack(int x, int y) {
+        return (long) x << 32 | (y & 0xFFFFFFFFL);
+    }
+
+    private static Long cellKey(int cellX, int cellY) {
+        return pack(cellX, cellY);
+    }
+
+    // Max-heap limitado pela distância, em arrays primitivos
+    private static final class NearestHeap {
+        private final double[] distances;
+        private final int[] xs;
+        private final int[] ys;
+        private int count;
+
+        private NearestHeap(int capacity) {
+            this.distances = new double[capacity];
+            this.xs = new int[capacity];
+            this.ys = new int[capacity];
+        }
+
+        private void offer(double distance, int x, int y) {
+            if (count < distances.length) {
+                int i = count++;
+                while (i > 0 && distances[(i - 1) / 2] < distance) {
+                    move((i - 1) / 2, i);
+                    i = (i - 1) / 2;
+                }
+                set(i, distance, x, y);
+            } else if (count > 0 && distance < distances[0]) {
+                siftDown(distance, x, y, count);
+            }
+        }
+
+        // Coloca (distance, x, y) no lugar da raiz, considerando só as primeiras n posições
+        private void siftDown(double distance, int x, int y, int n) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= n) {
+                    break;
+                }
+                if (child + 1 < n && distances[child + 1] > distances[child]) {
+                    child++;
+                }
+                if (distances[child] <= distance) {
+                    break;
+                }
+                move(child, i);
+                i = child;
+            }
+            set(i, distance, x, y);
+        }
+
+        private List<Nearby> drain(double metersPerPixel) {
+            Nearby[] sorted = new Nearby[count];
+            for (int n = count; n > 0; n--) {
+                double meters = Math.sqrt(distances[0]) * metersPerPixel;
+                sorted[n - 1] = new Nearby(new TileKey(ZOOM, xs[0], ys[0]), meters);
+                int last = n - 1;
+                siftDown(distances[last], xs[last], ys[last], last);
+            }
+            return new ArrayList<>(Arrays.asList(sorted));
+        }
+
+        private void move(int from, int to) {
+            set(to, distances[from], xs[from], ys[from]);
+        }
+
+        private void set(int i, double distance, int x, int y) {
+            distances[i] = distance;
+            xs[i] = x;
+            ys[i] = y;
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package solar_detect.services.spatial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.config.HeatmapProperties;
+import solar_detect.services.requestlog.RequestLogEntry;
+import solar_detect.services.requestlog.RequestLogListener;
+import solar_detect.util.Geohash;
+
+/**
+ * Contagem de requisições por célula de geohash, em memória, para o mapa de
+ * calor. Cada precisão configurada tem um mapa long -> long com endereçamento
+ * aberto; cada lote gravado em request_logs soma em todos eles. Só a precisão
+ * 7 vai para heatmap_cells (as demais são prefixos dela), com upserts
+ * periódicos que somam ao valor existente.
+ *
+ * Uma consulta percorre só as células do viewport na precisão pedida, ou o
+ * mapa inteiro quando ele é menor que o viewport; o custo não depende do
+ * tamanho de request_logs. Contagens de outras réplicas chegam na releitura
+ * periódica de heatmap_cells.
+ */
+@Component
+@Slf4j
+public class HeatmapGrid implements RequestLogListener {
+
+    public static final int STORAGE_PRECISION = 7; // tem que bater com V8__create_heatmap_cells.sql
+
+    private static final String UPSERT = """
+            INSERT INTO heatmap_cells (cell, requests) VALUES (?, ?)
+            ON CONFLICT (cell) DO UPDATE SET requests = heatmap_cells.requests + EXCLUDED.requests
+            """;
+    private static final String LOAD_SQL = "SELECT cell, requests FROM heatmap_cells";
+
+    public record Cell(long cell, long requests) {
+    }
+
+    private final HeatmapProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int[] precisions; // crescente
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private CounterMap[] totals; // um por precisão, na ordem de precisions
+    private CounterMap pending = new CounterMap(); // incrementos ainda não gravados, na precisão 7
+    private CounterMap sinceRefresh; // incrementos durante uma releitura; null fora dela
+    private volatile boolean loaded;
+
+    public HeatmapGrid(HeatmapProperties properties, JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.precisions = properties.getPrecisions().stream().mapToInt(Integer::intValue).distinct().sorted()
+                .toArray();
+        if (precisions.length == 0 || precisions[0] < 1 || precisions[precisions.length - 1] > STORAGE_PRECISION) {
+            throw new IllegalStateException("heatmap.precisions deve ter valores entre 1 e " + STORAGE_PRECISION);
+        }
+        this.totals = newTotals();
+
+        Gauge.builder("heatmap.cells", this, HeatmapGrid::size)
+                .description("Células de geohash com requisições, na precisão mais fina mantida")
+                .register(meterRegistry);
+    }
+
+    // Carga em background, como o índice de detecções: até lá as consultas veem só o tráfego novo
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduleRefresh();
+    }
+
+    @Scheduled(fixedDelayString = "${heatmap.refresh-interval:PT10M}",
+            initialDelayString = "${heatmap.refresh-interval:PT10M}")
+    public void scheduledRefresh() {
+        scheduleRefresh();
+    }
+
+    @Scheduled(fixedDelayString = "${heatmap.flush-interval:PT30S}",
+            initialDelayString = "${heatmap.flush-interval:PT30S}")
+    public void scheduledFlush() {
+        if (properties.isEnabled()) {
+            flush();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (properties.isEnabled()) {
+            flush();
+        }
+    }
+
+    private void scheduleRefresh() {
+        if (!properties.isEnabled() || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofPlatform().name("heatmap-load").daemon().start(() -> {
+            try {
+                refresh();
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int[] precisions() {
+        return precisions.clone();
+    }
+
+    @Override
+    public void onWritten(List<RequestLogEntry> entries) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (RequestLogEntry entry : entries) {
+                long cell = Geohash.encode(entry.latitude(), entry.longitude(), STORAGE_PRECISION);
+                pending.add(cell, 1);
+                if (sinceRefresh != null) {
+                    sinceRefresh.add(cell, 1);
+                }
+                addToTotals(totals, cell, 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    synchronized void flush() {
+        CounterMap taken;
+        lock.writeLock().lock();
+        try {
+            if (pending.size() == 0) {
+                return;
+            }
+            taken = pending;
+            pending = new CounterMap();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            write(taken);
+        } catch (DataAccessException | TransactionException e) {
+            restore(taken);
+            log.warn("Falha no flush de heatmap_cells ({} células pendentes): {}", taken.size(), e.getMessage());
+        }
+    }
+
+    /*
+     * Relê heatmap_cells e troca os totais. Sob o mesmo monitor do flush: os
+     * pendentes são gravados antes da leitura e nada mais é gravado até a
+     * troca, então a leitura tem tudo o que veio antes e sinceRefresh tudo o
+     * que veio depois, sem contar nada duas vezes.
+     */
+    synchronized void refresh() {
+        long started = System.nanoTime();
+        CounterMap taken;
+        lock.writeLock().lock();
+        try {
+            taken = pending;
+            pending = new CounterMap();
+            sinceRefresh = new CounterMap();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            write(taken);
+        } catch (DataAccessException | TransactionException e) {
+            endRefresh();
+            restore(taken);
+            log.warn("Falha no flush de heatmap_cells antes da releitura: {}", e.getMessage());
+            return;
+        }
+        CounterMap[] fresh = newTotals();
+        try {
+            SpatialSupport.streamRows(jdbcTemplate, readOnlyTransaction, LOAD_SQL, properties.getLoadFetchSize(),
+                    rs -> addToTotals(fresh, rs.getLong(1), rs.getLong(2)));
+        } catch (RuntimeException e) {
+            endRefresh();
+            log.error("Falha ao carregar o mapa de calor de heatmap_cells", e);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            sinceRefresh.forEach((cell, requests) -> addToTotals(fresh, cell, requests));
+            totals = fresh;
+            sinceRefresh = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        loaded = true;
+        log.info("Mapa de calor carregado: {} células em {} ms", size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // Precisão mais fina cujo viewport cabe em max-cells; se nenhuma couber, a mais grossa
+    public int precisionFor(double minLat, double minLon, double maxLat, double maxLon) {
+        for (int i = precisions.length - 1; i > 0; i--) {
+            if (viewportCells(minLat, minLon, maxLat, maxLon, precisions[i]) <= properties.getMaxCells()) {
+                return precisions[i];
+            }
+        }
+        return precisions[0];
+    }
+
+    public static long viewportCells(double minLat, double minLon, double maxLat, double maxLon, int precision) {
+        long columns = Geohash.lonIndex(maxLon, precision) - Geohash.lonIndex(minLon, precision) + 1;
+        long rows = Geohash.latIndex(maxLat, precision) - Geohash.latIndex(minLat, precision) + 1;
+        return columns * rows;
+    }
+
+    // Células com requisições que cruzam o viewport, na precisão informada (uma das configuradas)
+    public List<Cell> cells(double minLat, double minLon, double maxLat, double maxLon, int precision) {
+        int level = Arrays.binarySearch(precisions, precision);
+        if (level < 0) {
+            throw new IllegalArgumentException("Precisão não mantida: " + precision);
+        }
+        long minX = Geohash.lonIndex(minLon, precision);
+        long maxX = Geohash.lonIndex(maxLon, precision);
+        long minY = Geohash.latIndex(minLat, precision);
+        long maxY = Geohash.latIndex(maxLat, precision);
+
+        List<Cell> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            CounterMap counts = totals[level];
+            if ((maxX - minX + 1) * (maxY - minY + 1) <= counts.size()) {
+                for (long y = minY; y <= maxY; y++) {
+                    for (long x = minX; x <= maxX; x++) {
+                        long cell = Geohash.interleave(x, y, precision);
+                        long requests = counts.get(cell);
+                        if (requests > 0) {
+                            result.add(new Cell(cell, requests));
+                        }
+                    }
+                }
+            } else {
+                // Viewport maior que o mapa: mais barato filtrar as células existentes
+                counts.forEach((cell, requests) -> {
+                    long x = Geohash.cellLonIndex(cell, precision);
+                    long y = Geohash.cellLatIndex(cell, precision);
+                    if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                        result.add(new Cell(cell, requests));
+                    }
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return totals[totals.length - 1].size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(CounterMap counts) {
+        if (counts.size() == 0) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(counts.size());
+        counts.forEach((cell, requests) -> rows.add(new Object[] { cell, requests }));
+        // Upserts aditivos: com o lote numa transação, uma falha não deixa parte gravada para o restore somar de novo
+        transaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPSERT, rows));
+    }
+
+    // Os incrementos voltam para o próximo flush; os totais em memória já os têm
+    private void restore(CounterMap counts) {
+        lock.writeLock().lock();
+        try {
+            counts.forEach(pending::add);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void endRefresh() {
+        lock.writeLock().lock();
+        try {
+            sinceRefresh = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private CounterMap[] newTotals() {
+        CounterMap[] maps = new CounterMap[precisions.length];
+        for (int i = 0; i < maps.length; i++) {
+            maps[i] = new CounterMap();
+        }
+        return maps;
+    }
+
+    private void addToTotals(CounterMap[] maps, long cell, long requests) {
+        for (int i = 0; i < maps.length; i++) {
+            maps[i].add(Geohash.parent(cell, STORAGE_PRECISION, precisions[i]), requests);
+        }
+    }
+
+    @FunctionalInterface
+    interface CellConsumer {
+        void accept(long cell, long requests);
+    }
+
+    // Mapa long -> long com sondagem linear; células são geohashes não negativos
+    static final class CounterMap {
+        private static final long EMPTY = -1L;
+
+        private long[] keys = newKeys(16);
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long key, long delta) {
+            if ((size + 1) * 2L > keys.length) {
+                rehash();
+            }
+            int mask = keys.length - 1;
+            int slot = SpatialSupport.hash(key) & mask;
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) {
+                    values[slot] += delta;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = delta;
+            size++;
+        }
+
+        long get(long key) {
+            int mask = keys.length - 1;
+            int slot = SpatialSupport.hash(key) & mask;
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void forEach(CellConsumer consumer) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    consumer.accept(keys[i], values[i]);
+                }
+            }
+        }
+
+        private void rehash() {
+            long[] previousKeys = keys;
+            long[] previousValues = values;
+            keys = newKeys(previousKeys.length * 2);
+            values = new long[keys.length];
+            int mask = keys.length - 1;
+            for (int i = 0; i < previousKeys.length; i++) {
+                if (previousKeys[i] == EMPTY) {
+                    continue;
+                }
+                int slot = SpatialSupport.hash(previousKeys[i]) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = previousKeys[i];
+                values[slot] = previousValues[i];
+            }
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] array = new long[capacity];
+            Arrays.fill(array, EMPTY);
+            return array;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package solar_detect.services.spatial;
+
+import java.sql.PreparedStatement;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Peças comuns às estruturas em memória deste pacote: a carga inicial que
+ * percorre uma tabela grande sem materializar o resultado, e o hash dos
+ * mapas de longs com endereçamento aberto.
+ */
+final class SpatialSupport {
+
+    private SpatialSupport() {
+    }
+
+    // Entrega linha a linha ao handler, buscando fetchSize linhas por ida ao banco
+    static void streamRows(JdbcTemplate jdbcTemplate, TransactionTemplate readOnlyTransaction, String sql,
+            int fetchSize, RowCallbackHandler handler) {
+        // Postgres só usa cursor (fetch size) dentro de uma transação
+        readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, handler));
+    }
+
+    // Finalizador do murmur3: chaves vizinhas diferem só nos bits baixos, e o hash os espalha antes de mascarar
+    static int hash(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return (int) value;
+    }
+}
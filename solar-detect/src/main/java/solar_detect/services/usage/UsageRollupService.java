@@ -0,0 +1,132 @@
+package solar_detect.services.usage;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.dto.UsageReport;
+import solar_detect.services.requestlog.RequestLogEntry;
+import solar_detect.services.requestlog.RequestLogListener;
+
+/**
+ * Uso por usuário, hora e papel em usage_rollups. Cada lote gravado em
+ * request_logs soma nos contadores em memória, cada devolução (REFUNDED)
+ * subtrai, e um flush periódico leva o acumulado ao banco com upserts que
+ * somam ao valor existente. As consultas
+ * leem só usage_rollups pela chave primária: o custo depende das horas
+ * pedidas, não do tamanho de request_logs.
+ */
+@Component
+@Slf4j
+public class UsageRollupService implements RequestLogListener {
+
+    private static final String UPSERT = """
+            INSERT INTO usage_rollups (user_id, hour, role, requests) VALUES (?, ?, ?, ?)
+            ON CONFLICT (user_id, hour, role) DO UPDATE SET requests = usage_rollups.requests + EXCLUDED.requests
+            """;
+    private static final String HOURLY = """
+            SELECT hour, role, requests FROM usage_rollups
+            WHERE user_id = ? AND hour >= ? AND hour < ?
+            ORDER BY hour, role
+            """;
+
+    private record Key(long userId, LocalDateTime hour, String role) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final ConcurrentHashMap<Key, Long> pending = new ConcurrentHashMap<>();
+
+    public UsageRollupService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    // merge é atômico por chave, e o flush tira cada chave com remove: nenhum incremento se perde
+    @Override
+    public void onWritten(List<RequestLogEntry> entries) {
+        add(entries, 1);
+    }
+
+    // Devolução sai da hora da cobrança; o mesmo upsert aditivo leva o -1 ao banco no próximo flush
+    @Override
+    public void onRefunded(List<RequestLogEntry> entries) {
+        add(entries, -1);
+    }
+
+    private void add(List<RequestLogEntry> entries, long delta) {
+        for (RequestLogEntry entry : entries) {
+            Key key = new Key(entry.userId(), entry.requestTime().truncatedTo(ChronoUnit.HOURS), entry.role());
+            pending.merge(key, delta, Long::sum);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${usage.flush-interval:PT30S}", initialDelayString = "${usage.flush-interval:PT30S}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    synchronized void flush() {
+        List<Key> keys = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (Key key : pending.keySet()) {
+            Long requests = pending.remove(key);
+            if (requests != null && requests != 0) {
+                keys.add(key);
+                rows.add(new Object[] { key.userId(), Timestamp.valueOf(key.hour()), key.role(), requests });
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            // Os upserts somam ao valor existente: o lote entra inteiro ou nada, senão devolver tudo contaria em dobro
+            transaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPSERT, rows));
+        } catch (DataAccessException | TransactionException e) {
+            // Rollback feito: os contadores voltam para o próximo flush
+            for (int i = 0; i < keys.size(); i++) {
+                pending.merge(keys.get(i), (Long) rows.get(i)[3], Long::sum);
+            }
+            log.warn("Falha no flush de usage_rollups ({} linhas pendentes): {}", rows.size(), e.getMessage());
+        }
+    }
+
+    public UsageReport report(long userId, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime start = from.truncatedTo(ChronoUnit.HOURS);
+        List<UsageReport.HourlyUsage> hours = jdbcTemplate.query(HOURLY,
+                (rs, row) -> UsageReport.HourlyUsage.builder()
+                        .hour(rs.getTimestamp("hour").toLocalDateTime())
+                        .role(rs.getString("role"))
+                        .requests(rs.getLong("requests"))
+                        .build(),
+                userId, Timestamp.valueOf(start), Timestamp.valueOf(to));
+        long total = 0;
+        for (UsageReport.HourlyUsage hour : hours) {
+            total += hour.getRequests();
+        }
+        return UsageReport.builder()
+                .from(start)
+                .to(to)
+                .totalRequests(total)
+                .hours(hours)
+                .build();
+    }
+}
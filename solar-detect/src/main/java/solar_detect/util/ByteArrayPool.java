@@ -0,0 +1,44 @@
+package solar_detect.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool limitado de arrays de tamanho fixo. Quando todos estão em uso,
+ * {@link #acquire()} retorna null e quem chama decide o que fazer.
+ */
+public class ByteArrayPool {
+
+    private final int arraySize;
+    private final int maxArrays;
+    private final ArrayBlockingQueue<byte[]> free;
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    public ByteArrayPool(int arraySize, int maxArrays) {
+        this.arraySize = arraySize;
+        this.maxArrays = maxArrays;
+        this.free = new ArrayBlockingQueue<>(maxArrays);
+    }
+
+    public byte[] acquire() {
+        byte[] array = free.poll();
+        if (array != null) {
+            return array;
+        }
+        if (allocated.incrementAndGet() > maxArrays) {
+            allocated.decrementAndGet();
+            return null;
+        }
+        return new byte[arraySize];
+    }
+
+    public void release(byte[] array) {
+        if (array != null && array.length == arraySize) {
+            free.offer(array);
+        }
+    }
+
+    public int available() {
+        return free.size() + (maxArrays - allocated.get());
+    }
+}
@@ -0,0 +1,107 @@
+package solar_detect.util;
+
+/**
+ * Geohash como inteiro: precisão p tem 5p bits, começando pela longitude e
+ * alternando com a latitude, exatamente como os caracteres base32 do geohash
+ * textual. A célula de precisão menor é um prefixo da maior, então subir de
+ * nível é só um deslocamento de bits. As contas de índice precisam bater com
+ * as do backfill em V8__create_heatmap_cells.sql.
+ */
+public final class Geohash {
+
+    public static final int MAX_PRECISION = 12; // 60 bits cabem num long
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private Geohash() {
+    }
+
+    public record Bounds(double minLat, double minLon, double maxLat, double maxLon) {
+
+        public double centreLat() {
+            return (minLat + maxLat) / 2;
+        }
+
+        public double centreLon() {
+            return (minLon + maxLon) / 2;
+        }
+    }
+
+    public static int lonBits(int precision) {
+        return (5 * precision + 1) / 2;
+    }
+
+    public static int latBits(int precision) {
+        return 5 * precision / 2;
+    }
+
+    public static long encode(double lat, double lon, int precision) {
+        return interleave(lonIndex(lon, precision), latIndex(lat, precision), precision);
+    }
+
+    // Coluna da célula na grade da precisão; 180 cai na última coluna
+    public static long lonIndex(double lon, int precision) {
+        return index(lon + 180, 360, lonBits(precision));
+    }
+
+    public static long latIndex(double lat, int precision) {
+        return index(lat + 90, 180, latBits(precision));
+    }
+
+    private static long index(double offset, double span, int bits) {
+        long cells = 1L << bits;
+        long index = (long) Math.floor(offset / span * cells);
+        return Math.max(0, Math.min(cells - 1, index));
+    }
+
+    // Bits do mais significativo ao menos: lon, lat, lon, lat, ...
+    public static long interleave(long lonIndex, long latIndex, int precision) {
+        int lonBits = lonBits(precision);
+        int shift = lonBits - latBits(precision); // 1 em precisões ímpares: a longitude tem um bit a mais
+        long cell = 0;
+        for (int i = lonBits - 1; i >= 0; i--) {
+            cell = cell << 1 | (lonIndex >>> i & 1);
+            if (i - shift >= 0) {
+                cell = cell << 1 | (latIndex >>> (i - shift) & 1);
+            }
+        }
+        return cell;
+    }
+
+    public static long parent(long cell, int precision, int parentPrecision) {
+        return cell >>> 5 * (precision - parentPrecision);
+    }
+
+    // Coluna e linha de uma célula, desfazendo a intercalação
+    public static long cellLonIndex(long cell, int precision) {
+        return deinterleave(cell, precision, 0);
+    }
+
+    public static long cellLatIndex(long cell, int precision) {
+        return deinterleave(cell, precision, 1);
+    }
+
+    private static long deinterleave(long cell, int precision, int parity) {
+        long index = 0;
+        for (int position = parity, bits = 5 * precision; position < bits; position += 2) {
+            index = index << 1 | (cell >>> (bits - 1 - position) & 1);
+        }
+        return index;
+    }
+
+    public static Bounds bounds(long cell, int precision) {
+        double lonSize = 360.0 / (1L << lonBits(precision));
+        double latSize = 180.0 / (1L << latBits(precision));
+        double minLon = -180 + cellLonIndex(cell, precision) * lonSize;
+        double minLat = -90 + cellLatIndex(cell, precision) * latSize;
+        return new Bounds(minLat, minLon, minLat + latSize, minLon + lonSize);
+    }
+
+    public static String toString(long cell, int precision) {
+        char[] chars = new char[precision];
+        for (int i = precision - 1; i >= 0; i--) {
+            chars[i] = BASE32[(int) (cell & 31)];
+            cell >>>= 5;
+        }
+        return new String(chars);
+    }
+}
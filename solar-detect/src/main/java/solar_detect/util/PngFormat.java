@@ -0,0 +1,43 @@
+package solar_detect.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reconhece um PNG pela assinatura de 8 bytes. Serve para separar a imagem
+ * do backend de respostas 200 que não são imagem (ex.: JSON de erro do
+ * FastAPI quando o modelo falha). isComplete também exige o chunk IEND no
+ * fim, o que recusa um corpo truncado antes de ele ir para o store.
+ */
+public final class PngFormat {
+
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    // Tamanho zero, tipo IEND e o CRC fixo do chunk vazio
+    private static final byte[] IEND = { 0, 0, 0, 0, 'I', 'E', 'N', 'D', (byte) 0xAE, 0x42, 0x60, (byte) 0x82 };
+
+    private PngFormat() {
+    }
+
+    public static boolean isPng(byte[] bytes) {
+        return bytes != null && isPng(ByteBuffer.wrap(bytes));
+    }
+
+    public static boolean isPng(ByteBuffer buffer) {
+        if (buffer.remaining() < SIGNATURE.length) {
+            return false;
+        }
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (buffer.get(buffer.position() + i) != SIGNATURE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean isComplete(byte[] bytes, int length) {
+        if (length < SIGNATURE.length + IEND.length || !isPng(ByteBuffer.wrap(bytes, 0, length))) {
+            return false;
+        }
+        return Arrays.equals(bytes, length - IEND.length, length, IEND, 0, IEND.length);
+    }
+}
@@ -0,0 +1,54 @@
+package solar_detect.util;
+
+/**
+ * Projeção Web Mercator usada pelo backend Python (ver latlon_to_pixel em
+ * pyFunctions.py). As contas seguem a mesma ordem de operações para que o
+ * pixel calculado aqui seja o mesmo que o FastAPI usa ao montar o mosaico.
+ */
+public final class WebMercator {
+
+    public static final int TILE_SIZE = 256;
+    public static final int DETECTION_ZOOM = 19;
+    public static final double EARTH_RADIUS_METERS = 6378137.0;
+    public static final double MAX_LATITUDE = 85.05112878; // borda do mapa quadrado; acima disso a escala explode
+
+    private static final double SIN_LIMIT = 0.9999;
+
+    private WebMercator() {
+    }
+
+    public record PixelPoint(long x, long y) {
+    }
+
+    public record LatLon(double lat, double lon) {
+    }
+
+    public static PixelPoint latLonToPixel(double lat, double lon, int zoom) {
+        return new PixelPoint((long) pixelX(lon, zoom), (long) pixelY(lat, zoom));
+    }
+
+    // Coordenadas de pixel sem truncar, para geometria (ex.: polígonos de área)
+    public static double pixelX(double lon, int zoom) {
+        return TILE_SIZE * (0.5 + lon / 360.0) * (double) (1L << zoom);
+    }
+
+    public static double pixelY(double lat, int zoom) {
+        double siny = Math.sin(Math.toRadians(lat));
+        siny = Math.min(Math.max(siny, -SIN_LIMIT), SIN_LIMIT);
+        return TILE_SIZE * (0.5 - Math.log((1 + siny) / (1 - siny)) / (4 * Math.PI)) * (double) (1L << zoom);
+    }
+
+    public static LatLon pixelToLatLon(double px, double py, int zoom) {
+        double worldSize = TILE_SIZE * (double) (1L << zoom);
+        double lon = px / worldSize * 360.0 - 180.0;
+        double n = Math.PI - 2.0 * Math.PI * py / worldSize;
+        double lat = Math.toDegrees(Math.atan(Math.sinh(n)));
+        return new LatLon(lat, lon);
+    }
+
+    // Metros por pixel na latitude informada
+    public static double groundResolution(double lat, int zoom) {
+        return Math.cos(Math.toRadians(lat)) * 2 * Math.PI * EARTH_RADIUS_METERS
+                / (TILE_SIZE * (double) (1L << zoom));
+    }
+}
@@ -0,0 +1,5 @@
+-- Situação da requisição registrada: OK ao cobrar; REFUNDED quando a quota é devolvida porque a
+-- predição não foi entregue. A marcação chega depois, pelo RequestLogWriter, na mesma fila da
+-- inserção. Coluna com default constante: no Postgres 11+ não reescreve as partições.
+ALTER TABLE request_logs ADD COLUMN status VARCHAR(10) NOT NULL DEFAULT 'OK'
+    CHECK (status IN ('OK', 'REFUNDED'));
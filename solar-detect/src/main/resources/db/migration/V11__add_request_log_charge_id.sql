@@ -0,0 +1,5 @@
+-- Identificador da cobrança, gerado na aplicação junto com o registro: a devolução marca
+-- exatamente a linha cobrada, mesmo quando um lote repete o ponto no mesmo instante. Nulo nas
+-- linhas antigas, que não recebem mais devolução. Sem default: não reescreve as partições, e a
+-- busca da devolução continua pelo índice de (user_id, request_time).
+ALTER TABLE request_logs ADD COLUMN charge_id BIGINT;
@@ -0,0 +1,4 @@
+-- Rede de segurança para as partições mensais: se o RequestLogPartitionManager parar e o mês
+-- corrente ficar sem partição, os inserts caem aqui em vez de falhar (e de o writer descartar
+-- o lote depois das tentativas). Na manutenção seguinte as linhas vão para a partição do mês.
+CREATE TABLE request_logs_default PARTITION OF request_logs DEFAULT;
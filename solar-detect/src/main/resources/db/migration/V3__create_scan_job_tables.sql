@@ -0,0 +1,33 @@
+CREATE TABLE scan_jobs (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL CHECK (status IN ('RUNNING', 'COMPLETED', 'CANCELLED')),
+    area TEXT NOT NULL, -- GeoJSON da área solicitada
+    total_tiles INT NOT NULL,
+    completed_tiles INT NOT NULL DEFAULT 0,
+    failed_tiles INT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL,
+    finished_at TIMESTAMP,
+    CONSTRAINT fk_scan_job_user FOREIGN KEY (user_id) REFERENCES users(id)
+);
+
+CREATE INDEX idx_scan_jobs_user ON scan_jobs (user_id, created_at DESC);
+
+-- Um registro por tile de zoom 19 coberto pela área
+CREATE TABLE scan_tiles (
+    id BIGSERIAL PRIMARY KEY,
+    job_id BIGINT NOT NULL,
+    tile_index INT NOT NULL,
+    tile_x BIGINT NOT NULL,
+    tile_y BIGINT NOT NULL,
+    latitude DOUBLE PRECISION NOT NULL,
+    longitude DOUBLE PRECISION NOT NULL,
+    status VARCHAR(20) NOT NULL CHECK (status IN ('PENDING', 'IN_PROGRESS', 'DONE', 'FAILED')),
+    error TEXT,
+    completed_at TIMESTAMP,
+    CONSTRAINT fk_scan_tile_job FOREIGN KEY (job_id) REFERENCES scan_jobs(id) ON DELETE CASCADE,
+    CONSTRAINT uq_scan_tile_index UNIQUE (job_id, tile_index)
+);
+
+-- Só os tiles ainda não processados entram no índice usado pelo worker
+CREATE INDEX idx_scan_tiles_pending ON scan_tiles (id) WHERE status IN ('PENDING', 'IN_PROGRESS');
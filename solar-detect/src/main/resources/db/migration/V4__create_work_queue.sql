@@ -0,0 +1,29 @@
+-- Fila de trabalho compartilhada entre as instâncias, consumida com SELECT ... FOR UPDATE SKIP LOCKED.
+-- available_at faz o papel de timeout de visibilidade: um item RUNNING cujo prazo venceu
+-- (instância caiu no meio do processamento) volta a ser elegível sem nenhum job de limpeza.
+CREATE TABLE work_items (
+    id BIGSERIAL PRIMARY KEY,
+    queue VARCHAR(50) NOT NULL,
+    payload TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING' CHECK (status IN ('PENDING', 'RUNNING', 'FAILED')),
+    attempts INT NOT NULL DEFAULT 0,
+    available_at TIMESTAMP NOT NULL DEFAULT now(),
+    locked_by VARCHAR(100),
+    last_error TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_work_items_claim ON work_items (queue, available_at) WHERE status IN ('PENDING', 'RUNNING');
+
+-- Os tiles de varredura passam a ser distribuídos pela fila; IN_PROGRESS deixa de existir
+UPDATE scan_tiles SET status = 'PENDING' WHERE status = 'IN_PROGRESS';
+ALTER TABLE scan_tiles DROP CONSTRAINT scan_tiles_status_check;
+ALTER TABLE scan_tiles ADD CONSTRAINT scan_tiles_status_check CHECK (status IN ('PENDING', 'DONE', 'FAILED'));
+DROP INDEX idx_scan_tiles_pending;
+
+INSERT INTO work_items (queue, payload)
+SELECT 'scan-tile', t.id::text
+FROM scan_tiles t
+JOIN scan_jobs j ON j.id = t.job_id
+WHERE t.status = 'PENDING' AND j.status = 'RUNNING'
+ORDER BY t.id;
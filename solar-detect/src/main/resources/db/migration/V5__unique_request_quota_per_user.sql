@@ -0,0 +1,7 @@
+-- Uma linha de quota por usuário: o consumo passa a ser um único upsert em request_quotas.
+-- Versões antigas podiam criar linhas duplicadas na primeira requisição concorrente; fica a mais recente.
+DELETE FROM request_quotas old
+USING request_quotas newer
+WHERE old.user_id = newer.user_id AND old.id < newer.id;
+
+CREATE UNIQUE INDEX ux_request_quotas_user ON request_quotas (user_id);
@@ -0,0 +1,38 @@
+-- request_logs passa a ser particionada por mês em request_time. Partições antigas saem
+-- inteiras (DROP/DETACH) pelo RequestLogPartitionManager, sem DELETE em massa, e as futuras
+-- são criadas por ele com antecedência. A chave primária precisa incluir a coluna de partição.
+ALTER TABLE request_logs RENAME TO request_logs_legacy;
+
+CREATE TABLE request_logs (
+    id BIGINT NOT NULL DEFAULT nextval('request_logs_id_seq'),
+    user_id BIGINT NOT NULL,
+    request_time TIMESTAMP NOT NULL,
+    latitude FLOAT NOT NULL,
+    longitude FLOAT NOT NULL,
+    PRIMARY KEY (id, request_time),
+    CONSTRAINT fk_user FOREIGN KEY (user_id) REFERENCES users(id)
+) PARTITION BY RANGE (request_time);
+
+-- Criado no pai, o índice é replicado em cada partição
+CREATE INDEX idx_request_logs_user_time ON request_logs (user_id, request_time);
+
+-- Uma partição por mês, do registro mais antigo até dois meses à frente
+DO $$
+DECLARE
+    part_start DATE := date_trunc('month', COALESCE((SELECT min(request_time) FROM request_logs_legacy), now()))::date;
+    last_start DATE := (date_trunc('month', now()) + interval '2 months')::date;
+BEGIN
+    WHILE part_start <= last_start LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF request_logs FOR VALUES FROM (%L) TO (%L)',
+                'request_logs_p' || to_char(part_start, 'YYYYMM'), part_start,
+                (part_start + interval '1 month')::date);
+        part_start := (part_start + interval '1 month')::date;
+    END LOOP;
+END $$;
+
+INSERT INTO request_logs (id, user_id, request_time, latitude, longitude)
+SELECT id, user_id, request_time, latitude, longitude FROM request_logs_legacy;
+
+-- A sequência continua de onde estava e passa a pertencer à nova tabela
+ALTER SEQUENCE request_logs_id_seq OWNED BY request_logs.id;
+DROP TABLE request_logs_legacy;
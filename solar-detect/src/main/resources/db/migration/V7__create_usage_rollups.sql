@@ -0,0 +1,17 @@
+-- Uso agregado por usuário, hora e papel, mantido incrementalmente pelo UsageRollupService.
+-- Relatórios leem só daqui; request_logs continua sendo o registro bruto (e tem retenção).
+CREATE TABLE usage_rollups (
+    user_id BIGINT NOT NULL,
+    hour TIMESTAMP NOT NULL,
+    role VARCHAR(20) NOT NULL,
+    requests BIGINT NOT NULL,
+    PRIMARY KEY (user_id, hour, role),
+    CONSTRAINT fk_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+-- Histórico existente, uma única vez; daqui em diante só incrementos
+INSERT INTO usage_rollups (user_id, hour, role, requests)
+SELECT l.user_id, date_trunc('hour', l.request_time), u.user_type, count(*)
+FROM request_logs l
+JOIN users u ON u.id = l.user_id
+GROUP BY 1, 2, 3;
@@ -0,0 +1,35 @@
+-- Contagem de requisições por célula de geohash de 7 caracteres (~150 m), mantida pelo HeatmapGrid.
+-- A célula é o geohash como inteiro de 35 bits (ver util/Geohash); precisões menores são prefixos
+-- dela e são somadas em memória, então só o nível mais fino é persistido.
+CREATE TABLE heatmap_cells (
+    cell BIGINT PRIMARY KEY,
+    requests BIGINT NOT NULL
+);
+
+-- Intercala 18 bits de longitude com 17 de latitude, começando pela longitude
+CREATE FUNCTION pg_temp.geohash7(lon_index BIGINT, lat_index BIGINT) RETURNS BIGINT AS $$
+DECLARE
+    cell BIGINT := 0;
+BEGIN
+    FOR i IN REVERSE 17..0 LOOP
+        cell := (cell << 1) | ((lon_index >> i) & 1);
+        IF i > 0 THEN
+            cell := (cell << 1) | ((lat_index >> (i - 1)) & 1);
+        END IF;
+    END LOOP;
+    RETURN cell;
+END
+$$ LANGUAGE plpgsql IMMUTABLE;
+
+-- Histórico existente, uma única vez: agrupa por índice de coluna/linha antes de intercalar
+INSERT INTO heatmap_cells (cell, requests)
+SELECT pg_temp.geohash7(lon_index, lat_index), requests
+FROM (
+    SELECT GREATEST(0, LEAST(262143, floor((longitude + 180) / 360 * 262144)))::bigint AS lon_index,
+           GREATEST(0, LEAST(131071, floor((latitude + 90) / 180 * 131072)))::bigint AS lat_index,
+           count(*) AS requests
+    FROM request_logs
+    GROUP BY 1, 2
+) grid;
+
+DROP FUNCTION pg_temp.geohash7(BIGINT, BIGINT);
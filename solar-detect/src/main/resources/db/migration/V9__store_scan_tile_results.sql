@@ -0,0 +1,4 @@
+-- Entrada de cache (máscara ou PNG) de cada tile concluído, guardada com o job: a imagem do tile
+-- é servida daqui, sem depender de o cache ainda ter a entrada nem voltar ao backend. Tiles
+-- concluídos antes desta migração ficam sem resultado e respondem 410.
+ALTER TABLE scan_tiles ADD COLUMN result BYTEA;
@@ -0,0 +1,278 @@
+package solar_detect;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.sun.net.httpserver.HttpServer;
+
+import lombok.extern.slf4j.Slf4j;
+import solar_detect.services.requestlog.RequestLogWriter;
+import solar_detect.services.usage.UsageRollupService;
+
+/*
+ * Comparação de vazão com tráfego misto: clientes fazendo predições lentas
+ * sem parar enquanto outros chamam /api/user/profile. O FastAPI é um stub
+ * local que responde um PNG depois de benchmark.backend-delay-ms, e o Tomcat
+ * roda com benchmark.tomcat-threads (50, o cenário em que cinquenta predições
+ * travavam o resto da API). Não roda no mvn test (o nome não termina em
+ * Tests); para medir:
+ *
+ *   mvn test -Dtest=MixedTrafficBenchmark [-Dbenchmark.prediction-clients=100 ...]
+ *
+ * Roda contra o Postgres de SPRING_DATASOURCE_URL, como os demais testes.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"rate-limit.enabled=false",
+		"prediction.bulkhead.max-concurrent=200",
+		"prediction.bulkhead.max-wait=60s"
+})
+@Slf4j
+class MixedTrafficBenchmark {
+
+	private static final int PREDICTION_CLIENTS = Integer.getInteger("benchmark.prediction-clients", 100);
+	private static final int PROFILE_CLIENTS = Integer.getInteger("benchmark.profile-clients", 4);
+	private static final int TOMCAT_THREADS = Integer.getInteger("benchmark.tomcat-threads", 50);
+	private static final Duration BACKEND_DELAY = Duration.ofMillis(Long.getLong("benchmark.backend-delay-ms", 3000));
+	private static final Duration WINDOW = Duration.ofSeconds(Long.getLong("benchmark.duration-seconds", 15));
+	private static final int PREDICTIONS_PER_USER = 9; // quota de COMPANY por janela, menos a do aquecimento
+
+	private static final HttpServer backend = startBackend();
+	private static final List<String> emails = Collections.synchronizedList(new ArrayList<>());
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private RequestLogWriter requestLogWriter;
+
+	@Autowired
+	private UsageRollupService usageRollups;
+
+	private final HttpClient client = HttpClient.newBuilder()
+			.executor(Executors.newVirtualThreadPerTaskExecutor())
+			.connectTimeout(Duration.ofSeconds(10))
+			.build();
+
+	@DynamicPropertySource
+	static void backendProperties(DynamicPropertyRegistry registry) {
+		registry.add("inference.base-url", () -> "http://localhost:" + backend.getAddress().getPort());
+		registry.add("server.tomcat.threads.max", () -> TOMCAT_THREADS);
+	}
+
+	@AfterAll
+	static void stopBackend() {
+		backend.stop(0);
+	}
+
+	@Test
+	void slowPredictionsDoNotStallProfileRequests() throws Exception {
+		// Predições que cabem na janela com folga; cada usuário tem quota para PREDICTIONS_PER_USER
+		long capacity = PREDICTION_CLIENTS * (WINDOW.toMillis() / BACKEND_DELAY.toMillis() + 2);
+		List<String> tokens = new ArrayList<>();
+		for (int i = 0; i < (capacity + PREDICTIONS_PER_USER - 1) / PREDICTIONS_PER_USER; i++) {
+			tokens.add(register());
+		}
+		String profileToken = register();
+		for (int i = 0; i < 50; i++) {
+			profile(profileToken); // aquecimento
+		}
+		// Uma predição por usuário antes da medição: cria a linha de quota sem disputa entre as requisições do mesmo usuário
+		try (ExecutorService warmUp = Executors.newVirtualThreadPerTaskExecutor()) {
+			List<Future<Integer>> first = new ArrayList<>();
+			for (int u = 0; u < tokens.size(); u++) {
+				String token = tokens.get(u);
+				double lat = 10.0 + u * 0.01;
+				first.add(warmUp.submit(() -> predict(token, lat, 10.0)));
+			}
+			for (Future<Integer> prediction : first) {
+				assertThat(prediction.get()).isEqualTo(200);
+			}
+		}
+
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger predictionsOk = new AtomicInteger();
+		Map<Integer, Integer> statuses = new ConcurrentHashMap<>();
+		List<Long> profileLatencies = Collections.synchronizedList(new ArrayList<>());
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			List<Future<?>> clients = new ArrayList<>();
+			for (int c = 0; c < PROFILE_CLIENTS; c++) {
+				clients.add(executor.submit(() -> {
+					while (running.get()) {
+						long started = System.nanoTime();
+						profile(profileToken);
+						if (running.get()) {
+							profileLatencies.add(System.nanoTime() - started);
+						}
+					}
+					return null;
+				}));
+			}
+			for (int c = 0; c < PREDICTION_CLIENTS; c++) {
+				clients.add(executor.submit(() -> {
+					int i;
+					while (running.get() && (i = next.getAndIncrement()) < capacity) {
+						// Pontos a ~1 km um do outro: nenhum cai no mesmo tile do cache nem é agrupado
+						int status = predict(tokens.get(i / PREDICTIONS_PER_USER), -23.0 - i * 0.01, -46.0 - i * 0.01);
+						if (running.get()) {
+							statuses.merge(status, 1, Integer::sum);
+							if (status == 200) {
+								predictionsOk.incrementAndGet();
+							}
+						}
+					}
+					return null;
+				}));
+			}
+
+			Thread.sleep(WINDOW);
+			running.set(false);
+			for (Future<?> client : clients) {
+				client.get();
+			}
+		} finally {
+			cleanUp();
+		}
+
+		double seconds = WINDOW.toMillis() / 1000.0;
+		List<Long> latencies = new ArrayList<>(profileLatencies);
+		Collections.sort(latencies);
+		log.info(String.format(Locale.US, "=== %d clientes de predição (backend %d ms) + %d de /api/user/profile, Tomcat %d threads, %.0f s ===",
+				PREDICTION_CLIENTS, BACKEND_DELAY.toMillis(), PROFILE_CLIENTS, TOMCAT_THREADS, seconds));
+		log.info(String.format(Locale.US, "predições: %d ok (%.1f/s), status %s", predictionsOk.get(),
+				predictionsOk.get() / seconds, new TreeMap<>(statuses)));
+		log.info(String.format(Locale.US, "profile:   %d requisições (%.1f/s), p50 %.1f ms, p99 %.1f ms, máx %.1f ms",
+				latencies.size(), latencies.size() / seconds, percentile(latencies, 0.50),
+				percentile(latencies, 0.99), percentile(latencies, 1.0)));
+		assertThat(statuses.keySet()).containsOnly(200);
+	}
+
+	private int predict(String token, double lat, double lon) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(String.format(Locale.US,
+				"http://localhost:%d/api/predict?lat=%.6f&lon=%.6f", port, lat, lon)))
+				.header("Authorization", "Bearer " + token)
+				.timeout(Duration.ofMinutes(5))
+				.build();
+		return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	private void profile(String token) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/user/profile"))
+				.header("Authorization", "Bearer " + token)
+				.timeout(Duration.ofMinutes(5))
+				.build();
+		HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+		assertThat(response.statusCode()).isEqualTo(200);
+	}
+
+	private String register() throws IOException, InterruptedException {
+		String id = UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+		String email = "bench-" + id + "@example.com";
+		String body = """
+				{"name":"Benchmark","email":"%s","password":"benchmark123","documentNumber":"%s","userType":"COMPANY"}
+				""".formatted(email, id);
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/auth/register"))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(body))
+				.build();
+		HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+		assertThat(response.statusCode()).isEqualTo(200);
+		emails.add(email);
+		Matcher token = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"").matcher(response.body());
+		assertThat(token.find()).isTrue();
+		return token.group(1);
+	}
+
+	private void cleanUp() throws InterruptedException {
+		// request_logs e rollups chegam ao banco depois da resposta; apagar antes deixaria linhas órfãs
+		long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+		while (requestLogWriter.pending() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(50);
+		}
+		assertThat(requestLogWriter.pending()).isZero();
+		usageRollups.scheduledFlush();
+		for (String email : emails) {
+			Long userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE email = ?", Long.class, email);
+			jdbcTemplate.update("DELETE FROM request_logs WHERE user_id = ?", userId);
+			jdbcTemplate.update("DELETE FROM request_quotas WHERE user_id = ?", userId);
+			jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+		}
+		emails.clear();
+	}
+
+	private static double percentile(List<Long> sorted, double p) {
+		if (sorted.isEmpty()) {
+			return 0;
+		}
+		int index = (int) Math.ceil(p * sorted.size()) - 1;
+		return sorted.get(Math.max(0, index)) / 1e6;
+	}
+
+	// FastAPI de mentira: cada /predict dorme o tempo de inferência e devolve o mesmo PNG
+	private static HttpServer startBackend() {
+		try {
+			BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+			ByteArrayOutputStream png = new ByteArrayOutputStream();
+			ImageIO.write(image, "png", png);
+			byte[] body = png.toByteArray();
+
+			HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+			server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+			server.createContext("/", exchange -> {
+				try {
+					Thread.sleep(BACKEND_DELAY);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				exchange.getResponseHeaders().add("Content-Type", "image/png");
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			});
+			server.start();
+			return server;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
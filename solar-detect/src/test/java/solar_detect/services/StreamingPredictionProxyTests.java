@@ -0,0 +1,155 @@
+package solar_detect.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import solar_detect.config.DetectionIndexProperties;
+import solar_detect.config.InferenceProperties;
+import solar_detect.config.PredictionProperties;
+import solar_detect.exceptions.InferenceUnavailableException;
+import solar_detect.services.cache.PredictionStore;
+import solar_detect.services.cache.TileKey;
+import solar_detect.services.inference.InferenceBulkhead;
+import solar_detect.services.inference.InferenceCircuitBreaker;
+import solar_detect.services.inference.InferenceClient;
+import solar_detect.services.inference.InferenceLoadBalancer;
+import solar_detect.services.spatial.DetectionIndex;
+
+class StreamingPredictionProxyTests {
+
+	private enum Reply {
+		PNG, TRUNCATED, NOT_PNG
+	}
+
+	private static final TileKey KEY = new TileKey(19, 1024, 2048);
+
+	@TempDir
+	Path directory;
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private volatile Reply reply = Reply.PNG;
+	private byte[] png;
+	private HttpServer backend;
+	private InferenceClient client;
+	private PredictionStore store;
+	private StreamingPredictionProxy proxy;
+
+	@BeforeEach
+	void start() throws IOException {
+		BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", encoded);
+		png = encoded.toByteArray();
+
+		backend = HttpServer.create(new InetSocketAddress("localhost", 0), 16);
+		backend.createContext("/", exchange -> {
+			exchange.getResponseHeaders().add("Content-Type", "image/png");
+			byte[] body = reply == Reply.NOT_PNG ? "{\"error\":\"model\"}".getBytes() : png;
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream out = exchange.getResponseBody();
+			if (reply == Reply.TRUNCATED) {
+				// Metade do corpo anunciado e a conexão cai
+				out.write(body, 0, body.length / 2);
+				out.flush();
+				exchange.getHttpContext().getServer().stop(0);
+				return;
+			}
+			out.write(body);
+			out.close();
+		});
+		backend.start();
+
+		InferenceProperties inference = new InferenceProperties();
+		inference.setBaseUrl("http://localhost:" + backend.getAddress().getPort());
+		inference.getHealthCheck().setEnabled(false);
+		PredictionProperties prediction = new PredictionProperties();
+		prediction.getStore().setDirectory(directory.toString());
+		client = new InferenceClient(inference, new InferenceLoadBalancer(inference, registry), registry);
+		store = new PredictionStore(prediction, registry);
+		store.open();
+		proxy = new StreamingPredictionProxy(client, new InferenceBulkhead(prediction, registry),
+				new InferenceCircuitBreaker(inference, registry), store,
+				new DetectionIndex(new DetectionIndexProperties(), prediction, null, null, registry), prediction,
+				registry);
+	}
+
+	@AfterEach
+	void stop() throws IOException {
+		backend.stop(0);
+		client.destroy();
+		store.destroy();
+	}
+
+	@Test
+	void completePngIsStreamedAndStored() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		proxy.proxy(KEY, 0, 0).writeTo(out, length -> { });
+
+		assertThat(out.toByteArray()).isEqualTo(png);
+		assertThat(store.contains(KEY)).isTrue();
+		assertThat(endpointErrors()).isZero();
+	}
+
+	@Test
+	void upstreamFailureMidBodyIsAnInferenceFailure() {
+		reply = Reply.TRUNCATED;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertThatThrownBy(() -> proxy.proxy(KEY, 0, 0).writeTo(out, length -> { }))
+				.isInstanceOf(InferenceUnavailableException.class);
+		assertThat(store.contains(KEY)).isFalse();
+		assertThat(endpointErrors()).isEqualTo(1);
+	}
+
+	@Test
+	void bodyThatIsNotAPngIsNeverStored() {
+		reply = Reply.NOT_PNG;
+
+		assertThatThrownBy(() -> proxy.proxy(KEY, 0, 0).writeTo(new ByteArrayOutputStream(), length -> { }))
+				.isInstanceOf(InferenceUnavailableException.class);
+		assertThat(store.contains(KEY)).isFalse();
+		assertThat(endpointErrors()).isEqualTo(1);
+	}
+
+	@Test
+	void clientWriteFailureDoesNotCountAgainstTheBackend() {
+		OutputStream brokenClient = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("cliente desconectou");
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				throw new IOException("cliente desconectou");
+			}
+		};
+
+		assertThatThrownBy(() -> proxy.proxy(KEY, 0, 0).writeTo(brokenClient, length -> { }))
+				.isInstanceOf(IOException.class)
+				.isNotInstanceOf(InferenceUnavailableException.class);
+		assertThat(endpointErrors()).isZero();
+		assertThat(store.contains(KEY)).isFalse();
+	}
+
+	private double endpointErrors() {
+		return registry.get("inference.endpoint.errors").counter().count();
+	}
+}
@@ -0,0 +1,77 @@
+package solar_detect.services.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PredictionCoalescerTests {
+
+	private final PredictionCoalescer coalescer = new PredictionCoalescer(new SimpleMeterRegistry());
+	private final TileKey key = new TileKey(19, 10, 20);
+
+	@Test
+	void errorInLeaderReleasesFollowersAndTheKey() throws Exception {
+		CountDownLatch leaderStarted = new CountDownLatch(1);
+		CountDownLatch followerWaiting = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<StoredPrediction> leader = executor.submit(() -> coalescer.load(key, () -> {
+				leaderStarted.countDown();
+				await(followerWaiting);
+				throw new OutOfMemoryError("simulado");
+			}));
+			assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+			Future<StoredPrediction> follower = executor.submit(() -> {
+				followerWaiting.countDown();
+				return coalescer.load(key, () -> StoredPrediction.of(new byte[] { 1 }));
+			});
+
+			assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(OutOfMemoryError.class);
+			// O seguidor pode ter entrado antes ou depois do fim do líder; nos dois casos não pode travar
+			try {
+				assertThat(follower.get(5, TimeUnit.SECONDS).payload().get(0)).isEqualTo((byte) 1);
+			} catch (ExecutionException e) {
+				assertThat(e.getCause()).isInstanceOf(OutOfMemoryError.class);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// A chave não fica presa: a próxima chamada vira líder de novo
+		assertThat(coalescer.load(key, () -> StoredPrediction.of(new byte[] { 2 })).payload().get(0))
+				.isEqualTo((byte) 2);
+	}
+
+	@Test
+	void sneakyCheckedExceptionCompletesTheFlight() {
+		assertThatThrownBy(() -> coalescer.load(key, () -> sneakyThrow(new IOException("falha"))))
+				.isInstanceOf(IOException.class);
+		assertThat(coalescer.load(key, () -> StoredPrediction.of(new byte[] { 3 })).payload().get(0))
+				.isEqualTo((byte) 3);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+			Thread.sleep(50); // dá tempo do seguidor chegar ao putIfAbsent
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends Throwable> StoredPrediction sneakyThrow(Throwable e) throws T {
+		throw (T) e;
+	}
+}
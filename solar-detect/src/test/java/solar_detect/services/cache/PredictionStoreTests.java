@@ -0,0 +1,146 @@
+package solar_detect.services.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import solar_detect.config.PredictionProperties;
+
+class PredictionStoreTests {
+
+	private static final int PAYLOAD_BYTES = 200;
+	// Quatro registros de 240 bytes por segmento
+	private static final DataSize SEGMENT_SIZE = DataSize.ofBytes(1024);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void reopeningKeepsValidRecordsAndTruncatesTheTornTail() throws IOException {
+		PredictionStore crashed = open();
+		for (int i = 0; i < 3; i++) {
+			crashed.put(key(i), payload(i, 0), null);
+		}
+		// Sem destroy: o segmento ativo fica com o tamanho cheio, como depois de uma queda
+		FileRegion last = crashed.get(key(2)).region();
+		try (FileChannel channel = FileChannel.open(last.path(), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 42 }), last.offset() + 10);
+		}
+
+		PredictionStore reopened = open();
+		try {
+			assertThat(reopened.size()).isEqualTo(2);
+			assertThat(bytes(reopened.get(key(0)))).isEqualTo(payload(0, 0));
+			assertThat(bytes(reopened.get(key(1)))).isEqualTo(payload(1, 0));
+			assertThat(reopened.get(key(2))).isNull();
+			assertThat(Files.size(last.path())).isEqualTo(last.offset() - PredictionStore.HEADER_BYTES);
+		} finally {
+			reopened.destroy();
+		}
+	}
+
+	@Test
+	void fullSegmentsRollOverAndAreRecoveredInOrder() throws IOException {
+		PredictionStore store = open();
+		for (int i = 0; i < 10; i++) {
+			store.put(key(i), payload(i, 0), null);
+		}
+		// Uma chave regravada depois da virada: a versão mais nova vence na reconstrução
+		store.put(key(0), payload(0, 1), null);
+		assertThat(segmentFiles()).hasSize(3);
+		store.destroy();
+
+		PredictionStore reopened = open();
+		try {
+			assertThat(reopened.size()).isEqualTo(10);
+			assertThat(bytes(reopened.get(key(0)))).isEqualTo(payload(0, 1));
+			for (int i = 1; i < 10; i++) {
+				assertThat(bytes(reopened.get(key(i)))).isEqualTo(payload(i, 0));
+			}
+		} finally {
+			reopened.destroy();
+		}
+	}
+
+	@Test
+	void compactionMovesLiveRecordsAndDeletesTheSegmentAfterward() throws IOException {
+		PredictionStore store = open();
+		for (int i = 0; i < 4; i++) {
+			store.put(key(i), payload(i, 0), null);
+		}
+		FileRegion first = store.get(key(3)).region();
+		// Três de quatro registros do primeiro segmento ficam mortos
+		for (int i = 0; i < 3; i++) {
+			store.put(key(i), payload(i, 1), null);
+		}
+		long before = store.diskBytes();
+
+		store.compact();
+
+		assertThat(store.diskBytes()).isLessThan(before);
+		FileRegion moved = store.get(key(3)).region();
+		assertThat(moved.path()).isNotEqualTo(first.path());
+		assertThat(read(moved)).isEqualTo(payload(3, 0));
+		for (int i = 0; i < 3; i++) {
+			assertThat(read(store.get(key(i)).region())).isEqualTo(payload(i, 1));
+		}
+		// Quem recebeu a região antiga para sendfile ainda encontra o arquivo
+		assertThat(read(first)).isEqualTo(payload(3, 0));
+
+		store.destroy();
+		assertThat(first.path()).doesNotExist();
+	}
+
+	private PredictionStore open() throws IOException {
+		PredictionProperties properties = new PredictionProperties();
+		properties.getStore().setDirectory(directory.toString());
+		properties.getStore().setSegmentSize(SEGMENT_SIZE);
+		PredictionStore store = new PredictionStore(properties, new SimpleMeterRegistry());
+		store.open();
+		return store;
+	}
+
+	private List<Path> segmentFiles() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().startsWith("segment-")).toList();
+		}
+	}
+
+	private static TileKey key(int i) {
+		return new TileKey(19, i * 16L, 32L);
+	}
+
+	private static byte[] payload(int i, int version) {
+		byte[] payload = new byte[PAYLOAD_BYTES];
+		Arrays.fill(payload, (byte) (i * 7 + version));
+		return payload;
+	}
+
+	private static byte[] bytes(StoredPrediction stored) {
+		ByteBuffer payload = stored.payload().duplicate();
+		byte[] bytes = new byte[payload.remaining()];
+		payload.get(bytes);
+		return bytes;
+	}
+
+	private static byte[] read(FileRegion region) throws IOException {
+		try (FileChannel channel = FileChannel.open(region.path(), StandardOpenOption.READ)) {
+			ByteBuffer bytes = ByteBuffer.allocate((int) region.length());
+			channel.read(bytes, region.offset());
+			return bytes.array();
+		}
+	}
+}
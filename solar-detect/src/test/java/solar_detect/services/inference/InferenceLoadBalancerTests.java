@@ -0,0 +1,52 @@
+package solar_detect.services.inference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import solar_detect.config.InferenceProperties;
+
+class InferenceLoadBalancerTests {
+
+	@Test
+	void ejectedEndpointIsReinstatedByProbesWithoutHealthChecks() throws Exception {
+		InferenceLoadBalancer balancer = balancer(Duration.ofMillis(100));
+		InferenceEndpoint broken = balancer.endpoints().get(0);
+		InferenceEndpoint other = balancer.endpoints().get(1);
+
+		broken.onFailure(broken.begin());
+		broken.onFailure(broken.begin());
+		assertThat(broken.isHealthy()).isFalse();
+		for (int i = 0; i < 10; i++) {
+			assertThat(balancer.choose()).isSameAs(other);
+		}
+
+		// Depois do cool-down uma chamada vai para a ejetada; falhando, o cool-down recomeça
+		Thread.sleep(150);
+		assertThat(balancer.choose()).isSameAs(broken);
+		assertThat(balancer.choose()).isSameAs(other);
+		broken.onFailure(broken.begin());
+		assertThat(balancer.choose()).isSameAs(other);
+
+		// Dois testes bem-sucedidos seguidos (healthy-threshold) a reintegram
+		Thread.sleep(150);
+		assertThat(balancer.choose()).isSameAs(broken);
+		broken.onSuccess(broken.begin());
+		assertThat(broken.isHealthy()).isFalse();
+		assertThat(balancer.choose()).isSameAs(broken);
+		broken.onSuccess(broken.begin());
+		assertThat(broken.isHealthy()).isTrue();
+	}
+
+	private static InferenceLoadBalancer balancer(Duration cooldown) {
+		InferenceProperties properties = new InferenceProperties();
+		properties.setEndpoints(List.of("http://a:8000", "http://b:8000"));
+		properties.getHealthCheck().setEnabled(false);
+		properties.getHealthCheck().setEjectionCooldown(cooldown);
+		return new InferenceLoadBalancer(properties, new SimpleMeterRegistry());
+	}
+}
@@ -0,0 +1,116 @@
+package solar_detect.services.queue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Roda contra o Postgres configurado em SPRING_DATASOURCE_URL (ex.: o do docker-compose local)
+@SpringBootTest(properties = {
+		"work-queue.enabled=false",
+		"work-queue.visibility-timeout=300ms",
+		"work-queue.max-attempts=2",
+		"work-queue.backoff-initial=200ms",
+		"work-queue.backoff-max=200ms"
+})
+class WorkQueueTests {
+
+	@Autowired
+	private WorkQueue workQueue;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private final String queue = "test-" + UUID.randomUUID();
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM work_items WHERE queue = ?", queue);
+	}
+
+	@Test
+	void concurrentWorkersNeverClaimTheSameItem() throws Exception {
+		int items = 500;
+		workQueue.enqueue(queue, IntStream.range(0, items).mapToObj(String::valueOf).toList());
+
+		Set<Long> claimed = ConcurrentHashMap.newKeySet();
+		AtomicInteger duplicates = new AtomicInteger();
+		ExecutorService workers = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int w = 0; w < 8; w++) {
+				String node = "node-" + w;
+				futures.add(workers.submit(() -> {
+					List<WorkItem> batch;
+					while (!(batch = workQueue.claim(queue, node, 10)).isEmpty()) {
+						for (WorkItem item : batch) {
+							if (!claimed.add(item.id())) {
+								duplicates.incrementAndGet();
+							}
+							assertThat(workQueue.complete(item)).isTrue();
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			workers.shutdownNow();
+		}
+
+		assertThat(duplicates.get()).isZero();
+		assertThat(claimed).hasSize(items);
+		assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM work_items WHERE queue = ?", Long.class, queue))
+				.isZero();
+	}
+
+	@Test
+	void expiredItemIsReclaimedAndStaleOwnerIsIgnored() throws Exception {
+		workQueue.enqueue(queue, List.of("payload"));
+
+		WorkItem first = workQueue.claim(queue, "node-a", 1).get(0);
+		assertThat(workQueue.claim(queue, "node-b", 1)).isEmpty();
+
+		Thread.sleep(500);
+		WorkItem second = workQueue.claim(queue, "node-b", 1).get(0);
+		assertThat(second.id()).isEqualTo(first.id());
+		assertThat(second.attempts()).isEqualTo(2);
+
+		assertThat(workQueue.complete(first)).isFalse();
+		assertThat(workQueue.complete(second)).isTrue();
+	}
+
+	@Test
+	void failedItemIsRetriedAfterBackoffThenDeadLettered() throws Exception {
+		workQueue.enqueue(queue, List.of("payload"));
+
+		WorkItem first = workQueue.claim(queue, "node-a", 1).get(0);
+		assertThat(workQueue.fail(first, "boom")).isFalse();
+		assertThat(workQueue.claim(queue, "node-a", 1)).isEmpty();
+
+		Thread.sleep(300);
+		WorkItem retry = workQueue.claim(queue, "node-a", 1).get(0);
+		assertThat(retry.attempts()).isEqualTo(2);
+		assertThat(workQueue.fail(retry, "boom again")).isTrue();
+
+		Thread.sleep(300);
+		assertThat(workQueue.claim(queue, "node-a", 1)).isEmpty();
+		assertThat(jdbcTemplate.queryForObject("SELECT status FROM work_items WHERE id = ?", String.class, retry.id()))
+				.isEqualTo("FAILED");
+	}
+}
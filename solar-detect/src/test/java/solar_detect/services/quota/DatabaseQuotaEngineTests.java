@@ -0,0 +1,187 @@
+package solar_detect.services.quota;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import solar_detect.exceptions.QuotaExceededException;
+import solar_detect.models.RequestQuota;
+import solar_detect.models.User;
+import solar_detect.repository.RequestQuotaRepository;
+
+// Roda contra o Postgres configurado em SPRING_DATASOURCE_URL (ex.: o do docker-compose local)
+@SpringBootTest(properties = {
+		"quota.mode=database",
+		"work-queue.enabled=false",
+		"prefetch.enabled=false",
+		"detection-index.enabled=false"
+})
+class DatabaseQuotaEngineTests {
+
+	// Conta os comandos preparados pela thread do teste, o que equivale às idas ao banco
+	@TestConfiguration
+	static class StatementCounting {
+
+		static final AtomicInteger statements = new AtomicInteger();
+		static volatile Thread counted;
+
+		@Bean
+		static BeanPostProcessor countingDataSource() {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessAfterInitialization(Object bean, String beanName) {
+					return bean instanceof DataSource dataSource ? proxy(DataSource.class, dataSource) : bean;
+				}
+			};
+		}
+
+		private static <T> T proxy(Class<T> type, T target) {
+			return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+					(proxy, method, args) -> {
+						if (method.getName().startsWith("prepare") && Thread.currentThread() == counted) {
+							statements.incrementAndGet();
+						}
+						try {
+							Object result = method.invoke(target, args);
+							if (result instanceof Connection connection) {
+								return proxy(Connection.class, connection);
+							}
+							return result;
+						} catch (InvocationTargetException e) {
+							throw e.getCause();
+						}
+					}));
+		}
+	}
+
+	@Autowired
+	private DatabaseQuotaEngine engine;
+
+	@Autowired
+	private RequestQuotaRepository quotaRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private QuotaTestFixture fixture;
+
+	@BeforeEach
+	void countThisThread() {
+		fixture = new QuotaTestFixture(jdbcTemplate);
+		StatementCounting.counted = Thread.currentThread();
+	}
+
+	@AfterEach
+	void cleanUp() {
+		StatementCounting.counted = null;
+		fixture.cleanUp();
+	}
+
+	@Test
+	void concurrentRequestsNeverOverConsume() throws Exception {
+		User user = fixture.createUser(User.UserType.COMPANY);
+		AtomicInteger granted = new AtomicInteger();
+		AtomicInteger refused = new AtomicInteger();
+
+		QuotaTestFixture.runConcurrently(32, 10, () -> {
+			try {
+				engine.consume(user, 1);
+				granted.incrementAndGet();
+			} catch (QuotaExceededException e) {
+				refused.incrementAndGet();
+			}
+		});
+
+		assertThat(granted.get()).isEqualTo(10);
+		assertThat(refused.get()).isEqualTo(32 * 10 - 10);
+		assertThat(engine.state(user).remainingRequests()).isZero();
+		// A primeira requisição de todas as threads criou uma única linha
+		assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM request_quotas WHERE user_id = ?", Long.class,
+				user.getId())).isEqualTo(1);
+	}
+
+	@Test
+	void concurrentBatchesAreAllOrNothing() throws Exception {
+		User user = fixture.createUser(User.UserType.COMPANY);
+		AtomicInteger granted = new AtomicInteger();
+
+		QuotaTestFixture.runConcurrently(16, 2, () -> {
+			try {
+				engine.consume(user, 3);
+				granted.incrementAndGet();
+			} catch (QuotaExceededException e) {
+				// lote recusado inteiro
+			}
+		});
+
+		assertThat(granted.get()).isEqualTo(3);
+		assertThat(engine.state(user).remainingRequests()).isEqualTo(1);
+	}
+
+	@Test
+	void expiredWindowIsRefilledByTheSameStatement() {
+		User user = fixture.createUser(User.UserType.STUDENT);
+		jdbcTemplate.update("INSERT INTO request_quotas (user_id, remaining_requests, last_reset_time) VALUES (?, 0, ?)",
+				user.getId(), Timestamp.valueOf(LocalDateTime.now().minusMinutes(6)));
+
+		engine.consume(user, 1);
+
+		assertThat(engine.state(user).remainingRequests()).isEqualTo(2);
+		engine.consume(user, 2);
+		assertThatThrownBy(() -> engine.consume(user, 1)).isInstanceOf(QuotaExceededException.class);
+
+		engine.refund(user, 5);
+		assertThat(engine.state(user).remainingRequests()).isEqualTo(3);
+	}
+
+	@Test
+	void consumeTakesOneRoundTripAgainstTwoForReadModifyWrite() {
+		User user = fixture.createUser(User.UserType.COMPANY);
+		StatementCounting.statements.set(0);
+		for (int i = 0; i < 5; i++) {
+			engine.consume(user, 1);
+		}
+		int upsert = StatementCounting.statements.get();
+
+		// O caminho anterior: findByUser, altera na JVM, save na mesma transação
+		User other = fixture.createUser(User.UserType.COMPANY);
+		quotaRepository.save(RequestQuota.builder().user(other).remainingRequests(10)
+				.lastResetTime(LocalDateTime.now()).build());
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		StatementCounting.statements.set(0);
+		for (int i = 0; i < 5; i++) {
+			transaction.executeWithoutResult(status -> {
+				RequestQuota quota = quotaRepository.findByUser(other).orElseThrow();
+				quota.setRemainingRequests(quota.getRemainingRequests() - 1);
+				quotaRepository.save(quota);
+			});
+		}
+		int readModifyWrite = StatementCounting.statements.get();
+
+		assertThat(upsert).isEqualTo(5);
+		assertThat(readModifyWrite).isGreaterThanOrEqualTo(10);
+	}
+}
@@ -0,0 +1,135 @@
+package solar_detect.services.quota;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import solar_detect.config.QuotaProperties;
+import solar_detect.exceptions.QuotaExceededException;
+import solar_detect.models.User;
+
+// Várias instâncias da engine no mesmo processo fazem o papel de réplicas da API sobre o mesmo Postgres
+@SpringBootTest(properties = {
+		"work-queue.enabled=false",
+		"prefetch.enabled=false",
+		"detection-index.enabled=false"
+})
+class LeaseQuotaEngineTests {
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private QuotaTestFixture fixture;
+
+	@BeforeEach
+	void createFixture() {
+		fixture = new QuotaTestFixture(jdbcTemplate);
+	}
+
+	@AfterEach
+	void cleanUp() {
+		fixture.cleanUp();
+	}
+
+	@Test
+	void globalLimitHoldsAcrossNodes() throws Exception {
+		User user = fixture.createUser(User.UserType.COMPANY);
+		List<LeaseQuotaEngine> nodes = nodes(4, properties(Duration.ofSeconds(30), 1, 10));
+		AtomicInteger granted = new AtomicInteger();
+
+		QuotaTestFixture.runConcurrently(32, 10, () -> {
+			LeaseQuotaEngine node = nodes.get(ThreadLocalRandom.current().nextInt(nodes.size()));
+			try {
+				node.consume(user, 1);
+				granted.incrementAndGet();
+			} catch (QuotaExceededException e) {
+				// sem saldo neste nó
+			}
+		});
+		assertThat(granted.get()).isLessThanOrEqualTo(10);
+
+		// Desligando, as sobras alugadas voltam para a linha e a soma fecha com a capacidade
+		nodes.forEach(LeaseQuotaEngine::shutdown);
+		assertThat(remaining(user) + granted.get()).isEqualTo(10);
+
+		LeaseQuotaEngine survivor = nodes(1, properties(Duration.ofSeconds(30), 1, 10)).get(0);
+		while (true) {
+			try {
+				survivor.consume(user, 1);
+				granted.incrementAndGet();
+			} catch (QuotaExceededException e) {
+				break;
+			}
+		}
+		assertThat(granted.get()).isEqualTo(10);
+	}
+
+	@Test
+	void expiredLeaseReturnsLeftoversToOtherNodes() throws Exception {
+		User user = fixture.createUser(User.UserType.STUDENT);
+		QuotaProperties properties = properties(Duration.ofMillis(200), 3, 3);
+		LeaseQuotaEngine first = nodes(1, properties).get(0);
+		LeaseQuotaEngine second = nodes(1, properties).get(0);
+
+		first.consume(user, 1);
+		assertThat(remaining(user)).isZero();
+		assertThatThrownBy(() -> second.consume(user, 1)).isInstanceOf(QuotaExceededException.class);
+
+		Thread.sleep(300);
+		first.releaseExpired();
+		assertThat(remaining(user)).isEqualTo(2);
+
+		second.consume(user, 1);
+		second.consume(user, 1);
+		assertThatThrownBy(() -> second.consume(user, 1)).isInstanceOf(QuotaExceededException.class);
+		assertThatThrownBy(() -> first.consume(user, 1)).isInstanceOf(QuotaExceededException.class);
+	}
+
+	@Test
+	void leaseGrowsWithTheRequestRate() {
+		User user = fixture.createUser(User.UserType.COMPANY);
+		LeaseQuotaEngine node = nodes(1, properties(Duration.ofSeconds(30), 1, 8)).get(0);
+
+		// Aluguéis de 1, 2 e 4 tokens cobrem as 7 primeiras requisições em três idas ao banco
+		for (int i = 0; i < 7; i++) {
+			node.consume(user, 1);
+		}
+		assertThat(remaining(user)).isEqualTo(3);
+		node.consume(user, 1);
+		assertThat(remaining(user)).isZero();
+	}
+
+	private static QuotaProperties properties(Duration duration, int minSize, int maxSize) {
+		QuotaProperties properties = new QuotaProperties();
+		properties.setMode(QuotaProperties.Mode.LEASE);
+		properties.getLease().setDuration(duration);
+		properties.getLease().setMinSize(minSize);
+		properties.getLease().setMaxSize(maxSize);
+		return properties;
+	}
+
+	private List<LeaseQuotaEngine> nodes(int count, QuotaProperties properties) {
+		List<LeaseQuotaEngine> nodes = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			nodes.add(new LeaseQuotaEngine(properties, jdbcTemplate));
+		}
+		return nodes;
+	}
+
+	private int remaining(User user) {
+		return jdbcTemplate.queryForObject("SELECT remaining_requests FROM request_quotas WHERE user_id = ?",
+				Integer.class, user.getId());
+	}
+}
@@ -0,0 +1,69 @@
+package solar_detect.services.quota;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import solar_detect.models.User;
+
+// Usuários descartáveis e disparo concorrente compartilhados pelos testes das engines de quota
+class QuotaTestFixture {
+
+	private final JdbcTemplate jdbcTemplate;
+	private final List<Long> users = new ArrayList<>();
+
+	QuotaTestFixture(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	User createUser(User.UserType type) {
+		String unique = UUID.randomUUID().toString();
+		Long id = jdbcTemplate.queryForObject("""
+				INSERT INTO users (email, password, user_type, name, document_number)
+				VALUES (?, 'x', ?, 'quota test', ?) RETURNING id
+				""", Long.class, unique + "@test.local", type.name(), unique.substring(0, 20));
+		users.add(id);
+		User user = new User();
+		user.setId(id);
+		user.setUserType(type);
+		return user;
+	}
+
+	void cleanUp() {
+		for (Long id : users) {
+			jdbcTemplate.update("DELETE FROM request_quotas WHERE user_id = ?", id);
+			jdbcTemplate.update("DELETE FROM users WHERE id = ?", id);
+		}
+		users.clear();
+	}
+
+	// Todas as threads começam juntas para maximizar a disputa pela mesma linha
+	static void runConcurrently(int threads, int callsPerThread, Runnable call) throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < callsPerThread; i++) {
+						call.run();
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package solar_detect.services.render;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import solar_detect.config.PredictionProperties;
+import solar_detect.services.render.MaskVectorizer.Polygon;
+import solar_detect.services.render.MaskVectorizer.Ring;
+
+class MaskVectorizerTests {
+
+	@Test
+	void singleBlobBecomesOneRectangle() {
+		MaskPayload mask = mask(
+				"........",
+				"..###...",
+				"..###...",
+				"........");
+
+		List<Ring> rings = MaskVectorizer.trace(mask);
+
+		assertThat(rings).hasSize(1);
+		Ring ring = rings.get(0);
+		assertThat(ring.isOuter()).isTrue();
+		assertThat(ring.xs()).containsExactly(2, 5, 5, 2);
+		assertThat(ring.ys()).containsExactly(1, 1, 3, 3);
+		assertThat(ring.area2()).isEqualTo(12);
+
+		List<Polygon> polygons = vectorizer(0).polygons(rings);
+		assertThat(polygons).hasSize(1);
+		assertThat(polygons.get(0).holes()).isEmpty();
+		assertThat(polygons.get(0).areaPixels()).isEqualTo(6);
+	}
+
+	@Test
+	void holeIsAttachedToItsOuterRing() throws Exception {
+		MaskPayload mask = mask(
+				".......",
+				".#####.",
+				".#####.",
+				".##.##.",
+				".#####.",
+				".#####.",
+				".......");
+
+		List<Ring> rings = MaskVectorizer.trace(mask);
+		assertThat(rings).hasSize(2);
+		assertThat(rings).filteredOn(Ring::isOuter).singleElement()
+				.satisfies(outer -> assertThat(outer.area2()).isEqualTo(50));
+		assertThat(rings).filteredOn(ring -> !ring.isOuter()).singleElement()
+				.satisfies(hole -> assertThat(hole.area2()).isEqualTo(-2));
+
+		List<Polygon> polygons = vectorizer(0).polygons(rings);
+		assertThat(polygons).hasSize(1);
+		assertThat(polygons.get(0).holes()).hasSize(1);
+		assertThat(polygons.get(0).areaPixels()).isEqualTo(24);
+
+		// No GeoJSON o buraco é o segundo anel do mesmo Polygon, fechado como o externo
+		JsonNode features = new ObjectMapper().readTree(vectorizer(0).toGeoJson(mask, 1000, 2000, 19))
+				.path("features");
+		assertThat(features).hasSize(1);
+		assertThat(features.get(0).path("properties").path("areaPixels").asLong()).isEqualTo(24);
+		JsonNode coordinates = features.get(0).path("geometry").path("coordinates");
+		assertThat(coordinates).hasSize(2);
+		for (JsonNode ring : coordinates) {
+			assertThat(ring.get(0)).isEqualTo(ring.get(ring.size() - 1));
+		}
+	}
+
+	@Test
+	void blobsTouchingTheTileEdgeAreClosedAlongTheBorder() {
+		MaskPayload full = mask(
+				"####",
+				"####",
+				"####");
+		List<Ring> rings = MaskVectorizer.trace(full);
+		assertThat(rings).hasSize(1);
+		assertThat(rings.get(0).xs()).containsExactly(0, 4, 4, 0);
+		assertThat(rings.get(0).ys()).containsExactly(0, 0, 3, 3);
+
+		// Regiões nas bordas opostas; o pixel que só toca a da direita na diagonal vira um polígono à parte
+		MaskPayload edges = mask(
+				"#..##",
+				"#..#.",
+				"#...#");
+		List<Polygon> polygons = vectorizer(0).polygons(MaskVectorizer.trace(edges));
+		assertThat(polygons).hasSize(3);
+		assertThat(polygons).extracting(Polygon::areaPixels).containsExactlyInAnyOrder(3L, 3L, 1L);
+		for (Polygon polygon : polygons) {
+			assertThat(polygon.holes()).isEmpty();
+			assertThat(polygon.outer().xs()).containsAnyOf(0, 5).doesNotContain(-1, 6);
+			assertThat(Arrays.stream(polygon.outer().ys()).max().getAsInt()).isLessThanOrEqualTo(3);
+		}
+	}
+
+	@Test
+	void simplificationDropsStairStepsWithinTolerance() {
+		String[] rows = new String[10];
+		for (int y = 0; y < rows.length; y++) {
+			rows[y] = "#".repeat(y + 1) + ".".repeat(rows.length - y - 1);
+		}
+		Ring staircase = MaskVectorizer.trace(mask(rows)).get(0);
+		assertThat(staircase.size()).isEqualTo(22);
+
+		// Os degraus ficam a ~0.71 px da diagonal: abaixo disso continuam no anel
+		assertThat(vectorizer(0).simplify(staircase).size()).isEqualTo(22);
+		assertThat(vectorizer(0.5).simplify(staircase).size()).isGreaterThan(10);
+
+		Ring simplified = vectorizer(0.75).simplify(staircase);
+		assertThat(simplified.xs()).containsExactly(0, 10, 0);
+		assertThat(simplified.ys()).containsExactly(0, 10, 10);
+		assertThat(simplified.area2()).isEqualTo(staircase.area2());
+	}
+
+	private static MaskVectorizer vectorizer(double tolerance) {
+		PredictionProperties properties = new PredictionProperties();
+		properties.getVector().setSimplifyTolerance(tolerance);
+		return new MaskVectorizer(properties);
+	}
+
+	// '#' é pixel de painel; bits em ordem de linha, mais significativo primeiro, como no payload
+	private static MaskPayload mask(String... rows) {
+		int width = rows[0].length();
+		int height = rows.length;
+		byte[] bits = new byte[(width * height + 7) / 8];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (rows[y].charAt(x) == '#') {
+					int pixel = y * width + x;
+					bits[pixel >>> 3] |= (byte) (0x80 >>> (pixel & 7));
+				}
+			}
+		}
+		return new MaskPayload(width, height, MaskPayload.TILE_RAW_RGB, ByteBuffer.wrap(bits), ByteBuffer.allocate(0));
+	}
+}
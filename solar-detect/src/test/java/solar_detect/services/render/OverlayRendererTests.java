@@ -0,0 +1,132 @@
+package solar_detect.services.render;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import solar_detect.config.PredictionProperties;
+
+/*
+ * Compara o overlay montado aqui com o overlay_mask do Python, que mistura
+ * sobre o tile original. O tile raw reproduz o Python (até o arredondamento
+ * de meio ponto do cv2); o JPEG já chega alterado, inclusive fora da máscara.
+ */
+class OverlayRendererTests {
+
+	private static final int SIZE = 64;
+
+	private final OverlayRenderer renderer = new OverlayRenderer(new PredictionProperties());
+	private final int[] tile = randomPixels(SIZE * SIZE);
+	private final boolean[] mask = leftHalf();
+
+	@AfterEach
+	void close() {
+		renderer.close();
+	}
+
+	@Test
+	void rawTileMatchesThePythonOverlay() throws Exception {
+		int[] rendered = render(MaskPayload.TILE_RAW_RGB, rawTile());
+
+		for (int i = 0; i < tile.length; i++) {
+			assertThat(maxChannelDifference(rendered[i], pythonOverlay(i))).as("pixel %d", i).isLessThanOrEqualTo(1);
+		}
+	}
+
+	@Test
+	void jpegTileChangesPixelsOutsideTheMask() throws Exception {
+		int[] rendered = render(MaskPayload.TILE_JPEG, jpegTile());
+
+		int worst = 0;
+		for (int i = 0; i < tile.length; i++) {
+			if (!mask[i]) {
+				worst = Math.max(worst, maxChannelDifference(rendered[i], tile[i]));
+			}
+		}
+		assertThat(worst).isGreaterThan(1);
+	}
+
+	private int[] render(int encoding, byte[] encodedTile) throws Exception {
+		byte[] png = renderer.render(MaskPayload.parse(payload(encoding, encodedTile)), RenderOptions.DEFAULT);
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+		return image.getRGB(0, 0, SIZE, SIZE, null, 0, SIZE);
+	}
+
+	// cv2.addWeighted(magenta, 0.5, pixel, 0.5, 0) nos pixels da máscara
+	private int pythonOverlay(int i) {
+		if (!mask[i]) {
+			return tile[i];
+		}
+		int rgb = tile[i];
+		int r = (int) Math.rint((0xFF + (rgb >>> 16 & 0xFF)) * 0.5);
+		int g = (int) Math.rint((0x00 + (rgb >>> 8 & 0xFF)) * 0.5);
+		int b = (int) Math.rint((0xFF + (rgb & 0xFF)) * 0.5);
+		return r << 16 | g << 8 | b;
+	}
+
+	// encode_mask_payload: magic | width | height | encoding | reservado | maskLength | mask | tileLength | tile
+	private ByteBuffer payload(int encoding, byte[] encodedTile) {
+		byte[] packed = new byte[(mask.length + 7) / 8];
+		for (int i = 0; i < mask.length; i++) {
+			if (mask[i]) {
+				packed[i >>> 3] |= (byte) (0x80 >>> (i & 7));
+			}
+		}
+		ByteBuffer payload = ByteBuffer.allocate(16 + packed.length + 4 + encodedTile.length);
+		payload.putInt(MaskPayload.MAGIC).putShort((short) SIZE).putShort((short) SIZE).put((byte) encoding)
+				.put(new byte[3]).putInt(packed.length).put(packed).putInt(encodedTile.length).put(encodedTile);
+		return payload.flip();
+	}
+
+	private byte[] rawTile() {
+		byte[] raw = new byte[tile.length * 3];
+		for (int i = 0; i < tile.length; i++) {
+			raw[i * 3] = (byte) (tile[i] >>> 16);
+			raw[i * 3 + 1] = (byte) (tile[i] >>> 8);
+			raw[i * 3 + 2] = (byte) tile[i];
+		}
+		return raw;
+	}
+
+	private byte[] jpegTile() throws Exception {
+		BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, SIZE, SIZE, tile, 0, SIZE);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "jpeg", out);
+		return out.toByteArray();
+	}
+
+	private static boolean[] leftHalf() {
+		boolean[] mask = new boolean[SIZE * SIZE];
+		for (int i = 0; i < mask.length; i++) {
+			mask[i] = i % SIZE < SIZE / 2;
+		}
+		return mask;
+	}
+
+	private static int maxChannelDifference(int a, int b) {
+		int worst = 0;
+		for (int shift = 0; shift <= 16; shift += 8) {
+			worst = Math.max(worst, Math.abs((a >>> shift & 0xFF) - (b >>> shift & 0xFF)));
+		}
+		return worst;
+	}
+
+	private static int[] randomPixels(int count) {
+		Random random = new Random(12);
+		int[] pixels = new int[count];
+		for (int i = 0; i < count; i++) {
+			pixels[i] = random.nextInt(0x1000000);
+		}
+		return pixels;
+	}
+}
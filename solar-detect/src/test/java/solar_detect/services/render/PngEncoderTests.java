@@ -0,0 +1,62 @@
+package solar_detect.services.render;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class PngEncoderTests {
+
+	private final Scratch scratch = new Scratch(Deflater.BEST_SPEED);
+
+	@AfterEach
+	void close() {
+		scratch.close();
+	}
+
+	@Test
+	void imageIoDecodesTheSamePixels() throws Exception {
+		int[] pixels = randomPixels(37, 23, 1);
+
+		assertRoundTrip(pixels, 37, 23);
+	}
+
+	@Test
+	void scratchIsReusedAcrossSizes() throws Exception {
+		// Mesmo scratch em imagens de tamanhos diferentes: nada da anterior pode vazar
+		assertRoundTrip(randomPixels(256, 256, 2), 256, 256);
+		assertRoundTrip(randomPixels(5, 3, 3), 5, 3);
+		assertRoundTrip(new int[] { 0xFFFFFF, 0x000000, 0x808080, 0x010203 }, 2, 2);
+	}
+
+	private void assertRoundTrip(int[] pixels, int width, int height) throws Exception {
+		byte[] png = PngEncoder.encode(pixels, width, height, scratch);
+
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+		assertThat(decoded).isNotNull();
+		assertThat(decoded.getWidth()).isEqualTo(width);
+		assertThat(decoded.getHeight()).isEqualTo(height);
+		int[] rgb = decoded.getRGB(0, 0, width, height, null, 0, width);
+		for (int i = 0; i < rgb.length; i++) {
+			rgb[i] &= 0xFFFFFF;
+		}
+		assertThat(rgb).containsExactly(Arrays.copyOf(pixels, width * height));
+	}
+
+	private static int[] randomPixels(int width, int height, long seed) {
+		Random random = new Random(seed);
+		int[] pixels = new int[width * height];
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = random.nextInt(0x1000000);
+		}
+		return pixels;
+	}
+}
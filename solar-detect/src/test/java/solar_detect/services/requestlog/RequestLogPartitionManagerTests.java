@@ -0,0 +1,83 @@
+package solar_detect.services.requestlog;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import solar_detect.config.RequestLogProperties;
+
+// Roda contra o Postgres configurado em SPRING_DATASOURCE_URL; usa um mês distante para não tocar nas partições reais
+@SpringBootTest(properties = {
+		"work-queue.enabled=false",
+		"prefetch.enabled=false",
+		"detection-index.enabled=false"
+})
+class RequestLogPartitionManagerTests {
+
+	private static final YearMonth FAR = YearMonth.of(2100, 1);
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private long userId;
+
+	@BeforeEach
+	void createUser() {
+		String unique = UUID.randomUUID().toString();
+		userId = jdbcTemplate.queryForObject("""
+				INSERT INTO users (email, password, user_type, name, document_number)
+				VALUES (?, 'x', 'COMPANY', 'partition test', ?) RETURNING id
+				""", Long.class, unique + "@test.local", unique.substring(0, 20));
+	}
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM request_logs WHERE user_id = ?", userId);
+		jdbcTemplate.execute("DROP TABLE IF EXISTS request_logs_p" + FAR.getYear() + "01");
+		jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+	}
+
+	@Test
+	void rowsWithoutAMonthlyPartitionLandInDefaultAndAreMovedOut() {
+		// Nenhuma partição para 2100: sem a default o insert falharia
+		jdbcTemplate.update("INSERT INTO request_logs (user_id, request_time, latitude, longitude) VALUES (?, ?, 1, 2)",
+				userId, Timestamp.valueOf(LocalDateTime.of(2100, 1, 15, 12, 0)));
+		assertThat(rowsIn("request_logs_default")).isEqualTo(1);
+
+		RequestLogProperties properties = new RequestLogProperties();
+		properties.getPartitions().setMonthsAhead(0);
+		properties.getPartitions().setRetentionMonths(0);
+		RequestLogPartitionManager manager = new RequestLogPartitionManager(properties, jdbcTemplate,
+				transactionManager, new SimpleMeterRegistry());
+		manager.maintain(FAR);
+
+		assertThat(rowsIn("request_logs_default")).isZero();
+		assertThat(rowsIn("request_logs_p210001")).isEqualTo(1);
+		assertThat(manager.runwayMonths()).isEqualTo(YearMonth.now().until(FAR, ChronoUnit.MONTHS));
+		// Anexada a request_logs, não uma tabela avulsa
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM pg_inherits WHERE inhrelid = 'request_logs_p210001'::regclass", Long.class))
+				.isEqualTo(1);
+	}
+
+	private long rowsIn(String table) {
+		return jdbcTemplate.queryForObject("SELECT count(*) FROM " + table + " WHERE user_id = ?", Long.class,
+				userId);
+	}
+}
@@ -0,0 +1,90 @@
+package solar_detect.services.requestlog;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import solar_detect.services.usage.UsageRollupService;
+
+// Roda contra o Postgres configurado em SPRING_DATASOURCE_URL, como os testes de quota
+@SpringBootTest(properties = {
+		"work-queue.enabled=false",
+		"prefetch.enabled=false",
+		"detection-index.enabled=false"
+})
+class RequestLogWriterTests {
+
+	@Autowired
+	private RequestLogWriter writer;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private UsageRollupService usage;
+
+	private long userId;
+
+	@BeforeEach
+	void createUser() {
+		String unique = UUID.randomUUID().toString();
+		userId = jdbcTemplate.queryForObject("""
+				INSERT INTO users (email, password, user_type, name, document_number)
+				VALUES (?, 'x', 'COMPANY', 'request log test', ?) RETURNING id
+				""", Long.class, unique + "@test.local", unique.substring(0, 20));
+	}
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM request_logs WHERE user_id = ?", userId);
+		jdbcTemplate.update("DELETE FROM usage_rollups WHERE user_id = ?", userId);
+		jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+	}
+
+	@Test
+	void refundMarksOnlyTheChargedRowWhenABatchRepeatsAPoint() throws Exception {
+		// Como um lote do QuotaService: mesmo instante para todos os pontos, e o mesmo ponto duas vezes
+		LocalDateTime now = LocalDateTime.now();
+		RequestLogEntry delivered = new RequestLogEntry(userId, "COMPANY", now, -23.5f, -46.6f);
+		RequestLogEntry failed = new RequestLogEntry(userId, "COMPANY", now, -23.5f, -46.6f);
+		writer.append(List.of(delivered, failed));
+		writer.refund(List.of(failed));
+
+		List<String> statuses = awaitStatuses(2);
+		assertThat(statuses).containsExactlyInAnyOrder("OK", "REFUNDED");
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT status FROM request_logs WHERE user_id = ? AND charge_id = ?", String.class,
+				userId, delivered.chargeId())).isEqualTo("OK");
+
+		// O uso cobrado desconta a devolução; os listeners são avisados logo depois do commit
+		long billed = -1;
+		for (long deadline = System.nanoTime() + 5_000_000_000L; billed != 1 && System.nanoTime() < deadline; ) {
+			Thread.sleep(50);
+			usage.scheduledFlush();
+			billed = usage.report(userId, now.minusHours(1), now.plusHours(1)).getTotalRequests();
+		}
+		assertThat(billed).isEqualTo(1);
+	}
+
+	private List<String> awaitStatuses(int rows) throws InterruptedException {
+		long deadline = System.nanoTime() + 10_000_000_000L;
+		while (true) {
+			List<String> statuses = jdbcTemplate.queryForList(
+					"SELECT status FROM request_logs WHERE user_id = ? ORDER BY status", String.class, userId);
+			if ((statuses.size() == rows && statuses.contains("REFUNDED") && writer.pending() == 0)
+					|| System.nanoTime() > deadline) {
+				return statuses;
+			}
+			Thread.sleep(50);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package solar_detect.services.spatial;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import solar_detect.config.DetectionIndexProperties;
+import solar_detect.config.PredictionProperties;
+import solar_detect.exceptions.BusinessException;
+import solar_detect.services.cache.TileKey;
+import solar_detect.util.WebMercator;
+
+class DetectionIndexTests {
+
+	private static final int GRID = new PredictionProperties().getCache().getGridPixels();
+
+	private final DetectionIndexProperties properties = new DetectionIndexProperties();
+
+	@Test
+	void nearbyFindsTilesAcrossTheAntimeridian() {
+		DetectionIndex index = index();
+		TileKey east = TileKey.of(10.0, 179.9995, GRID);
+		TileKey west = TileKey.of(10.0, -179.9995, GRID);
+		TileKey far = TileKey.of(10.0, 179.9, GRID);
+		index.add(east);
+		index.add(west);
+		index.add(far);
+
+		for (double lon : new double[] { 179.99999, -179.99999 }) {
+			List<DetectionIndex.Nearby> nearby = index.nearby(10.0, lon, 500, 10);
+			assertThat(nearby).extracting(DetectionIndex.Nearby::key).containsExactlyInAnyOrder(east, west);
+			assertThat(nearby).allSatisfy(n -> assertThat(n.distanceMeters()).isLessThan(200));
+		}
+	}
+
+	@Test
+	void queryAtTheMapEdgeScansOnlyExistingCells() {
+		DetectionIndex index = index();
+		TileKey edge = TileKey.of(WebMercator.MAX_LATITUDE - 0.0001, 0.0, GRID);
+		index.add(edge);
+		index.add(TileKey.of(-WebMercator.MAX_LATITUDE + 0.0001, 0.0, GRID));
+
+		// Acima do limite (o controller recusa) o quadrado do raio teria ~10^5 x 10^5 células; o índice tem duas
+		long started = System.nanoTime();
+		assertThat(index.nearby(89.999, 0.0, 500, 10)).hasSizeLessThanOrEqualTo(2);
+		assertThat(index.nearby(WebMercator.MAX_LATITUDE, 0.0, 500, 10))
+				.extracting(DetectionIndex.Nearby::key).containsExactly(edge);
+		assertThat(System.nanoTime() - started).isLessThan(1_000_000_000L);
+	}
+
+	@Test
+	void scanLargerThanTheCapIsRejected() {
+		properties.setMaxScanCells(4);
+		DetectionIndex index = index();
+		for (int i = 0; i < 10; i++) {
+			index.add(TileKey.of(80.0, i * 0.05, GRID));
+		}
+
+		assertThat(index.nearby(80.0, 0.0, 10, 10)).hasSize(1);
+		assertThatThrownBy(() -> index.nearby(80.0, 0.0, 5000, 10)).isInstanceOf(BusinessException.class);
+	}
+
+	private DetectionIndex index() {
+		return new DetectionIndex(properties, new PredictionProperties(), null, null, new SimpleMeterRegistry());
+	}
+}